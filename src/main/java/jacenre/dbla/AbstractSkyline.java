@@ -60,6 +60,41 @@ public abstract class AbstractSkyline {
      */
     public abstract ArrayList<SegPoint> getCandidatePoints();
 
+    /**
+     * Moves segments that are too short for any rectangle that has not been placed yet to the right, up to their
+     * lowest neighbour, and merges neighbouring segments with the same x.
+     * @param rectangles The rectangles that have not been placed yet
+     * @param rotationsAllowed Whether the rectangles may be rotated
+     */
+    public abstract void fixSkylineAfterPlacements(List<Rectangle> rectangles, boolean rotationsAllowed);
+
+    /**
+     * Returns the smallest and second smallest width and height of the rectangles that have not been placed yet.
+     * @param sequence The rectangles that have not been placed yet
+     * @returns {minWidth, secWidth, minHeight, secHeight}
+     */
+    public int[] getMinWidthHeightOtherRectangles(List<Rectangle> sequence) {
+        int minWidth = Integer.MAX_VALUE;
+        int secWidth = Integer.MAX_VALUE;
+        int minHeight = Integer.MAX_VALUE;
+        int secHeight = Integer.MAX_VALUE;
+        for (Rectangle rec : sequence) {
+            if (rec.width < minWidth) {
+                minWidth = rec.width;
+                secWidth = minWidth;
+            } else if (rec.width < secWidth) {
+                secWidth = rec.width;
+            }
+            if (rec.height < minHeight) {
+                minHeight = rec.height;
+                secHeight = minHeight;
+            } else if (rec.height < secHeight) {
+                secHeight = rec.height;
+            }
+        }
+        return new int[] {minWidth, secWidth, minHeight, secHeight};
+    }
+
     /**
      * Simple method to get the most left segment in the skyline, which is needed for the maximum spread constraint
      * @returns the most left x position of the segments.
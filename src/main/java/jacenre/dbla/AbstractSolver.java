@@ -1,7 +1,9 @@
 package jacenre.dbla;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Abstract Solver class
@@ -14,10 +16,35 @@ import java.util.Set;
  * To specify what Type of Bin Packing problems the {@code Solver} can handle use {@link Util.HeightSupport}.<br>
  * Throw an {@code IllegalArgumentException} if the given {@code Parameters} violate the {@code Solver} preconditions.<br>
  * </p>
+ * <p>
+ * A solve can be limited with a {@link Deadline}. Iterative solvers poll {@link #deadline} and return the best
+ * solution found so far once it expires, solvers that use other solvers pass it on with {@link #pack(Parameters,
+ * Deadline)}.
+ * </p>
+ * <p>
+ * Solvers that improve a solution step by step publish every improvement with {@link #publish(Solution)}, so a
+ * {@link SolutionListener} has a usable solution long before the solve returns.
+ * </p>
  */
 public abstract class AbstractSolver {
     boolean allowInputSorting;
 
+    /**
+     * The deadline of the current solve, without a time limit unless one is given.
+     */
+    Deadline deadline = Deadline.none();
+
+    /**
+     * The number of heights the {@link FreeHeightUtil} search of a free height solve packs at the same time,
+     * {@code 0} for one per processor.
+     */
+    int heightWorkers;
+
+    /**
+     * The listeners that are told about improving solutions.
+     */
+    private final List<SolutionListener> listeners = new CopyOnWriteArrayList<>();
+
     /**
      * @param allowInputSorting allow/disallow the input to be sorted by the solver based on the context
      */
@@ -54,29 +81,104 @@ public abstract class AbstractSolver {
      *     programming catch all for if something is FUBAR.
      * </p>
      * @param parameters the parameters for which to check
-     * @return true if this solver can handle the parameters.
+     * @return true if this solver can handle the parameters within {@link PackingSolver#TIME_LIMIT}.
+     * @see #canSolveParameters(Parameters, long)
      */
     public boolean canSolveParameters(Parameters parameters) {
+        return canSolveParameters(parameters, PackingSolver.TIME_LIMIT);
+    }
+
+    /**
+     * Returns true if {@code this} AbstractSolver supports the height variant of the parameters and is expected to
+     * solve them within {@code budget} milliseconds, see {@link #estimateCost(Parameters)} and
+     * {@link #maxRectangles(boolean)}.
+     *
+     * @param parameters the parameters for which to check
+     * @param budget     the time budget in milliseconds
+     * @return true if this solver can handle the parameters.
+     */
+    public boolean canSolveParameters(Parameters parameters, long budget) {
         // Default check
         if (parameters.freeHeightUtil && !this.getHeightSupport().contains(Util.HeightSupport.FREE)) {
 			return false;
 		}
-        return this.getHeightSupport().contains(parameters.heightVariant);
+        if (!this.getHeightSupport().contains(parameters.heightVariant)) {
+            return false;
+        }
+        // A free height search packs many heights, so it keeps to the number of rectangles even if its cost is known
+        boolean free = parameters.heightVariant == Util.HeightSupport.FREE || parameters.freeHeightUtil;
+        double cost = estimateCost(parameters);
+        if ((Double.isNaN(cost) || free) && parameters.rectangles.size() > maxRectangles(free)) {
+            return false;
+        }
+        return Double.isNaN(cost) || cost * CostModel.MARGIN <= budget;
     }
 
     /**
-     * Returns a {@code Solution} for the given {@code Parameters}
+     * Returns the largest number of rectangles this solver is used for in a free height search, or at a fixed height
+     * if its cost is unknown because the cost model has no fit for it. By default there is no limit.
+     * <p>
+     * A free height search cannot stop a pack that takes longer than its share of the budget, so a large instance
+     * can overrun the budget even if the cost model expects a single pack to fit.
+     * </p>
+     *
+     * @param free whether it is a free height search
+     */
+    int maxRectangles(boolean free) {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the estimated time in milliseconds this solver takes to solve {@code parameters}.
+     * <p>
+     * By default the estimate of the {@link CostModel#getDefault() default cost model} for the class of this solver.
+     * </p>
+     *
+     * @param parameters the parameters to estimate for
+     * @return the estimated time in milliseconds, {@code NaN} if it is unknown
+     */
+    public double estimateCost(Parameters parameters) {
+        return CostModel.getDefault().estimate(getClass().getSimpleName(), parameters);
+    }
+
+    /**
+     * Returns the time budget of the current solve in milliseconds, the {@link Deadline#budget() budget} of
+     * {@link #deadline} or {@link PackingSolver#TIME_LIMIT} if it has no time limit.
+     */
+    long budget() {
+        return deadline.isBounded() ? deadline.budget() : PackingSolver.TIME_LIMIT;
+    }
+
+    /**
+     * Returns a {@code Solution} for the given {@code Parameters} without a deadline, the solvers use their own
+     * default time limits.
+     *
+     * @param parameters the parameters for which to getSolution
+     * @return a {@code Solution} object containing the results
+     * @throws IllegalArgumentException if the Solver cannot getSolution the given parameters
+     * @see #getSolution(Parameters, Deadline)
+     */
+    public Solution getSolution(Parameters parameters) throws IllegalArgumentException {
+        return getSolution(parameters, Deadline.none());
+    }
+
+    /**
+     * Returns a {@code Solution} for the given {@code Parameters} found before the {@code deadline}.
      * <p>
      * Contains the template code for most solvers. By default it will rotate any rectangle
      * that are to high to fit in a fixed box, if applicable. It will also check if the {@code Parameter }
      * heightVariant and the supported height variants of this {@code Solver} match.
      * </p>
+     * <p>
+     * The deadline holds for the whole solve, once it expires the best solution found so far is returned.
+     * </p>
      *
      * @param parameters the parameters for which to getSolution
+     * @param deadline   the deadline of the solve
      * @return a {@code Solution} object containing the results
      * @throws IllegalArgumentException if the Solver cannot getSolution the given parameters
      */
-    public Solution getSolution(Parameters parameters) throws IllegalArgumentException {
+    public Solution getSolution(Parameters parameters, Deadline deadline) throws IllegalArgumentException {
         if (!getHeightSupport().contains(parameters.heightVariant)) {
             throw new IllegalArgumentException(this.getClass().getSimpleName() +
                     " does not support " + parameters.heightVariant);
@@ -96,10 +198,11 @@ public abstract class AbstractSolver {
 
         // Create a new solution for this getSolution.
         if (parameters.heightVariant.equals(Util.HeightSupport.FIXED)) {
-            solution = this.pack(parameters);
+            solution = this.pack(parameters, deadline);
         } else {
             // If applicable, try and use free height util
-            solution = new FreeHeightUtil(this).pack(parameters);
+            solution = (heightWorkers > 0 ? new FreeHeightUtil(this, heightWorkers) : new FreeHeightUtil(this))
+                    .pack(parameters, deadline);
         }
 
         // report(solution);
@@ -126,6 +229,102 @@ public abstract class AbstractSolver {
      */
     abstract Solution pack(Parameters parameters);
 
+    /**
+     * Calls {@link #pack(Parameters)} with {@link #deadline} set to the given deadline.
+     *
+     * @param parameters the {@code Parameters} to be used by the solver
+     * @param deadline   the deadline of this pack
+     * @return the associated {@link Solution} object containing the results
+     */
+    Solution pack(Parameters parameters, Deadline deadline) {
+        this.deadline = deadline;
+        return pack(parameters);
+    }
+
+    /**
+     * Returns a new solver that solves like this one but shares no state with it.
+     * <p>
+     * Solvers keep the state of the current pack in fields, so a solver packs one {@code Parameters} object at a
+     * time. Copies are used to pack on several threads at once. Listeners are not copied.
+     * </p>
+     *
+     * @return a new solver, or {@code null} if this solver cannot be copied
+     * @see #newInstance()
+     */
+    AbstractSolver copy() {
+        AbstractSolver copy = newInstance();
+        // A subclass that does not override newInstance would be copied as its superclass
+        if (copy == null || copy.getClass() != getClass()) {
+            return null;
+        }
+        copy.heightWorkers = heightWorkers;
+        return copy;
+    }
+
+    /**
+     * Hook method for {@link #copy()}, returns a new solver with the same settings as this one.
+     *
+     * @return a new solver, or {@code null} by default
+     */
+    AbstractSolver newInstance() {
+        return null;
+    }
+
+    /**
+     * Registers a listener for the improving solutions of every following solve.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(SolutionListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with {@link #addListener(SolutionListener)}.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(SolutionListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns {@code true} if any listener is registered.
+     */
+    boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+
+    /**
+     * Returns {@code true} if a solution for {@code parameters} would be published, solvers use this to skip copying
+     * a solution nobody listens to.
+     * <p>
+     * Solutions of the fixed height sub problems of {@link FreeHeightUtil} are not published, it publishes the
+     * solutions of the free height problem itself.
+     * </p>
+     */
+    boolean isPublishing(Parameters parameters) {
+        return hasListeners() && !parameters.freeHeightUtil;
+    }
+
+    /**
+     * Tells the listeners about an improving solution.
+     * <p>
+     * The caller makes sure the solution is better than the ones it published before and is not changed afterwards.
+     * </p>
+     *
+     * @param solution the improved solution
+     */
+    void publish(Solution solution) {
+        if (!isPublishing(solution.parameters)) {
+            return;
+        }
+        String solver = solution.solvedBy == null ? getClass().getSimpleName() : solution.solvedBy.getName();
+        long timestamp = System.currentTimeMillis();
+        for (SolutionListener listener : listeners) {
+            listener.improved(solution, solver, timestamp);
+        }
+    }
 
     /**
      * Returns the name of this solver
@@ -101,32 +101,6 @@ public class ArrayListSkyline extends AbstractSkyline {
     }
 
 
-    public int[] getMinWidthHeightOtherRectangles(List<Rectangle> sequence) {
-        int minWidth = Integer.MAX_VALUE;
-        int secWidth = Integer.MAX_VALUE;
-        int minHeight = Integer.MAX_VALUE;
-        int secHeight = Integer.MAX_VALUE;
-        for (Rectangle rec : sequence) {
-            if (rec.width < minWidth) {
-                minWidth = rec.width;
-                secWidth = minWidth;
-            } else if (rec.width < secWidth) {
-                secWidth = rec.width;
-            }
-            if (rec.height < minHeight) {
-                minHeight = rec.height;
-                secHeight = minHeight;
-            } else if (rec.height < secHeight) {
-                secHeight = rec.height;
-            }
-        }
-//        if (rotationsAllowed) {
-//            minHeight = Math.min(minHeight, minWidth);
-//            minWidth = minHeight;
-//        }
-        return new int[] {minWidth, secWidth, minHeight, secHeight};
-    }
-
     @Override
     public int getFitnessNumber(PositionRectangleRotationPair pair) {
         int fitnessNumber = 0;
@@ -309,6 +283,7 @@ public class ArrayListSkyline extends AbstractSkyline {
 		}
     }
 
+    @Override
     public void fixSkylineAfterPlacements(List<Rectangle> rectangles, boolean rotationsAllowed) {
         boolean changes;
         do {
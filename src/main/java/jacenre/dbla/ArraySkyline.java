@@ -0,0 +1,791 @@
+package jacenre.dbla;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Skyline kept as a doubly linked list of segments in primitive arrays, it places like {@link ArrayListSkyline}.
+ * <p>
+ * A segment is a handle into the arrays, from the bottom of the box to the top. Every candidate point knows the
+ * handle of its segment, see {@link SegPoint#segment}, so the segment under a candidate is found in constant time
+ * and splitting or removing a segment does not shift the others. Removed handles are reused and the candidate
+ * points of a segment are reused as well, placing a rectangle does not allocate.
+ * </p>
+ * <p>
+ * The leftmost x is kept up to date as segments change. The segments a placement changes and their neighbours are
+ * marked, {@link #fixSkylineAfterPlacements(List, boolean)} only looks at those instead of passing over the whole
+ * skyline, unless the smallest side of the rectangles left has grown.
+ * </p>
+ */
+public class ArraySkyline extends AbstractSkyline {
+
+    private static final int NONE = -1;
+
+    public final int globalHeight;
+    public final int globalWidth;
+    public final int maximumSpread;
+    public final boolean rotationsAllowed;
+
+    /**
+     * The x, the bottom y and the top y of every segment.
+     */
+    private int[] x;
+    private int[] yStart;
+    private int[] yEnd;
+
+    /**
+     * The segment below and above every segment, {@link #NONE} at the ends.
+     */
+    private int[] prev;
+    private int[] next;
+
+    private int head;
+    private int tail;
+    private int size;
+
+    /**
+     * The handles that are free, and the number of handles ever used.
+     */
+    private int[] free;
+    private int freeCount;
+    private int used;
+
+    /**
+     * The start and end candidate point of every segment, updated when they are handed out.
+     */
+    private SegPoint[] startPoints;
+    private SegPoint[] endPoints;
+    private final ArrayList<SegPoint> candidates = new ArrayList<>();
+
+    /**
+     * The segments that changed, or whose neighbours changed, since a fix last looked at them, see
+     * {@link #touch(int)}. Every other segment is long enough or higher than a neighbour for {@link #checkedSide},
+     * and every two neighbours with the same x have a touched segment.
+     */
+    private boolean[] touched;
+    private int[] touchedList;
+    private int touchedCount;
+    private int checkedSide;
+
+    /**
+     * The merge pass in which the run of segments starting at a segment was merged, and the touched segments of a
+     * raise pass from the bottom to the top.
+     */
+    private int[] mergedIn;
+    private int mergePass;
+    private long[] raiseOrder = new long[16];
+
+    /**
+     * The leftmost x and the number of segments at it, it is counted again once those segments have all moved.
+     */
+    private int mostLeft;
+    private int mostLeftCount;
+
+    public ArraySkyline(int height, int width, int maximumSpread, boolean rotationsAllowed) {
+        this.globalHeight = height;
+        this.globalWidth = width;
+        this.maximumSpread = maximumSpread;
+        this.rotationsAllowed = rotationsAllowed;
+
+        int capacity = 16;
+        x = new int[capacity];
+        yStart = new int[capacity];
+        yEnd = new int[capacity];
+        prev = new int[capacity];
+        next = new int[capacity];
+        free = new int[capacity];
+        startPoints = new SegPoint[capacity];
+        endPoints = new SegPoint[capacity];
+        touched = new boolean[capacity];
+        touchedList = new int[capacity];
+        mergedIn = new int[capacity];
+
+        int segment = allocate();
+        x[segment] = 0;
+        yStart[segment] = 0;
+        yEnd[segment] = height;
+        prev[segment] = NONE;
+        next[segment] = NONE;
+        head = segment;
+        tail = segment;
+        size = 1;
+        mostLeft = 0;
+        mostLeftCount = 1;
+        touch(segment);
+    }
+
+    /**
+     * Returns the number of segments.
+     */
+    public int size() {
+        return size;
+    }
+
+    private int allocate() {
+        if (freeCount > 0) {
+            return free[--freeCount];
+        }
+        if (used == x.length) {
+            int capacity = 2 * x.length;
+            x = Arrays.copyOf(x, capacity);
+            yStart = Arrays.copyOf(yStart, capacity);
+            yEnd = Arrays.copyOf(yEnd, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+            next = Arrays.copyOf(next, capacity);
+            free = Arrays.copyOf(free, capacity);
+            startPoints = Arrays.copyOf(startPoints, capacity);
+            endPoints = Arrays.copyOf(endPoints, capacity);
+            touched = Arrays.copyOf(touched, capacity);
+            mergedIn = Arrays.copyOf(mergedIn, capacity);
+        }
+        return used++;
+    }
+
+    /**
+     * Inserts a new segment below {@code segment} and returns its handle.
+     */
+    private int insertBefore(int segment, int segmentX, int start, int end) {
+        int inserted = allocate();
+        x[inserted] = segmentX;
+        yStart[inserted] = start;
+        yEnd[inserted] = end;
+        prev[inserted] = prev[segment];
+        next[inserted] = segment;
+        if (prev[segment] == NONE) {
+            head = inserted;
+        } else {
+            next[prev[segment]] = inserted;
+        }
+        prev[segment] = inserted;
+        size++;
+        inserted(inserted);
+        return inserted;
+    }
+
+    /**
+     * Inserts a new segment above {@code segment} and returns its handle.
+     */
+    private int insertAfter(int segment, int segmentX, int start, int end) {
+        if (next[segment] != NONE) {
+            return insertBefore(next[segment], segmentX, start, end);
+        }
+        int inserted = allocate();
+        x[inserted] = segmentX;
+        yStart[inserted] = start;
+        yEnd[inserted] = end;
+        prev[inserted] = segment;
+        next[inserted] = NONE;
+        next[segment] = inserted;
+        tail = inserted;
+        size++;
+        inserted(inserted);
+        return inserted;
+    }
+
+    private void inserted(int segment) {
+        enterX(x[segment]);
+        touch(prev[segment]);
+        touch(segment);
+        touch(next[segment]);
+    }
+
+    private void remove(int segment) {
+        touched[segment] = false;
+        leaveX(x[segment]);
+        if (prev[segment] == NONE) {
+            head = next[segment];
+        } else {
+            next[prev[segment]] = next[segment];
+        }
+        if (next[segment] == NONE) {
+            tail = prev[segment];
+        } else {
+            prev[next[segment]] = prev[segment];
+        }
+        free[freeCount++] = segment;
+        size--;
+        touch(prev[segment]);
+        touch(next[segment]);
+    }
+
+    private void setX(int segment, int segmentX) {
+        leaveX(x[segment]);
+        x[segment] = segmentX;
+        enterX(segmentX);
+        touch(prev[segment]);
+        touch(segment);
+        touch(next[segment]);
+    }
+
+    private void enterX(int segmentX) {
+        if (mostLeftCount > 0 && segmentX < mostLeft) {
+            mostLeft = segmentX;
+            mostLeftCount = 1;
+        } else if (mostLeftCount > 0 && segmentX == mostLeft) {
+            mostLeftCount++;
+        }
+    }
+
+    private void leaveX(int segmentX) {
+        if (mostLeftCount > 0 && segmentX == mostLeft) {
+            mostLeftCount--;
+        }
+    }
+
+    /**
+     * Marks a segment for the next {@link #fixSkylineAfterPlacements(List, boolean)}, every segment that is inserted,
+     * moved or next to a segment that is inserted, moved or removed is marked. The segments of
+     * {@link #adjustSkyline(Rectangle, SegPoint)} that only get shorter are always next to one of those.
+     */
+    private void touch(int segment) {
+        if (segment == NONE || touched[segment]) {
+            return;
+        }
+        touched[segment] = true;
+        if (touchedCount == touchedList.length) {
+            touchedList = Arrays.copyOf(touchedList, 2 * touchedCount);
+        }
+        touchedList[touchedCount++] = segment;
+    }
+
+    private int length(int segment) {
+        return yEnd[segment] - yStart[segment];
+    }
+
+    private SegPoint startPoint(int segment) {
+        SegPoint point = startPoints[segment];
+        if (point == null) {
+            point = startPoints[segment] = new SegPoint(true);
+        }
+        point.x = x[segment];
+        point.y = yStart[segment];
+        point.segment = segment;
+        return point;
+    }
+
+    private SegPoint endPoint(int segment) {
+        SegPoint point = endPoints[segment];
+        if (point == null) {
+            point = endPoints[segment] = new SegPoint(false);
+        }
+        point.x = x[segment];
+        point.y = yEnd[segment];
+        point.segment = segment;
+        return point;
+    }
+
+    /**
+     * Returns the segment {@code position} is a point of, the upper one if it is a point of two segments.
+     */
+    private int segmentOf(SegPoint position) {
+        int segment = position.segment;
+        if (segment >= 0 && segment < used && x[segment] == position.x
+                && (position.start ? yStart[segment] : yEnd[segment]) == position.y) {
+            // The point above an end point may be the same point
+            int above = position.start ? NONE : next[segment];
+            return above != NONE && x[above] == position.x ? above : segment;
+        }
+        int found = NONE;
+        for (int s = head; s != NONE; s = next[s]) {
+            if (x[s] == position.x && (yStart[s] == position.y || yEnd[s] == position.y)) {
+                found = s;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public boolean doesNotMeetSpreadConstraint(Rectangle rectangle, SegPoint position, int mostLeftPoint) {
+        return doesNotMeetSpreadConstraint(rectangle.width, position, mostLeftPoint);
+    }
+
+    /**
+     * Checks the spread constraint for a rectangle of width {@code width}, see
+     * {@link #doesNotMeetSpreadConstraint(Rectangle, SegPoint, int)}.
+     */
+    public boolean doesNotMeetSpreadConstraint(int width, SegPoint position, int mostLeftPoint) {
+        return position.x + width - mostLeftPoint > maximumSpread;
+    }
+
+    /**
+     * Computes the waste like {@link ArrayListSkyline#getLocalWaste(Rectangle, SegPoint, int[])} without placing the
+     * rectangle, {@code position} must be a candidate point of this skyline.
+     * <p>
+     * The waste left of the rectangle is the area it covers up to its right side, less its own area. The waste above
+     * and below is only read from the segments next to the segment the right side of the rectangle would end in.
+     * </p>
+     */
+    @Override
+    public int getLocalWaste(Rectangle rectangle, SegPoint position, int[] smallestRecs) {
+        return getLocalWaste(rectangle.width, rectangle.height, position, smallestRecs);
+    }
+
+    /**
+     * Computes the waste of a rectangle of {@code width} by {@code height}, see
+     * {@link #getLocalWaste(Rectangle, SegPoint, int[])}. Neither the skyline nor a rectangle is changed, so the
+     * waste can be computed from several threads as long as the skyline is not adjusted.
+     */
+    public int getLocalWaste(int width, int height, SegPoint position, int[] smallestRecs) {
+        int segment = segmentOf(position);
+        int right = position.x + width;
+
+        // The area left of the skyline that is covered by the rectangle
+        int covered;
+        int wastedSpaceAbove = 0;
+        int wastedSpaceBelow = 0;
+        if (position.start) {
+            // The right side of the rectangle is a new segment starting at the position
+            int below = prev[segment];
+            if (below != NONE) {
+                wastedSpaceAbove = sideWaste(x[below], length(below), prev[below], right, height, smallestRecs);
+            }
+            if (length(segment) >= height) {
+                covered = x[segment] * height;
+                if (length(segment) > height) {
+                    wastedSpaceBelow = sideWaste(x[segment], length(segment) - height, next[segment], right, height,
+                            smallestRecs);
+                } else if (next[segment] != NONE) {
+                    int above = next[segment];
+                    wastedSpaceBelow = sideWaste(x[above], length(above), next[above], right, height,
+                            smallestRecs);
+                }
+            } else {
+                int upToThisY = position.y + height;
+                covered = x[segment] * length(segment);
+                int segmentToCut = next[segment];
+                while (yEnd[segmentToCut] < upToThisY) {
+                    covered += x[segmentToCut] * length(segmentToCut);
+                    segmentToCut = next[segmentToCut];
+                }
+                covered += x[segmentToCut] * (upToThisY - yStart[segmentToCut]);
+                if (yEnd[segmentToCut] > upToThisY) {
+                    wastedSpaceBelow = sideWaste(x[segmentToCut], yEnd[segmentToCut] - upToThisY,
+                            next[segmentToCut], right, height, smallestRecs);
+                } else if (next[segmentToCut] != NONE) {
+                    int above = next[segmentToCut];
+                    wastedSpaceBelow = sideWaste(x[above], length(above), next[above], right, height,
+                            smallestRecs);
+                }
+            }
+        } else {
+            int upToThisY = position.y - height;
+            int segmentToCut = segment;
+            if (length(segment) >= height) {
+                covered = x[segment] * height;
+            } else {
+                covered = x[segment] * length(segment);
+                segmentToCut = prev[segment];
+                while (yStart[segmentToCut] > upToThisY) {
+                    covered += x[segmentToCut] * length(segmentToCut);
+                    segmentToCut = prev[segmentToCut];
+                }
+                covered += x[segmentToCut] * (yEnd[segmentToCut] - upToThisY);
+            }
+
+            int above = next[segment];
+            if (above != NONE && x[above] == right) {
+                // The right side of the rectangle continues in the segment above, nothing below it is lower
+                int beyond = next[above];
+                if (beyond != NONE) {
+                    wastedSpaceBelow = sideWaste(x[beyond], length(beyond), next[beyond], right, height,
+                            smallestRecs);
+                }
+            } else {
+                // The right side of the rectangle is a new segment ending at the position
+                if (above != NONE) {
+                    wastedSpaceBelow = sideWaste(x[above], length(above), next[above], right, height,
+                            smallestRecs);
+                }
+                if (yStart[segmentToCut] < upToThisY) {
+                    wastedSpaceAbove = sideWaste(x[segmentToCut], upToThisY - yStart[segmentToCut],
+                            prev[segmentToCut], right, height, smallestRecs);
+                } else if (prev[segmentToCut] != NONE) {
+                    int below = prev[segmentToCut];
+                    wastedSpaceAbove = sideWaste(x[below], length(below), prev[below], right, height,
+                            smallestRecs);
+                }
+            }
+        }
+        int wastedSpaceLeft = right * height - covered - height * width;
+
+        // wasted space right
+        int wastedSpaceRight = 0;
+        int spaceLeftRight = globalWidth - right;
+        if (width > smallestRecs[2] && smallestRecs[2] > spaceLeftRight) {
+            wastedSpaceRight = spaceLeftRight * height;
+        } else if (width == smallestRecs[2] && smallestRecs[3] > spaceLeftRight) {
+            wastedSpaceRight = spaceLeftRight * height;
+        }
+
+        return wastedSpaceLeft + wastedSpaceBelow + wastedSpaceRight + wastedSpaceAbove;
+    }
+
+    /**
+     * Returns the waste of a segment next to the right side of a placed rectangle, it is wasted if it is lower than
+     * the rectangle and too short for the smallest rectangle left.
+     *
+     * @param segmentX      the x of the segment
+     * @param segmentLength the length of the segment after the placement
+     * @param beyond        the segment on the other side of the segment, or {@link #NONE}
+     * @param right         the x of the right side of the rectangle
+     */
+    private int sideWaste(int segmentX, int segmentLength, int beyond, int right, int height, int[] smallestRecs) {
+        if (segmentX < right && (height == smallestRecs[2]
+                ? segmentLength < smallestRecs[3] : segmentLength < smallestRecs[2])) {
+            int wasteHeight = beyond != NONE ? Math.min(x[beyond], right) : right;
+            return (wasteHeight - segmentX) * segmentLength;
+        }
+        return 0;
+    }
+
+    /**
+     * Computes the fitness like {@link ArrayListSkyline#getFitnessNumber(PositionRectangleRotationPair)}, the
+     * rectangle of {@code pair} is not rotated to do so.
+     */
+    @Override
+    public int getFitnessNumber(PositionRectangleRotationPair pair) {
+        int fitnessNumber = 0;
+        int width = pair.rotated ? pair.rectangle.height : pair.rectangle.width;
+        int height = pair.rotated ? pair.rectangle.width : pair.rectangle.height;
+
+        // Touching Right side?
+        if (pair.position.x + width == globalWidth) {
+            fitnessNumber++;
+        }
+
+        int segmentInQuestion = pair.position.segment;
+
+        // Same as left Segment
+        if (length(segmentInQuestion) == height) {
+            fitnessNumber++;
+        }
+
+        // Same as above
+        if (prev[segmentInQuestion] != NONE) {
+            if (x[prev[segmentInQuestion]] - x[segmentInQuestion] == width) {
+                fitnessNumber++;
+            }
+        } else if (globalWidth - x[segmentInQuestion] == width) {
+            fitnessNumber++;
+        }
+
+        //Same as below
+        if (next[segmentInQuestion] != NONE) {
+            if (x[next[segmentInQuestion]] - x[segmentInQuestion] == width) {
+                fitnessNumber++;
+            }
+        } else if (globalWidth - x[segmentInQuestion] == width) {
+            fitnessNumber++;
+        }
+        return fitnessNumber;
+    }
+
+    /**
+     * Returns the candidate points like {@link ArrayListSkyline#getCandidatePoints()}.
+     * <p>
+     * The list and its points are reused, they are valid until the skyline changes.
+     * </p>
+     */
+    @Override
+    public ArrayList<SegPoint> getCandidatePoints() {
+        candidates.clear();
+        // The start point of a segment left of the segment below it and the end point of a segment left of the
+        // segment above it, the box counts as a segment at the width of the skyline
+        for (int s = head; s != NONE; s = next[s]) {
+            if (x[s] < (prev[s] == NONE ? globalWidth : x[prev[s]])) {
+                candidates.add(startPoint(s));
+            }
+            if (x[s] < (next[s] == NONE ? globalWidth : x[next[s]])) {
+                candidates.add(endPoint(s));
+            }
+        }
+        return candidates;
+    }
+
+    @Override
+    public int getMostLeftPoint() {
+        if (mostLeftCount == 0) {
+            mostLeft = Integer.MAX_VALUE;
+            for (int s = head; s != NONE; s = next[s]) {
+                if (x[s] < mostLeft) {
+                    mostLeft = x[s];
+                    mostLeftCount = 1;
+                } else if (x[s] == mostLeft) {
+                    mostLeftCount++;
+                }
+            }
+        }
+        return mostLeft;
+    }
+
+    @Override
+    public void adjustSkyline(Rectangle rectangle, SegPoint position) {
+        // Note that a rectangle is always placed with the origin matching a skyline point.
+        int segment = segmentOf(position);
+        int positionX = position.x;
+        int positionY = position.y;
+        int right = positionX + rectangle.width;
+
+        if (length(segment) > rectangle.height) {
+            // Case 1: rectangle to be placed is smaller than segment on which is to be placed
+            if (position.start) {
+                insertBefore(segment, right, positionY, positionY + rectangle.height);
+                yStart[segment] = positionY + rectangle.height;
+            } else {
+                yEnd[segment] = positionY - rectangle.height;
+                insertAfter(segment, right, positionY - rectangle.height, positionY);
+            }
+        } else if (length(segment) == rectangle.height) {
+            // Case 2: rectangle to placed is exactly as big as the segment on which it is placed
+            setX(segment, right);
+            if (position.start) {
+                yStart[segment] = positionY;
+                yEnd[segment] = positionY + rectangle.height;
+            } else {
+                yStart[segment] = positionY - rectangle.height;
+                yEnd[segment] = positionY;
+            }
+        } else if (position.start) {
+            int upToThisY = positionY + rectangle.height;
+            setX(segment, right);
+            yStart[segment] = positionY;
+            yEnd[segment] = upToThisY;
+
+            // delete segments that are completely overshadowed
+            while (next[segment] != NONE && yEnd[next[segment]] < upToThisY) {
+                remove(next[segment]);
+            }
+
+            // From here we only need to cut a segment in half or delete it
+            int segmentToCut = next[segment];
+            if (yEnd[segmentToCut] > upToThisY) {
+                yStart[segmentToCut] = upToThisY;
+            } else {
+                remove(segmentToCut);
+            }
+        } else {
+            int upToThisY = positionY - rectangle.height;
+            setX(segment, right);
+            yStart[segment] = upToThisY;
+            yEnd[segment] = positionY;
+
+            // delete segments that are completely overshadowed
+            while (prev[segment] != NONE && yStart[prev[segment]] > upToThisY) {
+                remove(prev[segment]);
+            }
+
+            // From here we only need to cut a segment in half or delete it
+            int segmentToCut = prev[segment];
+            if (yStart[segmentToCut] < upToThisY) {
+                yEnd[segmentToCut] = upToThisY;
+            } else {
+                remove(segmentToCut);
+            }
+        }
+    }
+
+    /**
+     * Fixes the skyline like {@link ArrayListSkyline#fixSkylineAfterPlacements(List, boolean)}, but every pass only
+     * looks at the {@link #touch(int) touched} segments. A segment that did not change and whose neighbours did not
+     * change since a pass last looked at it is left alone by a pass over the whole skyline as well, unless the
+     * smallest side of the rectangles left has grown since then.
+     */
+    @Override
+    public void fixSkylineAfterPlacements(List<Rectangle> rectangles, boolean rotationsAllowed) {
+        boolean changes;
+        do {
+            mergeTouched();
+            assert totalLength() == globalHeight;
+            if (size == 1) {
+                return;
+            }
+            int[] smallestRecs = getMinWidthHeightOtherRectangles(rectangles);
+            int smallestSide = rotationsAllowed ? Math.min(smallestRecs[0], smallestRecs[2]) : smallestRecs[2];
+            if (smallestSide > checkedSide) {
+                // Segments that were long enough may be too short now
+                for (int s = head; s != NONE; s = next[s]) {
+                    touch(s);
+                }
+                checkedSide = smallestSide;
+            }
+            changes = raiseTouched(smallestSide);
+        } while (changes);
+    }
+
+    /**
+     * Merges the neighbours with the same x in the runs of the touched segments. A pass over the whole skyline merges
+     * a run in pairs from the bottom, a run of three is left as two segments, so the runs are merged the same way.
+     */
+    private void mergeTouched() {
+        mergePass++;
+        for (int i = 0; i < touchedCount; i++) {
+            int segment = touchedList[i];
+            if (!touched[segment]) {
+                continue;
+            }
+            int first = segment;
+            while (prev[first] != NONE && x[prev[first]] == x[first]) {
+                first = prev[first];
+            }
+            if (mergedIn[first] == mergePass) {
+                continue;
+            }
+            for (int s = first; s != NONE; s = next[s]) {
+                mergedIn[s] = mergePass;
+                if (next[s] == NONE || x[next[s]] != x[s]) {
+                    break;
+                }
+                yEnd[s] = yEnd[next[s]];
+                remove(next[s]);
+            }
+        }
+    }
+
+    /**
+     * Moves the touched segments that are shorter than {@code smallestSide} to the right up to their lowest
+     * neighbour, from the bottom to the top like a pass over the whole skyline. A moved segment changes the
+     * neighbour of the segment above it, so that one is looked at next.
+     *
+     * @return whether a segment was moved
+     */
+    private boolean raiseTouched(int smallestSide) {
+        if (raiseOrder.length < touchedCount) {
+            raiseOrder = new long[Math.max(touchedCount, 2 * raiseOrder.length)];
+        }
+        int n = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int segment = touchedList[i];
+            if (touched[segment]) {
+                touched[segment] = false;
+                raiseOrder[n++] = (long) yStart[segment] << 32 | segment;
+            }
+        }
+        touchedCount = 0;
+        Arrays.sort(raiseOrder, 0, n);
+
+        boolean changes = false;
+        int done = -1;
+        for (int i = 0; i < n; i++) {
+            for (int s = (int) raiseOrder[i]; s != NONE && yStart[s] > done; s = next[s]) {
+                done = yStart[s];
+                int toX;
+                if (s == head) {
+                    toX = x[next[s]];
+                } else if (s == tail) {
+                    toX = x[prev[s]];
+                } else {
+                    toX = Math.min(x[prev[s]], x[next[s]]);
+                }
+                if (length(s) >= smallestSide || x[s] >= toX) {
+                    break;
+                }
+                setX(s, toX);
+                changes = true;
+            }
+        }
+        // A run of three that was merged into two is merged by the next pass
+        for (int i = 0; i < n; i++) {
+            int s = (int) raiseOrder[i];
+            if (prev[s] != NONE && x[prev[s]] == x[s] || next[s] != NONE && x[next[s]] == x[s]) {
+                touch(s);
+            }
+        }
+        return changes;
+    }
+
+    private int totalLength() {
+        int totalLength = 0;
+        for (int s = head; s != NONE; s = next[s]) {
+            totalLength += length(s);
+        }
+        return totalLength;
+    }
+
+    /**
+     * Returns the smallest width and height of {@code remaining} like
+     * {@link AbstractSkyline#getMinWidthHeightOtherRectangles(List)}, without a pass over the rectangles.
+     */
+    public int[] getMinWidthHeightOtherRectangles(RemainingRectangles remaining) {
+        // A pass over the rectangles ends with the second smallest equal to the smallest, the placements depend on it
+        return new int[] {remaining.getMinWidth(), remaining.getMinWidth(), remaining.getMinHeight(),
+                remaining.getMinHeight()};
+    }
+
+    @Override
+    public int[] getMinWidthHeightOtherRectangles(List<Rectangle> sequence) {
+        return sequence instanceof RemainingRectangles
+                ? getMinWidthHeightOtherRectangles((RemainingRectangles) sequence)
+                : super.getMinWidthHeightOtherRectangles(sequence);
+    }
+
+    /**
+     * Finds an only fit like {@link ArrayListSkyline#anyOnlyFit(List, boolean)}, the rectangles that fit a segment
+     * are looked up by its length in a {@link RemainingRectangles}, so this takes time in the number of segments
+     * rather than in segments times rectangles. Any other list is indexed first.
+     */
+    @Override
+    public PositionRectangleRotationPair anyOnlyFit(List<Rectangle> rectanglesLeft, boolean rotationsAllowed) {
+        RemainingRectangles remaining = rectanglesLeft instanceof RemainingRectangles
+                ? (RemainingRectangles) rectanglesLeft : new RemainingRectangles(rectanglesLeft);
+        PositionRectangleRotationPair potentialPlacement = null;
+        Rectangle lastFit = null;
+        int lastFitSegment = NONE;
+        int onlyFit = NONE;
+        boolean unique = true;
+
+        // Loop through all the segments in the skyline and check if there is a segment for which there is only one
+        // rectangle left that can be placed. The potential placement is the last fit of the last segment with any.
+        for (int s = head; s != NONE; s = next[s]) {
+            int fits = remaining.countFits(length(s), rotationsAllowed);
+            if (fits > 0) {
+                lastFit = remaining.getLastFit(length(s), rotationsAllowed);
+                lastFitSegment = s;
+            }
+            if (fits == 1) {
+                // More than one 'only fit' is no only fit
+                unique = onlyFit == NONE;
+                onlyFit = s;
+                if (!unique) {
+                    break;
+                }
+            }
+        }
+        if (lastFit != null) {
+            potentialPlacement = new PositionRectangleRotationPair(lastFit, startPoint(lastFitSegment),
+                    lastFit.height != length(lastFitSegment));
+        }
+        // The placement is checked at the start point of its segment, not at the coordinates the rectangle has now
+        if (onlyFit != NONE && unique && !(doesNotMeetSpreadConstraint(potentialPlacement.rectangle,
+                startPoint(onlyFit), getMostLeftPoint())
+                || potentialPlacement.position.y + (potentialPlacement.rotated ? potentialPlacement.rectangle.width
+                : potentialPlacement.rectangle.height) > globalHeight
+                || potentialPlacement.position.y < 0
+                || potentialPlacement.position.x + (potentialPlacement.rotated ? potentialPlacement.rectangle.height
+                : potentialPlacement.rectangle.width) > globalWidth)) {
+            return potentialPlacement;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the segments from the bottom to the top as {@link Segment} objects, used to compare skylines.
+     */
+    List<Segment> getSegments() {
+        List<Segment> segments = new ArrayList<>(size);
+        for (int s = head; s != NONE; s = next[s]) {
+            segments.add(new Segment(new SegPoint(true, x[s], yStart[s]), new SegPoint(false, x[s], yEnd[s])));
+        }
+        return segments;
+    }
+
+    /**
+     * Returns the area left of the skyline.
+     */
+    int getAreaOfSkyline() {
+        int total = 0;
+        for (int s = head; s != NONE; s = next[s]) {
+            total += length(s) * x[s];
+        }
+        return total;
+    }
+}
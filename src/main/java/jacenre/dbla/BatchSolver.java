@@ -0,0 +1,386 @@
+package jacenre.dbla;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Solves a batch of {@code .in} instances, or binary instances of {@link BinaryFormat}, in a single JVM.
+ * <p>
+ * The instances are solved on a work-stealing pool, largest file first so that the long running instances do not end
+ * up last. Every instance gets its own {@link CompoundSolver} from {@link PackingSolver#createSolver()}, which runs
+ * its solvers one after another on the thread of the instance, see {@link #createSolver()}. Its solution is checked with {@link Util#isValidSolution(Solution)} and written next to the others in the output directory.
+ * With a budget every instance is solved with a {@link Deadline} of that budget. If a solve fails after it published
+ * a solution, see {@link SolutionListener}, the best published solution is used.
+ * A {@code summary.csv} and {@code summary.json} with a {@link Result} per instance are written at the end.
+ * With the {@value SolutionCache#PROPERTY} system property the instances are solved through that
+ * {@link SolutionCache}.
+ * </p>
+ * <p>
+ * Usage: {@code BatchSolver <directory|manifest> <output directory> [budget in seconds] [threads]}, where a manifest
+ * is a text file with a path to an instance per line.
+ * </p>
+ */
+public class BatchSolver {
+
+    /**
+     * The outcome of solving a single instance.
+     */
+    public static class Result {
+        /**
+         * Status of a valid solution found within the budget.
+         */
+        public static final String SOLVED = "solved";
+        /**
+         * Status of a valid solution that took longer than the budget.
+         */
+        public static final String TIMEOUT = "timeout";
+        /**
+         * Status of a solution that did not pass {@link Util#isValidSolution(Solution)}.
+         */
+        public static final String INVALID = "invalid";
+        /**
+         * Status of an instance that could not be read or solved.
+         */
+        public static final String FAILED = "failed";
+
+        public final Path instance;
+        public String status = FAILED;
+        public int rectangles;
+        public double rate;
+        public long width;
+        public long height;
+        public String solvedBy = "";
+        /**
+         * Wall time in milliseconds, including reading and writing.
+         */
+        public long wallTime;
+
+        Result(Path instance) {
+            this.instance = instance;
+        }
+    }
+
+    private final int threads;
+
+    /**
+     * The budget per instance in milliseconds, {@code 0} for no budget.
+     */
+    private final long budget;
+
+    private SolutionCache cache;
+
+    /**
+     * @param threads the number of worker threads
+     * @param budget  the time budget per instance in milliseconds, {@code 0} for no budget
+     */
+    public BatchSolver(int threads, long budget) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of threads must be positive.");
+        }
+        this.threads = threads;
+        this.budget = budget;
+    }
+
+    /**
+     * Solves every instance through {@code cache}, see {@link CachingSolver}, or without a cache if it is
+     * {@code null}.
+     *
+     * @return this solver
+     */
+    public BatchSolver setCache(SolutionCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * Solves all {@code instances} and writes their solutions to {@code outputDirectory}.
+     * <p>
+     * The output file of an instance is its path relative to {@code root} with the {@code .in} extension replaced by
+     * {@code .out}. A failing instance does not stop the batch, it is reported in its {@code Result} instead.
+     * </p>
+     *
+     * @param instances       the instance files to solve
+     * @param root            the directory the instances are relative to
+     * @param outputDirectory the directory to write the solutions to
+     * @return a result per instance, in the order of {@code instances}
+     */
+    public List<Result> solve(List<Path> instances, Path root, Path outputDirectory) {
+        // Submit the largest instances first, the pool takes external submissions in order
+        Integer[] order = new Integer[instances.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        long[] sizes = instances.stream().mapToLong(BatchSolver::size).toArray();
+        Arrays.sort(order, (i, j) -> Long.compare(sizes[j], sizes[i]));
+
+        ExecutorService pool = Executors.newWorkStealingPool(threads);
+        try {
+            List<Future<Result>> futures = new ArrayList<>(Collections.nCopies(order.length, null));
+            for (int i : order) {
+                Path instance = instances.get(i);
+                futures.set(i, pool.submit(() -> solve(instance, output(instance, root, outputDirectory))));
+            }
+
+            List<Result> results = new ArrayList<>(order.length);
+            for (Future<Result> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while solving the batch", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads, solves, validates and writes a single instance.
+     */
+    Result solve(Path instance, Path output) {
+        Result result = new Result(instance);
+        long startTime = System.nanoTime();
+        // The budget includes reading and writing the instance, a solve that takes all of its time leaves some for
+        // checking and writing the solution like PackingSolver#main does
+        Deadline deadline = budget > 0
+                ? Deadline.after(budget - Math.min(PackingSolver.OUTPUT_TIME, budget / 10)) : Deadline.none();
+        try {
+            Parameters parameters = instance.toString().endsWith(BinaryFormat.EXTENSION)
+                    ? BinaryFormat.mapInstance(instance).getParameters()
+                    : new UserInput(instance.toFile()).getUserInput();
+            result.rectangles = parameters.rectangles.size();
+
+            CompoundSolver solver = createSolver();
+            AtomicReference<Solution> best = new AtomicReference<>();
+            solver.addListener((improved, name, timestamp) -> best.set(improved));
+            AbstractSolver cached = cache == null ? solver : new CachingSolver(solver, cache);
+            Solution solution;
+            try {
+                solution = cached.getSolution(parameters, deadline);
+            } catch (RuntimeException e) {
+                if (best.get() == null) {
+                    throw e;
+                }
+                if (Util.debug) {
+                    e.printStackTrace();
+                }
+                solution = null;
+            }
+            if (solution == null) {
+                solution = best.get();
+            }
+            if (solution != null) {
+                result.rate = solution.getRate();
+                result.width = solution.getWidth();
+                result.height = solution.getHeight(true);
+                result.solvedBy = solution.solvedBy == null ? "" : solution.solvedBy.getName();
+
+                if (!Util.isValidSolution(solution)) {
+                    result.status = Result.INVALID;
+                } else {
+                    Files.createDirectories(output.toAbsolutePath().getParent());
+                    try (SolutionWriter writer = SolutionWriter.toFile(output, false)) {
+                        writer.write(solution.parameters);
+                    }
+                    result.status = Result.SOLVED;
+                }
+            }
+        } catch (Exception e) {
+            if (Util.debug) {
+                e.printStackTrace();
+            }
+            result.status = Result.FAILED;
+        }
+        result.wallTime = (System.nanoTime() - startTime) / 1000000;
+        if (budget > 0 && result.wallTime > budget && result.status.equals(Result.SOLVED)) {
+            result.status = Result.TIMEOUT;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the solver of an instance.
+     * <p>
+     * The batch already solves {@link #threads} instances at a time, so the compound solver runs its solvers one
+     * after another and none of them packs on the shared pools of {@link FreeHeightUtil}, {@link GeneticSolver} or
+     * {@link SkylineSolver}. An instance then keeps to its own thread.
+     * </p>
+     */
+    static CompoundSolver createSolver() {
+        CompoundSolver solver = PackingSolver.createSolver().setParallel(false);
+        runOnCallingThread(solver);
+        for (AbstractSolver subSolver : solver.getSolvers()) {
+            runOnCallingThread(subSolver);
+        }
+        return solver;
+    }
+
+    private static void runOnCallingThread(AbstractSolver solver) {
+        solver.heightWorkers = 1;
+        if (solver instanceof GeneticSolver) {
+            ((GeneticSolver) solver).setWorkers(1);
+        } else if (solver instanceof SkylineSolver) {
+            ((SkylineSolver) solver).parallelPlacements = Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Returns the output file of {@code instance}.
+     */
+    private static Path output(Path instance, Path root, Path outputDirectory) {
+        Path relative = root.toAbsolutePath().normalize().relativize(instance.toAbsolutePath().normalize());
+        if (relative.startsWith("..")) {
+            relative = instance.getFileName();
+        }
+        String name = relative.getFileName().toString();
+        if (name.endsWith(".in")) {
+            name = name.substring(0, name.length() - ".in".length());
+        } else if (name.endsWith(BinaryFormat.EXTENSION)) {
+            name = name.substring(0, name.length() - BinaryFormat.EXTENSION.length());
+        }
+        return outputDirectory.resolve(relative).resolveSibling(name + ".out");
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the instances in {@code source}.
+     * <p>
+     * If {@code source} is a directory all {@code .in} and binary {@code .bin} files below it are returned, otherwise
+     * it is read as a manifest with a path per line, relative paths are resolved against the directory of the
+     * manifest.
+     * </p>
+     *
+     * @param source a directory or manifest file
+     * @return the instance files
+     * @throws IOException if {@code source} cannot be read
+     */
+    public static List<Path> listInstances(Path source) throws IOException {
+        if (Files.isDirectory(source)) {
+            try (Stream<Path> files = Files.walk(source)) {
+                return files.filter(file -> (file.toString().endsWith(".in")
+                        || file.toString().endsWith(BinaryFormat.EXTENSION)) && Files.isRegularFile(file))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+
+        Path directory = source.toAbsolutePath().getParent();
+        List<Path> instances = new ArrayList<>();
+        for (String line : Files.readAllLines(source, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                instances.add(directory.resolve(line));
+            }
+        }
+        return instances;
+    }
+
+    /**
+     * Writes the results as CSV with a header line.
+     *
+     * @param results the results to write
+     * @param file    the file to write to
+     * @throws IOException if writing fails
+     */
+    public static void writeCsv(List<Result> results, Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("instance,rectangles,status,rate,width,height,solver,wall_ms");
+            writer.newLine();
+            for (Result result : results) {
+                writer.write('"' + result.instance.toString().replace("\"", "\"\"") + '"');
+                writer.write(String.format(Locale.ROOT, ",%d,%s,%.6f,%d,%d,%s,%d", result.rectangles,
+                        result.status, result.rate, result.width, result.height, result.solvedBy, result.wallTime));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Writes the results as a JSON array of objects.
+     *
+     * @param results the results to write
+     * @param file    the file to write to
+     * @throws IOException if writing fails
+     */
+    public static void writeJson(List<Result> results, Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("[");
+            for (int i = 0; i < results.size(); i++) {
+                Result result = results.get(i);
+                writer.write(i == 0 ? "\n" : ",\n");
+                writer.write(String.format(Locale.ROOT, "  {\"instance\": \"%s\", \"rectangles\": %d, "
+                                + "\"status\": \"%s\", \"rate\": %.6f, \"width\": %d, \"height\": %d, "
+                                + "\"solver\": \"%s\", \"wall_ms\": %d}", escapeJson(result.instance.toString()),
+                        result.rectangles, result.status, result.rate, result.width, result.height,
+                        result.solvedBy, result.wallTime));
+            }
+            writer.write("\n]\n");
+        }
+    }
+
+    private static String escapeJson(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BatchSolver <directory|manifest> <output directory> [budget in seconds] "
+                    + "[threads]");
+            System.exit(2);
+        }
+        Path source = Paths.get(args[0]);
+        Path outputDirectory = Paths.get(args[1]);
+        long budget = args.length > 2 ? (long) (Double.parseDouble(args[2]) * 1000) : 0;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        List<Path> instances = listInstances(source);
+        Path root = Files.isDirectory(source) ? source : source.toAbsolutePath().getParent();
+
+        long startTime = System.nanoTime();
+        List<Result> results = new BatchSolver(threads, budget).setCache(SolutionCache.getDefault())
+                .solve(instances, root, outputDirectory);
+        long duration = (System.nanoTime() - startTime) / 1000000;
+
+        Files.createDirectories(outputDirectory);
+        writeCsv(results, outputDirectory.resolve("summary.csv"));
+        writeJson(results, outputDirectory.resolve("summary.json"));
+
+        long solved = results.stream().filter(result -> result.status.equals(Result.SOLVED)).count();
+        System.err.println("Solved " + solved + " of " + results.size() + " instances in " + duration + "ms");
+    }
+}
@@ -0,0 +1,331 @@
+package jacenre.dbla;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compact binary format for instances and solutions.
+ * <p>
+ * Both formats start with the same header of five little endian {@code int32} values: a magic number, the format
+ * {@link #VERSION}, flags ({@link #FIXED_HEIGHT}, {@link #ROTATIONS}), the container height and the number of
+ * rectangles. An instance then holds a {@code width, height} pair per rectangle in input order, a solution holds a
+ * {@code width, height, x, y, rotated} record per rectangle in input order where the dimensions are the input ones.
+ * </p>
+ * <p>
+ * Instances are memory mapped by {@link #mapInstance(Path)}, the dimensions are available as an {@code IntBuffer}
+ * view on the mapping and {@code Parameters} are only built when asked for.
+ * </p>
+ * <p>
+ * Usage: {@code BinaryFormat <.in file|directory> <output directory>} converts text instances to {@code .bin} files.
+ * </p>
+ */
+public class BinaryFormat {
+
+    /**
+     * The current version of both formats.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The extension of binary instances.
+     */
+    public static final String EXTENSION = ".bin";
+
+    /**
+     * Magic number of an instance, {@code "DBLI"}.
+     */
+    static final int INSTANCE_MAGIC = 0x494c4244;
+
+    /**
+     * Magic number of a solution, {@code "DBLS"}.
+     */
+    static final int SOLUTION_MAGIC = 0x534c4244;
+
+    /**
+     * Flag set if the container height is fixed.
+     */
+    static final int FIXED_HEIGHT = 1;
+
+    /**
+     * Flag set if rotations are allowed.
+     */
+    static final int ROTATIONS = 1 << 1;
+
+    /**
+     * Size of the header in bytes.
+     */
+    static final int HEADER_SIZE = 5 * Integer.BYTES;
+
+    private static final int INSTANCE_RECORD = 2;
+    private static final int SOLUTION_RECORD = 5;
+
+    private BinaryFormat() {
+    }
+
+    /**
+     * A memory mapped binary instance.
+     */
+    public static class MappedInstance {
+        public final Util.HeightSupport heightVariant;
+        public final int height;
+        public final boolean rotationVariant;
+        private final IntBuffer dimensions;
+        private Parameters parameters;
+
+        private MappedInstance(int flags, int height, IntBuffer dimensions) {
+            this.heightVariant = (flags & FIXED_HEIGHT) != 0 ? Util.HeightSupport.FIXED : Util.HeightSupport.FREE;
+            this.height = height;
+            this.rotationVariant = (flags & ROTATIONS) != 0;
+            this.dimensions = dimensions;
+        }
+
+        /**
+         * Returns the number of rectangles.
+         */
+        public int size() {
+            return dimensions.capacity() / INSTANCE_RECORD;
+        }
+
+        /**
+         * Returns a read only view on the mapped dimensions, with the width of rectangle {@code i} at {@code 2 * i}
+         * and its height at {@code 2 * i + 1}.
+         */
+        public IntBuffer getDimensions() {
+            return dimensions.duplicate();
+        }
+
+        /**
+         * Returns the {@code Parameters} of this instance, built on the first call.
+         * <p>
+         * Every call returns the same object, use {@link Parameters#copy()} before solving it more than once.
+         * </p>
+         */
+        public Parameters getParameters() {
+            if (parameters == null) {
+                int n = size();
+                ArrayList<Rectangle> rectangles = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    rectangles.add(new Rectangle(dimensions.get(INSTANCE_RECORD * i),
+                            dimensions.get(INSTANCE_RECORD * i + 1), i));
+                }
+                parameters = new Parameters(height, heightVariant, rotationVariant, rectangles);
+            }
+            return parameters;
+        }
+    }
+
+    /**
+     * Memory maps a binary instance.
+     *
+     * @param file the instance file
+     * @return the mapped instance
+     * @throws IOException if the file cannot be mapped or is not a binary instance of this version
+     */
+    public static MappedInstance mapInstance(Path file) throws IOException {
+        ByteBuffer buffer = map(file);
+        int[] header = readHeader(buffer, INSTANCE_MAGIC, INSTANCE_RECORD, file);
+        buffer.position(HEADER_SIZE);
+        IntBuffer dimensions = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().asReadOnlyBuffer();
+        dimensions.limit(INSTANCE_RECORD * header[2]);
+        return new MappedInstance(header[0], header[1], dimensions.slice());
+    }
+
+    /**
+     * Reads a binary solution, the rectangles are in input order with their input index as id.
+     *
+     * @param file the solution file
+     * @return the solved parameters
+     * @throws IOException if the file cannot be read or is not a binary solution of this version
+     */
+    public static Parameters readSolution(Path file) throws IOException {
+        ByteBuffer buffer = map(file);
+        int[] header = readHeader(buffer, SOLUTION_MAGIC, SOLUTION_RECORD, file);
+        buffer.position(HEADER_SIZE);
+        IntBuffer records = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+
+        ArrayList<Rectangle> rectangles = new ArrayList<>(header[2]);
+        for (int i = 0; i < header[2]; i++) {
+            int offset = SOLUTION_RECORD * i;
+            Rectangle rectangle = new Rectangle(records.get(offset), records.get(offset + 1), i);
+            if (records.get(offset + 4) != 0) {
+                rectangle.rotate();
+            }
+            rectangle.setLocation(records.get(offset + 2), records.get(offset + 3));
+            rectangle.place(true);
+            rectangles.add(rectangle);
+        }
+        int flags = header[0];
+        return new Parameters(header[1], (flags & FIXED_HEIGHT) != 0 ? Util.HeightSupport.FIXED
+                : Util.HeightSupport.FREE, (flags & ROTATIONS) != 0, rectangles);
+    }
+
+    /**
+     * Writes the rectangles of {@code parameters}, in list order, as a binary instance.
+     *
+     * @param parameters the instance to write
+     * @param file       the file to write to, created or truncated
+     * @throws IOException if writing fails
+     */
+    public static void writeInstance(Parameters parameters, Path file) throws IOException {
+        int n = parameters.rectangles.size();
+        int[] widths = new int[n];
+        int[] heights = new int[n];
+        for (int i = 0; i < n; i++) {
+            Rectangle rectangle = parameters.rectangles.get(i);
+            widths[i] = rectangle.isRotated() ? rectangle.height : rectangle.width;
+            heights[i] = rectangle.isRotated() ? rectangle.width : rectangle.height;
+        }
+        writeInstance(parameters, widths, heights, file);
+    }
+
+    /**
+     * Writes a binary instance with the header of {@code parameters} and the given dimensions.
+     */
+    private static void writeInstance(Parameters parameters, int[] widths, int[] heights, Path file)
+            throws IOException {
+        ByteBuffer buffer = allocate(parameters, INSTANCE_MAGIC, INSTANCE_RECORD, widths.length);
+        for (int i = 0; i < widths.length; i++) {
+            buffer.putInt(widths[i]).putInt(heights[i]);
+        }
+        write(buffer, file);
+    }
+
+    /**
+     * Writes solved {@code parameters} as a binary solution in the order of the input.
+     *
+     * @param parameters the solved parameters, with the input index of every rectangle as its id
+     * @param file       the file to write to, created or truncated
+     * @throws IOException if writing fails
+     */
+    public static void writeSolution(Parameters parameters, Path file) throws IOException {
+        Rectangle[] inputOrder = new Rectangle[parameters.rectangles.size()];
+        for (Rectangle rectangle : parameters.rectangles) {
+            inputOrder[rectangle.getId()] = rectangle;
+        }
+
+        ByteBuffer buffer = allocate(parameters, SOLUTION_MAGIC, SOLUTION_RECORD, inputOrder.length);
+        for (Rectangle rectangle : inputOrder) {
+            if (rectangle.isRotated()) {
+                buffer.putInt(rectangle.height).putInt(rectangle.width);
+            } else {
+                buffer.putInt(rectangle.width).putInt(rectangle.height);
+            }
+            buffer.putInt(rectangle.x).putInt(rectangle.y).putInt(rectangle.isRotated() ? 1 : 0);
+        }
+        write(buffer, file);
+    }
+
+    /**
+     * Converts a text instance to a binary instance.
+     *
+     * @param input  the {@code .in} file
+     * @param output the binary file to write
+     * @throws IOException if reading or writing fails
+     */
+    public static void convert(Path input, Path output) throws IOException {
+        UserInput userInput = new UserInput(input.toFile());
+        Parameters parameters = userInput.getUserInput();
+        writeInstance(parameters, userInput.getWidths(), userInput.getHeights(), output);
+    }
+
+    /**
+     * Returns {@code true} if {@code file} starts with the magic number of a binary instance.
+     *
+     * @param file the file to check
+     * @return {@code true} if the file is a binary instance
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isInstance(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining() && channel.read(magic) > 0) {
+                // Keep reading until the magic number is complete
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == INSTANCE_MAGIC;
+        }
+    }
+
+    private static ByteBuffer allocate(Parameters parameters, int magic, int record, int n) {
+        int flags = (parameters.heightVariant == Util.HeightSupport.FIXED ? FIXED_HEIGHT : 0)
+                | (parameters.rotationVariant ? ROTATIONS : 0);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + record * Integer.BYTES * n)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        return buffer.putInt(magic).putInt(VERSION).putInt(flags).putInt(parameters.height).putInt(n);
+    }
+
+    private static void write(ByteBuffer buffer, Path file) throws IOException {
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File too large to map: " + file);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Checks the header and returns the flags, height and number of rectangles.
+     */
+    private static int[] readHeader(ByteBuffer buffer, int magic, int record, Path file) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != magic) {
+            throw new IOException("Not a binary " + (magic == INSTANCE_MAGIC ? "instance" : "solution") + ": "
+                    + file);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported version " + buffer.getInt(4) + ": " + file);
+        }
+        int n = buffer.getInt(16);
+        if (n <= 0 || (long) n * record * Integer.BYTES > buffer.limit() - HEADER_SIZE) {
+            throw new IOException("Truncated file: " + file);
+        }
+        return new int[]{buffer.getInt(8), buffer.getInt(12), n};
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BinaryFormat <.in file|directory> <output directory>");
+            System.exit(2);
+        }
+        Path source = Paths.get(args[0]);
+        Path outputDirectory = Paths.get(args[1]);
+
+        List<Path> inputs;
+        if (Files.isDirectory(source)) {
+            try (Stream<Path> files = Files.walk(source)) {
+                inputs = files.filter(file -> file.toString().endsWith(".in")).collect(Collectors.toList());
+            }
+        } else {
+            inputs = new ArrayList<>();
+            inputs.add(source);
+        }
+
+        for (Path input : inputs) {
+            Path relative = Files.isDirectory(source) ? source.relativize(input) : input.getFileName();
+            String name = relative.getFileName().toString();
+            Path output = outputDirectory.resolve(relative)
+                    .resolveSibling(name.substring(0, name.length() - ".in".length()) + EXTENSION);
+            Files.createDirectories(output.toAbsolutePath().getParent());
+            convert(input, output);
+        }
+        System.err.println("Converted " + inputs.size() + " instances");
+    }
+}
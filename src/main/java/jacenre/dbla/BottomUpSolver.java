@@ -23,48 +23,74 @@ public class BottomUpSolver extends AbstractSolver {
     }
 
     @Override
-    public boolean canSolveParameters(Parameters parameters) {
-        boolean superResult = super.canSolveParameters(parameters);
-        if (!superResult) {
-			return false;
-		}
-        return parameters.rectangles.size() <= 9999 || parameters.heightVariant != Util.HeightSupport.FREE && !parameters.freeHeightUtil;
+    int maxRectangles(boolean free) {
+        return free ? 9999 : Integer.MAX_VALUE;
     }
 
     Parameters parameters;
 
+    /**
+     * The rectangles of {@link #parameters} that are being packed.
+     */
+    RectangleStore store;
+
+    /**
+     * Store indices sorted on area, largest first.
+     */
+    private int[] areaSorted;
+
+    /**
+     * Number of rectangles that still need to be placed.
+     */
+    private int remaining;
+
     @Override
     @SuppressWarnings("Duplicates")
     Solution pack(Parameters parameters) {
         this.parameters = parameters;
+        this.store = parameters.getStore();
+        final RectangleStore store = this.store;
         // Start with all rectangles rotated so that width >= height.
         if (parameters.rotationVariant) {
-            for (Rectangle rectangle :
-                    parameters.rectangles) {
-                if (rectangle.height > rectangle.width) {
-                    rectangle.rotate();
+            for (int i = 0; i < store.size; i++) {
+                if (store.h[i] > store.w[i]) {
+                    store.rotate(i);
                 }
             }
         }
 
         // Sort on width, with height as the tie-breaker
-        parameters.rectangles.sort((o1, o2) -> o2.height - o1.height);
-        parameters.rectangles.sort((o1, o2) -> o2.width - o1.width);
+        store.sort((i, j) -> store.w[i] != store.w[j] ? store.w[j] - store.w[i] : store.h[j] - store.h[i]);
 
         //up until this point, the code was identical to the first fit solver, here it diverges
 
-        ArrayList<Rectangle> toPlace = new ArrayList<>(parameters.rectangles);
+        // The placed bits mark the rectangles that are no longer to be placed, the rest is kept in store order.
+        store.placed.clear();
+        remaining = store.size;
+
+        //now we need an array of all rectangles sorted on area, the area does not change when rotating
+        Integer[] byArea = new Integer[store.size];
+        for (int i = 0; i < store.size; i++) {
+            byArea[i] = i;
+        }
+        Arrays.sort(byArea, (o1, o2) -> store.h[o2] * store.w[o2] - store.h[o1] * store.w[o1]);
+        areaSorted = new int[store.size];
+        for (int i = 0; i < store.size; i++) {
+            areaSorted[i] = byArea[i];
+        }
 
         int xPos = 0; //starting x position for the next box
-        while (!toPlace.isEmpty()) {
-            Rectangle first = toPlace.get(0);
-            toPlace.remove(0);
+        int first = 0;
+        while (remaining > 0) {
+            while (store.placed.get(first)) {
+                first++;
+            }
 
             //if this was the last rectangle, rotate it to minimize width
-            if(toPlace.isEmpty()) {
-                if(first.width > first.height && first.width <= parameters.height) {
+            if(remaining == 1) {
+                if(store.w[first] > store.h[first] && store.w[first] <= parameters.height) {
                     if (parameters.rotationVariant) {
-						first.rotate();
+						store.rotate(first);
 					}
                 }
             }
@@ -73,35 +99,31 @@ public class BottomUpSolver extends AbstractSolver {
 
             xPos += box.width; //the width of the first box
 
-            if (!toPlace.isEmpty()) {
-                packRun(box, toPlace);
+            if (remaining > 0) {
+                packRun(box);
             }
         }
 
-        return new Solution(parameters, this);
+        parameters.setStore(store);
+        return new Solution(parameters, this, store);
     }
 
     /**
      * Packs as many rectangles as possible into a single box.
-     * Updates the toPlace list.
+     * Marks the placed rectangles in the store.
      * @param box the box to fill
-     * @param toPlace the rectangles that still need to be filled
      */
-    private void packRun(Box box, ArrayList<Rectangle> toPlace) {
-        ArrayList<Rectangle> toRemove = new ArrayList<>();
-
+    private void packRun(Box box) {
         // place the largest width rectangle that fits in the remaining height
-        for (Rectangle rectangle : toPlace) {
+        for (int i = store.placed.nextClearBit(0); i < store.size; i = store.placed.nextClearBit(i + 1)) {
             if (box.heightFilled >= box.height) {
                 break; //will no longer fit anything
             }
 
-            if (box.heightFilled + rectangle.height <= box.height) {
-                toRemove.add(rectangle);
-                box.firstPassPlace(rectangle);
+            if (box.heightFilled + store.h[i] <= box.height) {
+                box.firstPassPlace(i);
             }
         }
-        toPlace.removeAll(toRemove);
 
         //if needed, add final row to fit last bit of height. This will always be merged with the one before it
         if (box.heightFilled != box.height) {
@@ -114,38 +136,31 @@ public class BottomUpSolver extends AbstractSolver {
         //merge rows together that have the same remaining width
         box.mergeRows();
 
-        //now we need an list of all rectangles to go sorted on area
-        ArrayList<Rectangle> areaSorted = new ArrayList<>(toPlace);
-        areaSorted.sort((o1, o2) -> o2.height * o2.width - o1.height * o1.width);
-
         //keep finding the row with the most remaining width
         //place the largest area rectangle that fits
         while (box.rows.size() >= 1) { //the border row is not considered a row
             box.rows.sort((o1, o2) -> o2.widthLeft - o1.widthLeft);
             Row row = box.rows.get(0);
-            toRemove = new ArrayList<>();
             boolean placedAny = false;
 
-            for (Rectangle rectangle : areaSorted) {
-                if( rectangle.width <= row.widthLeft && rectangle.height <= row.height) {
+            for (int rectangle : areaSorted) {
+                if (store.placed.get(rectangle)) {
+                    continue;
+                }
+                if( store.w[rectangle] <= row.widthLeft && store.h[rectangle] <= row.height) {
                     box.place(rectangle, row);
                     placedAny = true;
-                    toRemove.add(rectangle);
                     break;
-                } else if (box.rotation && rectangle.height <= row.widthLeft && rectangle.width <= row.height) {
+                } else if (box.rotation && store.h[rectangle] <= row.widthLeft && store.w[rectangle] <= row.height) {
                     if (parameters.rotationVariant) {
-						rectangle.rotate();
+						store.rotate(rectangle);
 					}
                     box.place(rectangle, row);
                     placedAny = true;
-                    toRemove.add(rectangle);
                     break;
                 }
             }
-            if (placedAny) {
-                areaSorted.removeAll(toRemove);
-                toPlace.removeAll(toRemove);
-            } else {
+            if (!placedAny) {
                 if (box.rows.size() == 1) {
                     break;
                 }
@@ -190,59 +205,58 @@ public class BottomUpSolver extends AbstractSolver {
 
         /**
          * Constructor
-         * @param first the first rectangle to be placed in the box.
+         * @param first the store index of the first rectangle to be placed in the box.
          * @param x the x coordinate the box starts at
          * @param height the given fixed height.
          * @param rotation whether rotation is allowed or not.
          */
-        Box(Rectangle first, int x, int height, boolean rotation) {
+        Box(int first, int x, int height, boolean rotation) {
             this.height = height;
             this.xPos = x;
-            this.width = first.width;
+            this.width = store.w[first];
             this.rotation = rotation;
-            this.heightFilled += first.height;
-            first.x = x;
-            first.y = 0;
-            rows.add(new Row(first, this, border, border));
-            first.place(true);
+            this.heightFilled += store.h[first];
+            store.setLocation(first, x, 0);
+            rows.add(new Row(store, first, this, border, border));
+            store.place(first, true);
+            remaining--;
             Util.animate(parameters, getSolver());
         }
 
-        void firstPassPlace(Rectangle rectangle) {
-            rectangle.x = xPos;
-            rectangle.y = heightFilled;
-            heightFilled += rectangle.height;
-            rectangle.place(true);
+        void firstPassPlace(int rectangle) {
+            store.setLocation(rectangle, xPos, heightFilled);
+            heightFilled += store.h[rectangle];
+            store.place(rectangle, true);
+            remaining--;
             Row previous = rows.get(rows.size() - 1); //only works because this is before row sorting
-            Row row = new Row(rectangle, this, previous, border);
+            Row row = new Row(store, rectangle, this, previous, border);
             rows.add(row);
             previous.next = row;
             Util.animate(parameters, getSolver());
         }
 
-        void place(Rectangle rectangle, Row row) {
-            rectangle.x = row.xPos;
-
+        void place(int rectangle, Row row) {
             //put it up against the neighbouring row with the least width left, or the edge of the box if possible
             int yPos = row.yPos;
             if (row.previous.widthLeft > row.next.widthLeft) {
-                yPos += row.height - rectangle.height; //place it against the next row instead
+                yPos += row.height - store.h[rectangle]; //place it against the next row instead
             }
 
-            rectangle.y = yPos;
-            rectangle.place(true);
+            store.setLocation(rectangle, row.xPos, yPos);
+            store.place(rectangle, true);
+            remaining--;
             Util.animate(parameters, getSolver());
 
             //if the placed rectangle overlaps with the row perfectly, this could be done more efficiently.
             //not currently doing that
             Row previous;
             Row next;
-            Row newRow = new Row(rectangle, this, row.widthLeft);
+            Row newRow = new Row(store, rectangle, this, row.widthLeft);
 
-            if (rectangle.y == row.yPos) { //our new row starts where the old row started
+            if (store.y[rectangle] == row.yPos) { //our new row starts where the old row started
                 previous = row.previous;
                 next = row;
-                row.yPos += rectangle.height; // old row is shifted down
+                row.yPos += store.h[rectangle]; // old row is shifted down
                 row.previous = newRow;
             } else {
                 previous = row;
@@ -252,7 +266,7 @@ public class BottomUpSolver extends AbstractSolver {
 
             newRow.previous = previous;
             newRow.next = next;
-            row.height -= rectangle.height; //old row loses height
+            row.height -= store.h[rectangle]; //old row loses height
             rows.add(newRow);
             mergeRows();
         }
@@ -296,27 +310,28 @@ public class BottomUpSolver extends AbstractSolver {
 
         /**
          * Constructor when creating a new row from a single rectangle
-         * @param first the first rectangle placed in this row
+         * @param store the store holding the rectangles
+         * @param first the store index of the first rectangle placed in this row
          * @param box the box this row is for
          * @param next the row below this one, border if there is no row below
          * @param previous the row above this one, border if there is no row above
          */
-        Row(Rectangle first, Box box, Row previous, Row next) {
+        Row(RectangleStore store, int first, Box box, Row previous, Row next) {
             this.box = box;
-            this.xPos = first.x + first.width;
-            this.yPos = first.y;
-            this.height = first.height;
-            this.widthLeft = box.width - first.width;
+            this.xPos = store.x[first] + store.w[first];
+            this.yPos = store.y[first];
+            this.height = store.h[first];
+            this.widthLeft = box.width - store.w[first];
             this.previous = previous;
             this.next = next;
         }
 
-        Row(Rectangle first, Box box, int widthLeft) {
+        Row(RectangleStore store, int first, Box box, int widthLeft) {
             this.box = box;
-            this.xPos = first.x + first.width;
-            this.yPos = first.y;
-            this.height = first.height;
-            this.widthLeft = widthLeft - first.width;
+            this.xPos = store.x[first] + store.w[first];
+            this.yPos = store.y[first];
+            this.height = store.h[first];
+            this.widthLeft = widthLeft - store.w[first];
         }
 
         Row(Box box, Row previous) {
@@ -343,4 +358,11 @@ public class BottomUpSolver extends AbstractSolver {
     public AbstractSolver getSolver() {
         return this;
     }
+
+    @Override
+    AbstractSolver newInstance() {
+        BottomUpSolver solver = new BottomUpSolver();
+        solver.allowInputSorting = allowInputSorting;
+        return solver;
+    }
 }
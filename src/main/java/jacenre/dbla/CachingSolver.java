@@ -0,0 +1,104 @@
+package jacenre.dbla;
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Solves with another solver, usually a {@link CompoundSolver}, through a {@link SolutionCache}.
+ * <p>
+ * A solve that was done before with at least the same time budget is answered from the cache. Otherwise the instance
+ * is solved and the better of the new and the cached solution is returned, so an entry keeps improving as an instance
+ * is solved again with more time. A solve without a time limit counts as a budget of
+ * {@link PackingSolver#TIME_LIMIT}.
+ * </p>
+ * <p>
+ * The solutions of the wrapped solver are published as solutions of this solver, a cached solution is published as
+ * well.
+ * </p>
+ */
+public class CachingSolver extends AbstractSolver {
+
+    private final AbstractSolver solver;
+    private final SolutionCache cache;
+
+    /**
+     * @param solver the solver that solves on a miss
+     * @param cache  the cache, it can be shared by several solvers
+     */
+    public CachingSolver(AbstractSolver solver, SolutionCache cache) {
+        this.solver = solver;
+        this.cache = cache;
+        solver.addListener((solution, name, timestamp) -> publish(solution));
+    }
+
+    public AbstractSolver getSolver() {
+        return solver;
+    }
+
+    public SolutionCache getCache() {
+        return cache;
+    }
+
+    @Override
+    Set<Util.HeightSupport> getHeightSupport() {
+        return solver.getHeightSupport();
+    }
+
+    @Override
+    public boolean canSolveParameters(Parameters parameters, long budget) {
+        return solver.canSolveParameters(parameters, budget);
+    }
+
+    @Override
+    public double estimateCost(Parameters parameters) {
+        return solver.estimateCost(parameters);
+    }
+
+    /**
+     * Returns the cached solution of {@code parameters} if it was found with at least the budget of
+     * {@code deadline}, otherwise solves them with the wrapped solver.
+     * <p>
+     * The wrapped solver gets a copy of {@code parameters}, the caller's rectangles are not modified. A valid new
+     * solution is stored in the cache, a failing cache is only reported in debug mode.
+     * </p>
+     */
+    @Override
+    public Solution getSolution(Parameters parameters, Deadline deadline) throws IllegalArgumentException {
+        long budget = deadline.isBounded() ? deadline.budget() : PackingSolver.TIME_LIMIT;
+        Solution cached = cache.get(parameters, budget);
+        if (cached != null) {
+            cached.solvedBy = this;
+            publish(cached);
+            return cached;
+        }
+
+        Solution solution = solver.getSolution(parameters.copy(), deadline);
+        if (solution != null && Util.isValidSolution(solution)) {
+            try {
+                cache.put(parameters, solution, budget);
+            } catch (IOException e) {
+                if (Util.debug) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        // An earlier solve with less time may still have found a better solution
+        Solution best = cache.get(parameters);
+        if (best != null && (solution == null || best.isBetter(solution))) {
+            best.solvedBy = this;
+            return best;
+        }
+        return solution;
+    }
+
+    @Override
+    Solution pack(Parameters parameters) {
+        return solver.pack(parameters, deadline);
+    }
+
+    @Override
+    AbstractSolver newInstance() {
+        AbstractSolver copy = solver.copy();
+        return copy == null ? null : new CachingSolver(copy, cache);
+    }
+}
@@ -1,5 +1,13 @@
 package jacenre.dbla;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Run multiple solvers on the given parameters and return the best solution.
@@ -24,6 +32,26 @@ public class CompoundSolver extends AbstractSolver {
      */
     private ArrayList<AbstractSolver> solvers = new ArrayList<>();
 
+    /**
+     * Run the solvers at the same time instead of one after another.
+     */
+    private boolean parallel = false;
+
+    /**
+     * Divides the time over the solvers, {@code null} to give every solver the same time.
+     */
+    private PortfolioScheduler scheduler;
+
+    /**
+     * Threads running the solvers in parallel mode, shared by all compound solvers. The threads are daemons so they
+     * never keep the JVM alive.
+     */
+    private static final ExecutorService POOL = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "compound-solver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     /**
      * Add a solver to the CompoundSolver.
      *
@@ -34,12 +62,61 @@ public class CompoundSolver extends AbstractSolver {
         return this;
     }
 
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Run the solvers in parallel, every solver on its own thread, or one after another.
+     *
+     * @return this CompoundSolver
+     */
+    public CompoundSolver setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    public PortfolioScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Divide the time over the solvers with {@code scheduler}, or {@code null} to give every solver the same time.
+     * <p>
+     * In parallel mode every solver gets a slice of the deadline in proportion to its weight, and is cancelled once
+     * its slice is used up. Every improvement a solver publishes extends its slice by half a slice, so the time goes
+     * to the solvers that keep improving. One after another the solvers run by decreasing weight, every solver gets
+     * a share of the time that is left in proportion to its weight.
+     * </p>
+     *
+     * @return this CompoundSolver
+     */
+    public CompoundSolver setScheduler(PortfolioScheduler scheduler) {
+        this.scheduler = scheduler;
+        return this;
+    }
+
     /**
      * Solves the given {@code parameters} using every {@code Solver} in {@code solvers}, returns the {@code Solution}
      * object associated with the best score found.
      * <p>
      * Ignores any thrown {@code IllegalArgumentException}. Deep copies the {@code parameters} before giving
-     * it to a solver.
+     * it to a solver, the solutions are not copied again since every solver owns the copy it was given.
+     * Only the solvers that are expected to fit the {@link #budget()} are used, see
+     * {@link AbstractSolver#canSolveParameters(Parameters, long)}, or the fastest one if none of them fits.
+     * </p>
+     * <p>
+     * Stops as soon as a solution reaches the {@link #lowerBound(Parameters)}, no other solution can be better.
+     * In parallel mode the other solvers are cancelled at that point.
+     * </p>
+     * <p>
+     * In parallel mode every solver gets the whole {@link #deadline}. Otherwise every solver gets an equal share of
+     * the time that is left when it starts, so the time a fast solver does not use goes to the solvers after it.
+     * With a {@link #setScheduler(PortfolioScheduler) scheduler} the time is divided by the weights of the solvers.
+     * </p>
+     * <p>
+     * Every new best solution is {@link #publish(Solution) published}, including the improvements the solvers
+     * publish before they return.
      * </p>
      *
      * @param parameters the {@code Parameters} to be used by the solver
@@ -47,53 +124,351 @@ public class CompoundSolver extends AbstractSolver {
      */
     @Override
     public Solution pack(Parameters parameters) {
-        Parameters initialParameters = parameters.copy();
-        bestSolution = null;
+        AtomicReference<Candidate> incumbent = new AtomicReference<>();
+        long lowerBound = lowerBound(parameters);
+        // Prevent solvers that don't have FIXED to be used in the free height util, or that do not fit the budget.
+        List<Integer> eligible = new ArrayList<>();
+        for (int i = 0; i < solvers.size(); i++) {
+            if (solvers.get(i).canSolveParameters(parameters, budget())) {
+                eligible.add(i);
+            }
+        }
+        // If no solver fits the budget, use the one that is expected to be the fastest
+        if (eligible.isEmpty()) {
+            // A solver with an unknown cost is only used if no other cost is known
+            int fastest = -1;
+            double fastestCost = Double.NaN;
+            for (int i = 0; i < solvers.size(); i++) {
+                double cost = solvers.get(i).estimateCost(parameters);
+                if (solvers.get(i).canSolveParameters(parameters, Long.MAX_VALUE)
+                        && (fastest < 0 || cost < fastestCost || Double.isNaN(fastestCost) && !Double.isNaN(cost))) {
+                    fastest = i;
+                    fastestCost = cost;
+                }
+            }
+            if (fastest >= 0) {
+                eligible.add(fastest);
+            }
+        }
+
+        // The weight of every solver, in the order of the eligible solvers
+        double[] weights = new double[eligible.size()];
+        if (scheduler == null) {
+            Arrays.fill(weights, 1);
+        } else {
+            List<AbstractSolver> portfolio = new ArrayList<>();
+            for (int i : eligible) {
+                portfolio.add(solvers.get(i));
+            }
+            weights = scheduler.weights(InstanceFeatures.of(parameters), portfolio);
+        }
+
+        // Solvers that publish their improvements offer them as incumbent right away
+        AtomicLongArray improved = new AtomicLongArray(solvers.size());
+        List<SolutionListener> forwards = new ArrayList<>();
+        for (int i : eligible) {
+            AbstractSolver solver = solvers.get(i);
+            SolutionListener forward = (solution, name, timestamp) -> {
+                improved.set(i, System.nanoTime());
+                if (accept(incumbent, i, solution, lowerBound)) {
+                    solver.deadline.cancel();
+                }
+            };
+            solver.addListener(forward);
+            forwards.add(forward);
+        }
+
+        try {
+            if (parallel) {
+                packParallel(parameters, eligible, weights, improved, incumbent, lowerBound);
+            } else {
+                packSequential(parameters, eligible, weights, incumbent, lowerBound);
+            }
+        } finally {
+            for (int k = 0; k < eligible.size(); k++) {
+                solvers.get(eligible.get(k)).removeListener(forwards.get(k));
+            }
+        }
+        Candidate best = incumbent.get();
+        bestSolution = best == null ? null : best.solution;
+        return bestSolution;
+    }
+
+    /**
+     * Runs the {@code eligible} solvers one after another by decreasing weight, every solver gets a share of the time
+     * that is left in proportion to its weight.
+     */
+    private void packSequential(Parameters parameters, List<Integer> eligible, double[] weights,
+                                AtomicReference<Candidate> incumbent, long lowerBound) {
+        // The heaviest solvers first, a stable sort keeps the order of equal weights
+        List<Integer> order = new ArrayList<>();
+        for (int k = 0; k < eligible.size(); k++) {
+            order.add(k);
+        }
+        order.sort((k1, k2) -> Double.compare(weights[k2], weights[k1]));
+        double left = 0;
+        for (double weight : weights) {
+            left += weight;
+        }
+
         // Try and getSolution it using all the solvers in the array
-        for (AbstractSolver solver :
-                solvers) {
+        for (int k : order) {
+            if (deadline.isExpired()) {
+                break;
+            }
+            int i = eligible.get(k);
+            Deadline share = deadline.isBounded()
+                    ? deadline.child((long) (deadline.remaining() * (weights[k] / left)))
+                    : deadline.child();
+            left -= weights[k];
             try {
-                // Prevent solvers that don't have FIXED to be used in the free height util.
-                if (!solver.canSolveParameters(parameters)) {
-                    continue;
+                if (accept(incumbent, i, solvers.get(i).pack(parameters.copy(), share), lowerBound)) {
+                    break;
                 }
-                Solution solution = solver.pack(initialParameters.copy());
-
-                // If we didn't find a solution.
-                if (solution == null) {
-					continue;
-				}
-
-                double rate = solution.getRate();
-
-                // Overflow
-                if (rate < 0) {
-                    if (Util.debug) {
-						System.err.println("Negative rate");
-					}
-                    continue;
-                } else if (rate == 1.0d) {
-                    return solution;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Runs the {@code eligible} solvers in {@link #POOL} and waits until all of them are done.
+     * <p>
+     * With a {@link #scheduler} and a time limit every solver is cancelled once its slice is used up, see
+     * {@link Task#isOverdue(long)}.
+     * </p>
+     */
+    private void packParallel(Parameters parameters, List<Integer> eligible, double[] weights,
+                              AtomicLongArray improved, AtomicReference<Candidate> incumbent, long lowerBound) {
+        boolean scheduled = scheduler != null && deadline.isBounded();
+        long budget = deadline.remaining();
+        List<Task> tasks = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(eligible.size());
+        for (int k = 0; k < eligible.size(); k++) {
+            long slice = scheduled ? (long) (budget * weights[k]) * 1000000 : Long.MAX_VALUE;
+            // Copy here, the caller may change the parameters as soon as this returns
+            tasks.add(new Task(eligible.get(k), parameters.copy(), deadline.child(), slice, improved, incumbent,
+                    lowerBound, tasks, done));
+        }
+        for (Task task : tasks) {
+            POOL.execute(task);
+        }
+
+        // Wait for cancelled solvers as well, a solver must not be packing twice at the same time
+        long tick = Math.max(5, Math.min(100, budget / 100));
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (!scheduled) {
+                    done.await();
+                    break;
                 }
+                if (done.await(tick, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+                long now = System.nanoTime();
+                for (Task task : tasks) {
+                    if (task.isOverdue(now)) {
+                        task.cancel();
+                    }
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+                tasks.forEach(Task::cancel);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Offers the solution of the solver at {@code index} as the new incumbent.
+     * <p>
+     * Only solutions with a rate of at least 1 are considered. A solution replaces the incumbent if it
+     * {@link Solution#isBetter(Solution) is better}, or if neither is better and its solver comes first. This picks
+     * the same solution in whatever order the solvers finish. A new incumbent is published.
+     * </p>
+     *
+     * @return true if the incumbent is optimal, it reaches the {@code lowerBound}
+     */
+    private boolean accept(AtomicReference<Candidate> incumbent, int index, Solution solution, long lowerBound) {
+        // If we didn't find a solution.
+        if (solution == null) {
+            return false;
+        }
+
+        double rate = solution.getRate();
+
+        // Overflow
+        if (rate < 0) {
+            if (Util.debug) {
+                System.err.println("Negative rate");
+            }
+            return false;
+        } else if (rate < 1) {
+            return false;
+        }
+
+        Candidate candidate = new Candidate(index, solution);
+        Candidate current;
+        do {
+            current = incumbent.get();
+            if (current != null && !candidate.isBetter(current)) {
+                if (Util.debug) {
+                    System.err.println(solvers.get(index).getName() + " is not better with " + solution.getArea());
+                }
+                return current.solution.getArea() <= lowerBound;
+            }
+        } while (!incumbent.compareAndSet(current, candidate));
+
+        if (Util.debug) {
+            System.err.println(solvers.get(index).getName() + " is improved with " + solution.getArea());
+        }
+        // Publish under a lock and only while still the incumbent, so the listeners only see improvements
+        synchronized (incumbent) {
+            if (incumbent.get() == candidate) {
+                publish(solution);
+            }
+        }
+        return solution.getArea() <= lowerBound;
+    }
+
+    /**
+     * Returns a lower bound on the area of any solution.
+     * <p>
+     * This is the total area of the rectangles. For a fixed height the width is at least the total area divided by
+     * the height, and without rotations at least the width of the widest rectangle.
+     * </p>
+     *
+     * @param parameters the parameters to be solved
+     * @return a lower bound on {@link Solution#getArea()}
+     */
+    static long lowerBound(Parameters parameters) {
+        long area = 0;
+        long widest = 0;
+        for (Rectangle rectangle : parameters.rectangles) {
+            area += (long) rectangle.width * rectangle.height;
+            widest = Math.max(widest, rectangle.width);
+        }
+        if (parameters.heightVariant != Util.HeightSupport.FIXED || parameters.height <= 0) {
+            return area;
+        }
+        long width = (area + parameters.height - 1) / parameters.height;
+        if (!parameters.rotationVariant) {
+            width = Math.max(width, widest);
+        }
+        return width * parameters.height;
+    }
+
+    /**
+     * A solution together with the position of its solver in {@link #solvers}.
+     */
+    private static class Candidate {
+        final int index;
+        final Solution solution;
+
+        Candidate(int index, Solution solution) {
+            this.index = index;
+            this.solution = solution;
+        }
 
-                // If we found a better solution.
-                if (bestSolution == null) {
-                    if (rate >= 1) {
-                        bestSolution = solution.copy();
+        boolean isBetter(Candidate other) {
+            return solution.isBetter(other.solution) || (!other.solution.isBetter(solution) && index < other.index);
+        }
+    }
+
+    /**
+     * A solver packing its own copy of the parameters in parallel mode, cancelled through its own deadline.
+     */
+    private class Task implements Runnable {
+        final int index;
+        final Parameters parameters;
+        final Deadline deadline;
+        final AtomicReference<Candidate> incumbent;
+        final long lowerBound;
+
+        /**
+         * The time in nanoseconds this task may run without improving, and the time of the last improvement of
+         * every solver.
+         */
+        final long slice;
+        final AtomicLongArray improved;
+        final long start = System.nanoTime();
+
+        /**
+         * All tasks of this run, they are cancelled once this task finds an optimal solution.
+         */
+        final List<Task> tasks;
+        final CountDownLatch done;
+
+        Task(int index, Parameters parameters, Deadline deadline, long slice, AtomicLongArray improved,
+             AtomicReference<Candidate> incumbent, long lowerBound, List<Task> tasks, CountDownLatch done) {
+            this.index = index;
+            this.parameters = parameters;
+            this.deadline = deadline;
+            this.slice = slice;
+            this.improved = improved;
+            this.incumbent = incumbent;
+            this.lowerBound = lowerBound;
+            this.tasks = tasks;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!deadline.isCancelled()
+                        && accept(incumbent, index, solvers.get(index).pack(parameters, deadline), lowerBound)) {
+                    for (Task task : tasks) {
+                        if (task != this) {
+                            task.cancel();
+                        }
                     }
-                    if (Util.debug) {
-						System.err.println(solver.getClass().getSimpleName() + " is improved with " + solution.getArea());
-					}
-                } else if (solution.isBetter(bestSolution)) {
-                    bestSolution = solution.copy();
-                } else if (Util.debug) {
-					System.err.println(solver.getClass().getSimpleName() + " is not better with " + solution.getArea());
-				}
+                }
             } catch (Exception e) {
                 e.printStackTrace();
+            } finally {
+                done.countDown();
             }
         }
-        return bestSolution;
+
+        void cancel() {
+            deadline.cancel();
+        }
+
+        /**
+         * Returns {@code true} if this task used up its slice, the slice ends half a slice after the last
+         * improvement if that is later.
+         */
+        boolean isOverdue(long now) {
+            if (slice == Long.MAX_VALUE) {
+                return false;
+            }
+            long last = improved.get(index);
+            long end = start + slice;
+            if (last != 0 && last - start > 0 && last + slice / 2 - end > 0) {
+                end = last + slice / 2;
+            }
+            return now - end >= 0;
+        }
+    }
+
+    /**
+     * Returns a compound solver with a copy of every solver, or {@code null} if one of them cannot be copied.
+     */
+    @Override
+    AbstractSolver newInstance() {
+        CompoundSolver compoundSolver = new CompoundSolver().setParallel(parallel).setScheduler(scheduler);
+        compoundSolver.allowInputSorting = allowInputSorting;
+        for (AbstractSolver solver : solvers) {
+            AbstractSolver copy = solver.copy();
+            if (copy == null) {
+                return null;
+            }
+            compoundSolver.addSolver(copy);
+        }
+        return compoundSolver;
     }
 
     /**
@@ -13,12 +13,8 @@ public class CompressionSolver extends AbstractSolver {
     }
 
     @Override
-    public boolean canSolveParameters(Parameters parameters) {
-        boolean superResult = super.canSolveParameters(parameters);
-        if (!superResult) {
-			return false;
-		}
-        return parameters.rectangles.size() <= 2000;
+    int maxRectangles(boolean free) {
+        return 2000;
     }
 
     /**
@@ -32,9 +28,16 @@ public class CompressionSolver extends AbstractSolver {
         FirstFitSolver firstFitSolver = new FirstFitSolver();
         SimpleTopLeftSolver simpleTopLeftSolver = new SimpleTopLeftSolver();
 
-        Solution solution = firstFitSolver.getSolution(parameters);
-        solution = simpleTopLeftSolver.getSolution(solution.parameters);
+        Solution solution = firstFitSolver.getSolution(parameters, deadline);
+        solution = simpleTopLeftSolver.getSolution(solution.parameters, deadline);
 
         return new Solution(solution.parameters, this);
     }
+
+    @Override
+    AbstractSolver newInstance() {
+        CompressionSolver solver = new CompressionSolver();
+        solver.allowInputSorting = allowInputSorting;
+        return solver;
+    }
 }
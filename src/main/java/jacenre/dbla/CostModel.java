@@ -0,0 +1,279 @@
+package jacenre.dbla;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Estimates the time a solver takes, so a solver is only used if it fits the time budget, see
+ * {@link AbstractSolver#canSolveParameters(Parameters, long)}.
+ * <p>
+ * The time of a single pack of {@code n} rectangles is modelled as {@code a * n^b} milliseconds, with {@code a} and
+ * {@code b} fitted per solver and per height variant by timing packs of growing random instances, see
+ * {@link #calibrate(List, int)}. A free height search packs as many heights as its budget allows, it plans them
+ * from the time of its first height. So it fits the budget if its first height fits the
+ * {@link FreeHeightUtil#FIRST_HEIGHT_SHARE share} of the budget the search gives it.
+ * </p>
+ * <p>
+ * The default model is read from the file in the {@value #PROPERTY} system property, written on the host at install
+ * time with {@link #main(String[])}. Without it the {@value #RESOURCE} resource is used, it was fitted on a
+ * development machine. The cost of a solver without a fit is unknown, it falls back to
+ * {@link AbstractSolver#maxRectangles(boolean)}.
+ * </p>
+ * <p>
+ * Usage: {@code CostModel <output file> [largest size]}
+ * </p>
+ */
+public class CostModel {
+
+    /**
+     * The name of the resource with the fits of the development machine, next to this class.
+     */
+    static final String RESOURCE = "cost-model.csv";
+
+    /**
+     * The system property with the path of a cost model fitted on the host.
+     */
+    static final String PROPERTY = "dbla.costModel";
+
+    /**
+     * The factor between an estimate and the budget it has to fit in. The fits are made on random instances, one
+     * solver at a time, while in a solve the solvers share the processors.
+     */
+    static final double MARGIN = 2;
+
+    /**
+     * A calibration stops growing the instance once a pack takes this many milliseconds.
+     */
+    private static final double SLOWEST_PACK = 2000;
+
+    private static CostModel defaultModel;
+
+    /**
+     * The {@code a} and {@code b} of every solver and height variant, keyed by the solver and the variant.
+     */
+    private final Map<String, double[]> fits = new TreeMap<>();
+
+    /**
+     * Returns the cost model of the {@value #PROPERTY} file, or of the {@value #RESOURCE} resource if the property is
+     * not set.
+     */
+    public static synchronized CostModel getDefault() {
+        if (defaultModel == null) {
+            String path = System.getProperty(PROPERTY);
+            try {
+                if (path != null) {
+                    try (Reader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+                        defaultModel = read(reader);
+                    }
+                } else {
+                    try (InputStream stream = CostModel.class.getResourceAsStream(RESOURCE)) {
+                        defaultModel = stream == null ? new CostModel()
+                                : read(new InputStreamReader(stream, StandardCharsets.UTF_8));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return defaultModel;
+    }
+
+    /**
+     * Reads a cost model written by {@link #write(Writer)}.
+     *
+     * @throws IOException if reading fails or a line is malformed
+     */
+    public static CostModel read(Reader reader) throws IOException {
+        CostModel model = new CostModel();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("solver,")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (fields.length != 4 || !fields[1].equals("fixed") && !fields[1].equals("free")) {
+                throw new IOException("Malformed line: " + line);
+            }
+            try {
+                model.fit(fields[0], fields[1].equals("free"), Double.parseDouble(fields[2]),
+                        Double.parseDouble(fields[3]));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed line: " + line, e);
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Writes the cost model as CSV with a line per solver and height variant.
+     *
+     * @throws IOException if writing fails
+     */
+    public void write(Writer writer) throws IOException {
+        BufferedWriter lines = new BufferedWriter(writer);
+        lines.write("solver,variant,a,b");
+        lines.newLine();
+        for (Map.Entry<String, double[]> entry : fits.entrySet()) {
+            lines.write(entry.getKey() + "," + entry.getValue()[0] + "," + entry.getValue()[1]);
+            lines.newLine();
+        }
+        lines.flush();
+    }
+
+    /**
+     * Sets the time of a single pack of {@code n} rectangles by {@code solver} to {@code a * n^b} milliseconds.
+     *
+     * @param free whether the fit is for the fixed height sub problems of a free height search
+     */
+    void fit(String solver, boolean free, double a, double b) {
+        fits.put(solver + "," + (free ? "free" : "fixed"), new double[]{a, b});
+    }
+
+    /**
+     * Returns the estimated time in milliseconds {@code solver} takes to solve {@code parameters}, {@code NaN} if
+     * there is no fit for the solver.
+     *
+     * @param solver the simple class name of the solver
+     */
+    public double estimate(String solver, Parameters parameters) {
+        boolean free = parameters.heightVariant == Util.HeightSupport.FREE || parameters.freeHeightUtil;
+        double[] fit = fits.get(solver + "," + (free ? "free" : "fixed"));
+        if (fit == null) {
+            return Double.NaN;
+        }
+        double pack = fit[0] * Math.pow(parameters.rectangles.size(), fit[1]);
+        return free ? pack * FreeHeightUtil.FIRST_HEIGHT_SHARE : pack;
+    }
+
+    /**
+     * Fits every solver by timing packs of random instances of doubling size, starting at 25 rectangles.
+     * <p>
+     * The size stops growing at {@code largestSize} or once a pack takes {@value #SLOWEST_PACK} milliseconds. The
+     * fit goes through the largest size, its exponent is based on the three largest sizes and is at least 1.
+     * </p>
+     *
+     * @param solvers     the solvers to fit
+     * @param largestSize the largest number of rectangles to pack
+     */
+    static CostModel calibrate(List<AbstractSolver> solvers, int largestSize) {
+        CostModel model = new CostModel();
+        for (AbstractSolver solver : solvers) {
+            for (boolean free : new boolean[]{false, true}) {
+                if (!solver.getHeightSupport().contains(free ? Util.HeightSupport.FREE : Util.HeightSupport.FIXED)) {
+                    continue;
+                }
+                List<Integer> sizes = new ArrayList<>();
+                List<Double> millis = new ArrayList<>();
+                // Warm up, the first packs are much slower
+                time(solver, benchmark(25, free), 100);
+                for (int n = 25; n <= largestSize; n *= 2) {
+                    double time = time(solver, benchmark(n, free), 100);
+                    sizes.add(n);
+                    millis.add(time);
+                    if (time >= SLOWEST_PACK) {
+                        break;
+                    }
+                }
+                double[] fit = fit(sizes.stream().mapToInt(Integer::intValue).toArray(),
+                        millis.stream().mapToDouble(Double::doubleValue).toArray());
+                model.fit(solver.getClass().getSimpleName(), free, fit[0], fit[1]);
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Returns the {@code a} and {@code b} of {@code a * n^b} through the last point, with the least squares slope
+     * of the logarithms of the last three points as {@code b}, at least 1.
+     */
+    static double[] fit(int[] sizes, double[] millis) {
+        int last = sizes.length - 1;
+        int first = Math.max(0, sizes.length - 3);
+        double b = 1;
+        if (last > first) {
+            double meanX = 0;
+            double meanY = 0;
+            for (int i = first; i <= last; i++) {
+                meanX += Math.log(sizes[i]);
+                meanY += Math.log(Math.max(millis[i], 1e-3));
+            }
+            meanX /= last - first + 1;
+            meanY /= last - first + 1;
+            double covariance = 0;
+            double variance = 0;
+            for (int i = first; i <= last; i++) {
+                double x = Math.log(sizes[i]) - meanX;
+                covariance += x * (Math.log(Math.max(millis[i], 1e-3)) - meanY);
+                variance += x * x;
+            }
+            b = Math.max(1, covariance / variance);
+        }
+        return new double[]{millis[last] / Math.pow(sizes[last], b), b};
+    }
+
+    /**
+     * Returns the average time in milliseconds of packing {@code parameters}, packing it until {@code millis}
+     * milliseconds have passed.
+     */
+    private static double time(AbstractSolver solver, Parameters parameters, long millis) {
+        long startTime = System.nanoTime();
+        int packs = 0;
+        do {
+            solver.pack(parameters.copy(), Deadline.none());
+            packs++;
+        } while (System.nanoTime() - startTime < millis * 1000000);
+        return (System.nanoTime() - startTime) / 1e6 / packs;
+    }
+
+    /**
+     * Returns a random instance of {@code n} rectangles of at most 100 by 100, with a fixed height that fits about
+     * twice the total area in a square. The same {@code n} always gives the same instance.
+     *
+     * @param free whether it is a fixed height sub problem of a free height search
+     */
+    static Parameters benchmark(int n, boolean free) {
+        Random random = new Random(n);
+        List<Rectangle> rectangles = new ArrayList<>();
+        long area = 0;
+        for (int i = 0; i < n; i++) {
+            Rectangle rectangle = new Rectangle(1 + random.nextInt(100), 1 + random.nextInt(100), i);
+            area += (long) rectangle.width * rectangle.height;
+            rectangles.add(rectangle);
+        }
+        Parameters parameters = new Parameters((int) Math.max(100, Math.sqrt(2 * area)), Util.HeightSupport.FIXED,
+                false, rectangles);
+        parameters.freeHeightUtil = free;
+        return parameters;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: CostModel <output file> [largest size]");
+            System.exit(2);
+        }
+        int largestSize = args.length > 1 ? Integer.parseInt(args[1]) : 12800;
+        List<AbstractSolver> solvers = Arrays.asList(new FirstFitSolver(), new SkylineSolver(), new TopLeftSolver(),
+                new SimpleTopLeftSolver(), new CompressionSolver(), new BottomUpSolver(), new ReverseFitSolver());
+        CostModel model = calibrate(solvers, largestSize);
+        try (Writer writer = Files.newBufferedWriter(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            writer.write("# Fitted on packs of 25 to " + largestSize + " random rectangles\n");
+            model.write(writer);
+        }
+    }
+}
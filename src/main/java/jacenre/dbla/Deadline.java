@@ -0,0 +1,125 @@
+package jacenre.dbla;
+
+/**
+ * The time by which a solve has to be done, together with a flag to cancel it earlier.
+ * <p>
+ * Deadlines are based on {@link System#nanoTime()}, so changes to the wall clock do not affect them. Iterative solvers
+ * poll {@link #isExpired()} in their main loops and return the best solution they have so far once it is. A parent
+ * solver gives part of its budget to a sub solver with {@link #child(long)}, the child expires with its parent but
+ * cancelling the child does not cancel the parent.
+ * </p>
+ */
+public final class Deadline {
+
+    /**
+     * The {@code System.nanoTime()} at which this deadline expires, only used if {@link #bounded}.
+     */
+    private final long time;
+    private final boolean bounded;
+
+    /**
+     * The time in milliseconds this deadline had when it was created, only used if {@link #bounded}.
+     */
+    private final long budget;
+    private final Deadline parent;
+    private volatile boolean cancelled;
+
+    private Deadline(long time, boolean bounded, long budget, Deadline parent) {
+        this.time = time;
+        this.bounded = bounded;
+        this.budget = budget;
+        this.parent = parent;
+    }
+
+    /**
+     * Returns a deadline without a time limit, it only expires when cancelled.
+     */
+    public static Deadline none() {
+        return new Deadline(0, false, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Returns a deadline that expires {@code millis} milliseconds from now.
+     *
+     * @param millis the budget in milliseconds
+     */
+    public static Deadline after(long millis) {
+        return none().child(millis);
+    }
+
+    /**
+     * Returns a deadline that expires {@code millis} milliseconds from now, or earlier if this deadline does.
+     *
+     * @param millis the budget of the child in milliseconds
+     */
+    public Deadline child(long millis) {
+        if (millis >= Long.MAX_VALUE / 1000000) {
+            return child();
+        }
+        long now = System.nanoTime();
+        long childTime = now + Math.max(0, millis) * 1000000;
+        if (bounded && childTime - time > 0) {
+            childTime = time;
+        }
+        return new Deadline(childTime, true, (childTime - now) / 1000000, this);
+    }
+
+    /**
+     * Returns a deadline that expires with this one but can be cancelled on its own, it has the same
+     * {@link #budget()}.
+     */
+    public Deadline child() {
+        return new Deadline(time, bounded, budget, this);
+    }
+
+    /**
+     * Returns {@code true} if this deadline has a time limit.
+     */
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    /**
+     * Returns the remaining time in milliseconds, {@code Long.MAX_VALUE} if there is no time limit.
+     */
+    public long remaining() {
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, (time - System.nanoTime()) / 1000000);
+    }
+
+    /**
+     * Returns the time in milliseconds this deadline had when it was created, {@code Long.MAX_VALUE} if there is no
+     * time limit.
+     * <p>
+     * Unlike {@link #remaining()} this does not change during a solve, so every part of a solve that is given the
+     * same deadline, like the heights of a {@link FreeHeightUtil} search, sees the same budget.
+     * </p>
+     */
+    public long budget() {
+        return bounded ? budget : Long.MAX_VALUE;
+    }
+
+    /**
+     * Cancels this deadline and all of its children.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns {@code true} if this deadline or one of its parents is cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled || parent != null && parent.isCancelled();
+    }
+
+    /**
+     * Returns {@code true} if the solve should stop, because the time is up, the deadline is cancelled or the
+     * current thread is interrupted.
+     */
+    public boolean isExpired() {
+        return isCancelled() || bounded && System.nanoTime() - time >= 0 || Thread.currentThread().isInterrupted();
+    }
+}
@@ -25,35 +25,33 @@ public class FirstFitSolver extends AbstractSolver {
      */
     @Override
     Solution pack(Parameters parameters) {
+        RectangleStore store = parameters.getStore();
+
         // Greedy choice, rotate every rectangle such that it is wider than that it is high.
         if (parameters.rotationVariant) {
-            for (Rectangle rectangle :
-                    parameters.rectangles) {
-                if (rectangle.height > rectangle.width) {
-                    rectangle.rotate();
+            for (int i = 0; i < store.size; i++) {
+                if (store.h[i] > store.w[i]) {
+                    store.rotate(i);
                 }
             }
         }
 
-        // Sort the array from large to small
-        parameters.rectangles.sort((o1, o2) -> o2.height - o1.height);
-        parameters.rectangles.sort((o1, o2) -> o2.width - o1.width);
+        // Sort the array from large to small, on width with height as the tie-breaker
+        store.sort((i, j) -> store.w[i] != store.w[j] ? store.w[j] - store.w[i] : store.h[j] - store.h[i]);
 
         ArrayList<Box> boxes = new ArrayList<>();
 
-        for (Rectangle rectangle :
-                parameters.rectangles) {
+        for (int i = 0; i < store.size; i++) {
             // First rectangle always fits
             if (boxes.size() == 0) {
-                rectangle.x = 0;
-                rectangle.y = 0;
+                store.setLocation(i, 0, 0);
 
-                Box newBox = new Box(rectangle.x, rectangle.y, rectangle.width, rectangle.height);
-                newBox.add(rectangle);
+                Box newBox = new Box(0, 0, store.w[i], store.h[i]);
+                newBox.add(store, i);
 
                 boxes.add(newBox);
             } else // If the rectangle doesn't fit we create a new box.
-			if (!fitRectangle(boxes, rectangle, parameters.height)) {
+			if (!fitRectangle(boxes, store, i, parameters.height)) {
 
 			    long maxX = 0;
 			    for (Box box : boxes) {
@@ -62,42 +60,40 @@ public class FirstFitSolver extends AbstractSolver {
 			        }
 			    }
 
-			    rectangle.x = (int) maxX;
-			    rectangle.y = 0;
+			    store.setLocation(i, (int) maxX, 0);
 
-			    Box newBox = new Box(rectangle.x, rectangle.y, rectangle.width, rectangle.height);
-			    newBox.add(rectangle);
+			    Box newBox = new Box(store.x[i], store.y[i], store.w[i], store.h[i]);
+			    newBox.add(store, i);
 
 			    boxes.add(newBox);
 			}
-            rectangle.place(true);
+            store.place(i, true);
             if (animate) {
 				Util.animate(parameters, this);
 			}
         }
 
-        return new Solution(parameters, this);
+        parameters.setStore(store);
+        return new Solution(parameters, this, store);
     }
 
     /**
-     * Tries and fit the rectangle in one of the boxes
+     * Tries and fit rectangle {@code i} in one of the boxes
      *
      * @return {@code true} if it fits in any of the boxes, else {@code false}
      */
-    private boolean fitRectangle(ArrayList<Box> boxes, Rectangle rectangle, long height) {
+    private boolean fitRectangle(ArrayList<Box> boxes, RectangleStore store, int i, long height) {
         for (Box box : boxes) {
             // If adding the box respects the height limit and isn't to wide...
-            if (rectangle.height + box.height + box.y <= height && rectangle.width <= box.width) {
-                rectangle.x = (int) box.x;
-                rectangle.y = (int) (box.y + box.height);
-                box.add(rectangle);
+            if (store.h[i] + box.height + box.y <= height && store.w[i] <= box.width) {
+                store.setLocation(i, (int) box.x, (int) (box.y + box.height));
+                box.add(store, i);
 
                 // Create a new box to the right of the rectangle
-                if (box.rectangles.size() > 1) {
-                    Rectangle previousRect = box.rectangles.get(box.rectangles.size() - 2);
-                    long boundX = previousRect.width - rectangle.width;
+                if (box.count > 1) {
+                    long boundX = store.w[box.previous] - store.w[i];
 
-                    Box recursiveBox = new Box(rectangle.x + rectangle.width, rectangle.y, boundX, 0);
+                    Box recursiveBox = new Box(store.x[i] + store.w[i], store.y[i], boundX, 0);
                     boxes.add(recursiveBox);
                 }
 
@@ -112,8 +108,10 @@ public class FirstFitSolver extends AbstractSolver {
     // Boxes in which we store rectangles
     private static class Box {
 
-        // All the Rectangles in this box.
-        ArrayList<Rectangle> rectangles = new ArrayList<>();
+        // Number of rectangles in this box and the store indices of the last two that were added.
+        int count = 0;
+        int last = -1;
+        int previous = -1;
 
         // Top left coordinates of the box.
         long x;
@@ -131,13 +129,21 @@ public class FirstFitSolver extends AbstractSolver {
             this.height = height;
         }
 
-        // Add a new rectangle to this box.
-        public void add(Rectangle rect) {
-            rectangles.add(rect);
-            this.height = rect.y + rect.height > this.y + this.height ? rect.y + rect.height - this.y : this.height;
-            this.width = rect.x + rect.width > this.x + this.width ? rect.x + rect.width - this.x : this.width;
+        // Add rectangle i of the store to this box.
+        public void add(RectangleStore store, int i) {
+            count++;
+            previous = last;
+            last = i;
+            this.height = store.y[i] + store.h[i] > this.y + this.height ? store.y[i] + store.h[i] - this.y : this.height;
+            this.width = store.x[i] + store.w[i] > this.x + this.width ? store.x[i] + store.w[i] - this.x : this.width;
         }
 
     }
 
-}
\ No newline at end of file
+    @Override
+    AbstractSolver newInstance() {
+        FirstFitSolver solver = new FirstFitSolver(allowInputSorting);
+        solver.animate = animate;
+        return solver;
+    }
+}
@@ -1,19 +1,77 @@
 package jacenre.dbla;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.jafama.FastMath;
 
 /**
  * Util that allows any {@code Util.HeightSupport.FIXED} to be turned into a {@code Util.HeightSupport.FREE} solver
  * using local minima finder.
+ * <p>
+ * The heights of a search step are independent of each other, so they are packed on {@link #POOL}. Every worker packs
+ * with its own copy of the {@code subSolver} and its own copy of the parameters, see {@link AbstractSolver#copy()}.
+ * Solvers that cannot be copied pack one height after another.
+ * </p>
  */
 public class FreeHeightUtil {
 
+    /**
+     * Workers packing the heights of a search step, shared by all free height searches.
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The first height of a search may take the time left divided by this, the other heights are planned from its
+     * time. A sub solver that is not expected to pack the first height within its share of the budget only packs the
+     * first height, see {@link CostModel}.
+     */
+    static final int FIRST_HEIGHT_SHARE = 2;
+
     /**
      * The AbstractSolver used during {@link #localMinimaFinder(Parameters, int)}, by default {@link FirstFitSolver}.
      */
     private AbstractSolver subSolver;
 
+    /**
+     * The solvers of the workers, the {@code subSolver} followed by its copies.
+     */
+    private final AbstractSolver[] solvers;
+
+    /**
+     * The deadline of the current pack, the height search stops once it expires.
+     */
+    private Deadline deadline = Deadline.none();
+
+    /**
+     * The total area of the rectangles and the width of the widest one, used by {@link #lowerBound(int)}.
+     */
+    private long totalArea;
+    private int widest;
+
+    /**
+     * The number of heights packed by the current search, and the number it is planned to pack.
+     */
+    private final AtomicInteger packs = new AtomicInteger();
+    private int numChecks;
+
+    /**
+     * {@code 1 / phi}, the fraction of the range a golden-section step keeps.
+     */
+    private static final double INVERSE_PHI = (Math.sqrt(5) - 1) / 2;
+
+    /**
+     * The area of the last solution published to the listeners of the {@code subSolver} during the current pack.
+     */
+    private long publishedArea;
+
     /**
      * Constructor that sets the {@code subSolver}
      *
@@ -21,18 +79,58 @@ public class FreeHeightUtil {
      * @see #localMinimaFinder(Parameters, int)
      */
     FreeHeightUtil(AbstractSolver subSolver) {
+        this(subSolver, POOL.getParallelism());
+    }
+
+    /**
+     * Constructor that sets the {@code subSolver} and the number of heights that are packed at the same time.
+     *
+     * @param subSolver   the AbstractSolver to use
+     * @param parallelism the number of workers, {@code 1} to pack one height after another
+     */
+    FreeHeightUtil(AbstractSolver subSolver, int parallelism) {
         this.subSolver = subSolver;
+        List<AbstractSolver> solvers = new ArrayList<>();
+        solvers.add(subSolver);
+        while (solvers.size() < parallelism) {
+            AbstractSolver copy = subSolver.copy();
+            if (copy == null) {
+                solvers.subList(1, solvers.size()).clear();
+                break;
+            }
+            solvers.add(copy);
+        }
+        this.solvers = solvers.toArray(new AbstractSolver[0]);
     }
 
 
     /**
      * Find the pack value for the parameters without doing any other output.
      *
+     * <p>
+     * A {@code deadline} without a time limit is given one of {@link PackingSolver#TIME_LIMIT}. The first height
+     * may take half of the time, the number of heights that are tried is based on the time left after it and on the
+     * number of workers. Every height gets a share of the time left, see {@link #packDeadline()}. If the
+     * {@code subSolver} is not expected to pack the first height within its share of the budget, see
+     * {@link #FIRST_HEIGHT_SHARE}, only the first height is packed.
+     * </p>
+     * <p>
+     * Every height that gives a smaller area is published as a free height solution to the listeners of the
+     * {@code subSolver}.
+     * </p>
+     *
      * @param parameters The parameters to be used by the solver.
-     * @return Returns the pack area found by this solver.
+     * @param deadline   the deadline of the whole search
+     * @return Returns the pack area found by this solver, {@code null} if the deadline expired before a height was
+     * packed.
      * @throws IllegalArgumentException if subsolver does not support free height
      */
-    Solution pack(Parameters parameters) {
+    Solution pack(Parameters parameters, Deadline deadline) {
+        if (!deadline.isBounded()) {
+            deadline = deadline.child(PackingSolver.TIME_LIMIT);
+        }
+        this.deadline = deadline;
+        this.publishedArea = Long.MAX_VALUE;
         if (!this.subSolver.getHeightSupport().contains(Util.HeightSupport.FREE)) {
             throw new IllegalArgumentException("Doesn't support free height");
         }
@@ -51,23 +149,33 @@ public class FreeHeightUtil {
         // perform a solve
         parameters.heightVariant = Util.HeightSupport.FIXED;
         parameters.height = (int) currentBestHeight;
-        Solution bestSolution = subSolver.pack(parameters.copy());
+        Solution firstSolution = subSolver.pack(parameters.copy(), deadline.child(deadline.remaining() / FIRST_HEIGHT_SHARE));
+        publish(firstSolution);
         long endTime = System.nanoTime();
 
         long duration = Math.max((endTime - startTime) / 1000000, 1); // duration of subSolver.pack or 1 if too fast
 
-        // Time allowed in milliseconds
-        final int ALLOWED_TIME = 30000; // 25 seconds which leaves 5 seconds for other stuff
-        int numChecks = (int) (ALLOWED_TIME / duration); // amount of checks that can be done
+        // amount of checks that can be done in the time left, every worker does its share
+        int numChecks = (int) Math.min(deadline.remaining() / duration * solvers.length, Integer.MAX_VALUE);
         if (Util.debug) {
 			System.out.println("numChecks: " + numChecks);
 		}
         // find best heights
-        if (numChecks >= numPossibleHeights) { // if more checks can be done than the max needed
+        Solution bestSolution;
+        if (!subSolver.canSolveParameters(parameters, deadline.budget())) {
+            bestSolution = firstSolution;
+        } else if (numChecks >= numPossibleHeights) { // if more checks can be done than the max needed
             bestSolution = tryAllHeightsFinder(parameters);
         } else {
             bestSolution = localMinimaFinder(parameters, numChecks);
         }
+        if (bestSolution == null) {
+            // The deadline expired before any height was tried
+            bestSolution = firstSolution;
+        }
+        if (bestSolution == null) {
+            return null;
+        }
 
         // Set the amount of checks to be done
         Util.animate(parameters, subSolver);
@@ -87,6 +195,8 @@ public class FreeHeightUtil {
     Solution localMinimaFinder(Parameters parameters, int numChecks) {
 
         // Starting conditions
+        start(parameters);
+        this.numChecks = numChecks;
         final long minimumHeight = Util.largestRect(parameters);
         final long maximumHeight = Util.sumHeight(parameters);
 
@@ -128,18 +238,20 @@ public class FreeHeightUtil {
         }
 
         // set current bests with the maximum possible height
-        double currentBestHeight = maximumHeight / 2;
+        int currentBestHeight = (int) (maximumHeight / 2);
         parameters.heightVariant = Util.HeightSupport.FIXED;
-        parameters.height = (int) currentBestHeight;
-        Solution bestSolution = subSolver.pack(parameters.copy());
-
-        int solves = 0; // used to record the number of solves for debug purposes
-        boolean firstIteration = true; // used to determine whether to record to chart or not
+        parameters.height = currentBestHeight;
+        Sweep best = new Sweep(subSolver.pack(parameters.copy(), packDeadline()), currentBestHeight);
+        publish(best.solution);
+
+        // areas of the heights that were tried already, or their lower bound if they were skipped
+        Map<Integer, Long> areas = new HashMap<>();
+        if (best.solution != null) {
+            areas.put(currentBestHeight, best.solution.getArea());
+        }
 
         // stepSize such that #checksPerIteration are done (larger means less precise) is made smaller each iteration
         int stepSize;
-        // record heights that were tried already
-        ArrayList<Double> triedHeights = new ArrayList<>();
         do {
             // update stepSize
             stepSize = Math.max((int) ((stopRange - startRange) / checksPerIteration), 1);
@@ -147,41 +259,31 @@ public class FreeHeightUtil {
 				System.out.println("Stepsize: " + stepSize);
 			}
 
-            for (double newHeight = startRange + stepSize; newHeight <= stopRange - stepSize; newHeight += stepSize) {
-                if (triedHeights.contains(newHeight))
-				 {
-					continue; // skip if already tried
-				}
-                Parameters params = parameters.copy();
-                params.height = (int) newHeight;
-                Solution newSolution = subSolver.pack(params);
-                solves++;
-
-                if (newSolution == null) {
-					continue;
-				}
-
-                if (newSolution.getRate() == 1.0d) {
-                    return newSolution;
-                }
-
-                if (newSolution.isBetter(bestSolution)) {
-                    // update bestSolution
-                    currentBestHeight = (int) newHeight;
-                    bestSolution = newSolution;
-                }
-                triedHeights.add(newHeight);
+            List<Integer> heights = new ArrayList<>();
+            for (long newHeight = startRange + stepSize; newHeight <= stopRange - stepSize; newHeight += stepSize) {
+                heights.add((int) newHeight);
+            }
+            best = evaluate(parameters, heights, best, areas);
+            if (best.solution != null && best.solution.getRate() == 1.0d) {
+                return best.solution;
+            }
+            if (deadline.isExpired()) {
+                break;
             }
 
             // update ranges around the best found value
-            startRange = (int) Math.max(minimumHeight, currentBestHeight - stepSize);
-            stopRange = (int) Math.min(maximumHeight, currentBestHeight + stepSize);
+            startRange = Math.max(minimumHeight, best.height - stepSize);
+            stopRange = Math.min(maximumHeight, best.height + stepSize);
         } while (stepSize > stepSizePrecision && numRecursions > 1);
 
+        // the steps may have skipped a better height next to the best one, the checks left over go to finding it
+        best = refine(parameters, (int) Math.max(minimumHeight, best.height - stepSize),
+                (int) Math.min(maximumHeight, best.height + stepSize), best, areas, numChecks);
+
         if (Util.debug) {
-			System.out.println("Solves: " + solves);
+			System.out.println("Solves: " + packs.get());
 		}
-        return bestSolution;
+        return best.solution;
     }
 
     /**
@@ -192,29 +294,241 @@ public class FreeHeightUtil {
      */
     Solution tryAllHeightsFinder(Parameters parameters) {
         // Starting conditions
+        start(parameters);
         final int minimumHeight = Util.largestRect(parameters);
         final int maximumHeight = Util.sumHeight(parameters);
 
-        Solution bestSolution = null; // holds best solution found so far
-
+        List<Integer> heights = new ArrayList<>();
         for (int newHeight = minimumHeight; newHeight <= maximumHeight; newHeight++) {
-            Parameters params = parameters.copy();
-            params.height = newHeight;
-            Solution newSolution = subSolver.pack(params);
+            heights.add(newHeight);
+        }
+        numChecks = heights.size();
+        return evaluate(parameters, heights, new Sweep(null, maximumHeight), new HashMap<>()).solution;
+    }
 
-            if (newSolution == null)
-			 {
-				continue; // not a good solution, skip
-			}
-            if (newSolution.getRate() == 1.0d) {
-                return newSolution;
+    /**
+     * Golden-section search for the height with the smallest area between {@code low} and {@code high}.
+     * <p>
+     * Assumes the area is unimodal between the bounds, which holds near a local minimum. Every step packs at most two
+     * heights and keeps the part of the range around the smaller area, the last few heights are all packed. Stops
+     * once the search packed {@code numChecks} heights.
+     * </p>
+     *
+     * @return the best of {@code best} and the solutions found
+     */
+    private Sweep refine(Parameters parameters, int low, int high, Sweep best, Map<Integer, Long> areas,
+                         int numChecks) {
+        while (high - low > 3 && packs.get() < numChecks && !deadline.isExpired()) {
+            int length = high - low;
+            int c = low + (int) Math.round(length * (1 - INVERSE_PHI));
+            int d = low + (int) Math.round(length * INVERSE_PHI);
+            if (c >= d) {
+                d = c + 1;
+            }
+            best = evaluate(parameters, Arrays.asList(c, d), best, areas);
+            if (best.solution != null && best.solution.getRate() == 1.0d) {
+                return best;
             }
+            if (areas.getOrDefault(c, Long.MAX_VALUE) <= areas.getOrDefault(d, Long.MAX_VALUE)) {
+                high = d;
+            } else {
+                low = c;
+            }
+        }
+        if (packs.get() >= numChecks) {
+            return best;
+        }
+        List<Integer> heights = new ArrayList<>();
+        for (int height = low; height <= high; height++) {
+            heights.add(height);
+        }
+        return evaluate(parameters, heights, best, areas);
+    }
 
-            if (newSolution.isBetter(bestSolution)) {
-                // update bestSolution
-                bestSolution = newSolution;
+    /**
+     * Packs the {@code heights} that are not in {@code areas} yet and returns the best of {@code best} and the
+     * solutions found.
+     * <p>
+     * A height is skipped if even a perfect packing of that height could not beat the best solution, see
+     * {@link #lowerBound(int)}. The areas of the packed and skipped heights are added to {@code areas}.
+     * </p>
+     */
+    private Sweep evaluate(Parameters parameters, List<Integer> heights, Sweep best, Map<Integer, Long> areas) {
+        int[] untried = heights.stream().filter(height -> !areas.containsKey(height))
+                .mapToInt(Integer::intValue).toArray();
+        long[] found = new long[untried.length];
+        Sweep sweep = sweep(parameters, untried, best.solution == null ? Long.MAX_VALUE : best.solution.getArea(),
+                found);
+        for (int k = 0; k < untried.length; k++) {
+            if (found[k] != 0) {
+                areas.put(untried[k], found[k]);
             }
         }
-        return bestSolution;
+        return sweep != null && sweep.solution.isBetter(best.solution) ? sweep : best;
+    }
+
+    /**
+     * Prepares a new search of the {@code parameters}.
+     */
+    private void start(Parameters parameters) {
+        totalArea = 0;
+        widest = 0;
+        for (Rectangle rectangle : parameters.rectangles) {
+            totalArea += (long) rectangle.width * rectangle.height;
+            widest = Math.max(widest, parameters.rotationVariant
+                    ? Math.min(rectangle.width, rectangle.height) : rectangle.width);
+        }
+        packs.set(0);
+    }
+
+    /**
+     * Returns the deadline of the next height that is packed.
+     * <p>
+     * The time left is shared by the heights the search still plans to pack, a worker packs its share of them one
+     * after another. A height may take {@link CostModel#MARGIN} times its share, so a height that takes longer than
+     * the first one is not cut short right away. Without a time limit the height gets {@link #deadline} itself.
+     * </p>
+     */
+    private Deadline packDeadline() {
+        if (!deadline.isBounded()) {
+            return deadline.child();
+        }
+        int checksLeft = Math.max(1, numChecks - packs.get());
+        return deadline.child((long) (deadline.remaining() * CostModel.MARGIN * solvers.length / checksLeft));
+    }
+
+    /**
+     * Returns a lower bound on the area of a packing with the given fixed height.
+     * <p>
+     * The width is at least the total area of the rectangles divided by the height, and at least the width of the
+     * widest rectangle, or of its shortest side with rotations.
+     * </p>
+     */
+    private long lowerBound(int height) {
+        long width = Math.max((totalArea + height - 1) / height, widest);
+        return width * height;
+    }
+
+    /**
+     * Packs the {@code parameters} for every height in {@code heights} and returns the best solution.
+     * <p>
+     * The workers take the next height until all heights are packed, the deadline expires or a solution with a rate
+     * of 1 is found. A height whose {@link #lowerBound(int)} is larger than the best area so far is skipped, heights
+     * that could only tie are still packed so the result does not depend on the order in which the workers finish.
+     * Of equally good solutions the one with the smallest height is returned. The {@code parameters} are not
+     * changed.
+     * </p>
+     *
+     * @param incumbent the area to beat
+     * @param areas     set to the area found for every height, its lower bound if it was skipped,
+     *                  {@code Long.MAX_VALUE} if the solver found no solution and {@code 0} if it was not reached
+     * @return the best solution with its height, or {@code null} if no height gave a solution
+     */
+    private Sweep sweep(Parameters parameters, int[] heights, long incumbent, long[] areas) {
+        AtomicInteger next = new AtomicInteger();
+        AtomicLong bestArea = new AtomicLong(incumbent);
+        AtomicBoolean optimal = new AtomicBoolean();
+        if (solvers.length == 1 || heights.length <= 1) {
+            return sweep(subSolver, parameters, heights, areas, next, bestArea, optimal);
+        }
+
+        List<ForkJoinTask<Sweep>> tasks = new ArrayList<>();
+        for (AbstractSolver solver : solvers) {
+            Parameters copy = parameters.copy();
+            tasks.add(POOL.submit(() -> sweep(solver, copy, heights, areas, next, bestArea, optimal)));
+        }
+        Sweep best = null;
+        for (ForkJoinTask<Sweep> task : tasks) {
+            Sweep sweep = task.join();
+            if (sweep != null && sweep.isBetter(best)) {
+                best = sweep;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * A single worker of {@link #sweep(Parameters, int[], long, long[])}, packing with {@code solver} on its own
+     * {@code parameters}.
+     */
+    private Sweep sweep(AbstractSolver solver, Parameters parameters, int[] heights, long[] areas,
+                        AtomicInteger next, AtomicLong bestArea, AtomicBoolean optimal) {
+        Sweep best = null;
+        // the sub solver packs the parameters in place, this state is restored after every try instead of copying
+        RectangleStore initialState = parameters.getStore();
+        int initialHeight = parameters.height;
+        try {
+            int k;
+            while (!optimal.get() && !deadline.isExpired() && (k = next.getAndIncrement()) < heights.length) {
+                long lowerBound = lowerBound(heights[k]);
+                if (lowerBound > bestArea.get()) {
+                    areas[k] = lowerBound;
+                    continue;
+                }
+                parameters.height = heights[k];
+                Solution newSolution = solver.pack(parameters, packDeadline());
+                packs.incrementAndGet();
+
+                if (newSolution != null) {
+                    areas[k] = newSolution.getArea();
+                    bestArea.accumulateAndGet(areas[k], Math::min);
+                    publish(newSolution);
+                    if (new Sweep(newSolution, heights[k]).isBetter(best)) {
+                        // update best, it is copied since it may share the rectangles that are restored
+                        best = new Sweep(newSolution.copy(), heights[k]);
+                    }
+                    if (newSolution.getRate() == 1.0d) {
+                        optimal.set(true);
+                    }
+                } else {
+                    areas[k] = Long.MAX_VALUE;
+                }
+                parameters.setStore(initialState);
+            }
+        } finally {
+            parameters.setStore(initialState);
+            parameters.height = initialHeight;
+        }
+        return best;
+    }
+
+    /**
+     * A solution found by a {@link #sweep(Parameters, int[], long, long[])} and the height it was packed with.
+     */
+    private static class Sweep {
+        /**
+         * The solution, only {@code null} for the starting point of a search.
+         */
+        final Solution solution;
+        final int height;
+
+        Sweep(Solution solution, int height) {
+            this.solution = solution;
+            this.height = height;
+        }
+
+        boolean isBetter(Sweep other) {
+            return other == null || solution.isBetter(other.solution)
+                    || (!other.solution.isBetter(solution) && height < other.height);
+        }
+    }
+
+    /**
+     * Publishes a copy of {@code solution} as a free height solution if it has a smaller area than the last one.
+     * <p>
+     * Called by all workers, the lock keeps the published areas decreasing.
+     * </p>
+     *
+     * @param solution a solution of a fixed height sub problem, may be {@code null}
+     */
+    private synchronized void publish(Solution solution) {
+        if (solution == null || !subSolver.hasListeners() || solution.getArea(true) >= publishedArea) {
+            return;
+        }
+        Solution copy = solution.copy();
+        copy.parameters.freeHeightUtil = false;
+        copy.parameters.heightVariant = Util.HeightSupport.FREE;
+        subSolver.publish(copy);
+        publishedArea = copy.getArea(true);
     }
 }
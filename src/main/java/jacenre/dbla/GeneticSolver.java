@@ -1,34 +1,88 @@
 package jacenre.dbla;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Utility class to apply to any solver to iteratively mutate
  * the input order and/or rotation of the rectangles.
  * For strip-packing only! (fitness function depends on it)
+ * <p>
+ * The permutations of a generation are decoded on {@link #POOL}. Every worker decodes with its own copy of the solver
+ * and its own rectangles, see {@link Decoder}.
+ * </p>
+ * <p>
+ * In island mode, see {@link #setIslands(int, int, int)}, every island evolves its own population on its own thread.
+ * Every few generations an island sends copies of its best permutations to the next island, which take the place of
+ * its worst permutations. This keeps a single population from converging too early.
+ * </p>
  */
 public class GeneticSolver extends AbstractSolver {
     private AbstractSolver solver;
     private Parameters parameters;
 
+    /**
+     * Workers decoding the permutations of a generation, shared by all genetic solvers.
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The number of permutations that are decoded at the same time.
+     */
+    private int workers = POOL.getParallelism();
+
+    /**
+     * The number of permutations that go on to the next generation.
+     */
+    private static final int POPULATION = 10;
+
+    /**
+     * The number of islands, the number of generations between migrations and the number of permutations that
+     * migrate.
+     */
+    private int islands = 1;
+    private int migrationInterval = 10;
+    private int migrationSize = 2;
+
+    /**
+     * The maximum number of generations, and the seed of the random numbers, {@code null} for a new seed every pack.
+     */
+    private int generations = 10000;
+    private Long seed;
+
+    /**
+     * The number of permutations islands took from their mailbox during the last pack.
+     */
+    final AtomicInteger migrants = new AtomicInteger();
+
+    /**
+     * The best permutation of all islands during a pack.
+     */
+    private Evaluation best;
+
     @Override
     Set<Util.HeightSupport> getHeightSupport() {
         return new HashSet<>(Arrays.asList(Util.HeightSupport.FIXED));
     }
 
     @Override
-    public boolean canSolveParameters(Parameters parameters) {
-        boolean superResult = super.canSolveParameters(parameters);
-        if (!superResult || ((parameters.heightVariant == Util.HeightSupport.FREE || parameters.freeHeightUtil) && parameters.rectangles.size() > 50)) {
-			return false;
-		}
-        return parameters.rectangles.size() <= 500;
+    int maxRectangles(boolean free) {
+        return 500;
+    }
+
+    /**
+     * Returns the estimated time of a generation, every permutation of it is packed by the solver.
+     */
+    @Override
+    public double estimateCost(Parameters parameters) {
+        return 2 * POPULATION * solver.estimateCost(parameters);
     }
 
     public GeneticSolver(AbstractSolver solver, boolean allowInputSorting) {
@@ -36,13 +90,103 @@ public class GeneticSolver extends AbstractSolver {
         this.solver = solver;
     }
 
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Sets the number of permutations that are decoded at the same time, by default the number of processors.
+     * <p>
+     * Only one permutation is decoded at a time if the solver cannot be copied, see {@link AbstractSolver#copy()}.
+     * </p>
+     *
+     * @return this GeneticSolver
+     */
+    public GeneticSolver setWorkers(int workers) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("The number of workers must be positive.");
+        }
+        this.workers = workers;
+        return this;
+    }
+
+    public int getIslands() {
+        return islands;
+    }
+
+    public int getMigrationInterval() {
+        return migrationInterval;
+    }
+
+    public int getMigrationSize() {
+        return migrationSize;
+    }
+
+    /**
+     * Evolves {@code islands} populations at the same time, by default there is a single population.
+     * <p>
+     * Every island decodes its permutations one after another with its own copy of the solver, so islands replace
+     * {@link #setWorkers(int) workers}. There is a single island if the solver cannot be copied.
+     * </p>
+     *
+     * @param islands           the number of islands
+     * @param migrationInterval the number of generations between two migrations
+     * @param migrationSize     the number of permutations an island sends to the next one
+     * @return this GeneticSolver
+     */
+    public GeneticSolver setIslands(int islands, int migrationInterval, int migrationSize) {
+        if (islands <= 0 || migrationInterval <= 0) {
+            throw new IllegalArgumentException("The number of islands and the migration interval must be positive.");
+        }
+        if (migrationSize < 0 || migrationSize > POPULATION) {
+            throw new IllegalArgumentException("The migration size must be between 0 and " + POPULATION + ".");
+        }
+        this.islands = islands;
+        this.migrationInterval = migrationInterval;
+        this.migrationSize = migrationSize;
+        return this;
+    }
+
+    public int getGenerations() {
+        return generations;
+    }
+
+    /**
+     * Sets the maximum number of generations, by default 10000. A pack also stops after 3 seconds.
+     *
+     * @return this GeneticSolver
+     */
+    public GeneticSolver setGenerations(int generations) {
+        if (generations <= 0) {
+            throw new IllegalArgumentException("The number of generations must be positive.");
+        }
+        this.generations = generations;
+        return this;
+    }
+
+    /**
+     * Sets the seed of the random numbers, so every pack of the same parameters evolves the same permutations. By
+     * default every pack uses a new seed.
+     * <p>
+     * Every island draws from its own random numbers, so with a seed the result does not depend on the number of
+     * workers or on the order in which islands run. It does depend on the solver decoding the same permutation the
+     * same way every time.
+     * </p>
+     *
+     * @return this GeneticSolver
+     */
+    public GeneticSolver setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
     @Override
     Solution pack(Parameters parameters) {
         this.parameters = parameters.copy();
 
         // If we are not allowed to change the input order or rotate rectangles
         if (!this.allowInputSorting && !parameters.rotationVariant) {
-            return this.solver.pack(this.parameters);
+            return this.solver.pack(this.parameters, deadline);
         }
 
         // Array {a} holds the indexes of the rectangles list.
@@ -52,88 +196,254 @@ public class GeneticSolver extends AbstractSolver {
             a[i] = i;
         }
 
-        // Create the first permutations of rectangles
-        int nPermutations = 10;
-        int[][] permutations = shuffle(a, nPermutations);
-        Solution bestSolution = null;
+        // Run at most the maximum number of generations, or take at most 3 sec
+        int nGenerations = this.generations;
+        Deadline generations = deadline.child(3000);
+        best = null;
+        migrants.set(0);
+        Random random = seed == null ? new Random() : new Random(seed);
+
+        // The first decoder uses the solver and the rectangles of this pack, the others get their own
+        List<Decoder> decoders = new ArrayList<>();
+        decoders.add(new Decoder(this.solver, parameters.rectangles, this.parameters));
+        while (decoders.size() < Math.max(islands, Math.min(workers, 2 * POPULATION))) {
+            AbstractSolver copy = this.solver.copy();
+            if (copy == null) {
+                break;
+            }
+            decoders.add(new Decoder(copy, parameters.copy().rectangles, parameters.copy()));
+        }
+
+        // Create the first permutations of rectangles, an island with all decoders or an island per decoder
+        Island[] population = new Island[Math.min(islands, decoders.size())];
+        for (int k = 0; k < population.length; k++) {
+            Random islandRandom = new Random(random.nextLong());
+            population[k] = new Island(population.length == 1 ? decoders : decoders.subList(k, k + 1),
+                    shuffle(a, POPULATION, islandRandom), islandRandom);
+        }
 
-        // Run at most 10000 generations, or take at most 1 sec
-        int nGenerations = 10000;
         int i;
-        long duration;
-        long startTime = System.nanoTime();
-
-        // Each crossover will generate 3 new permutations per permutation
-        int nRectangles = parameters.rectangles.size();
-        for (i = 1; i <= nGenerations; i++) {
-            // Stop if 3 seconds has elapsed
-            duration = (System.nanoTime() - startTime) / 1000000;
-            if (duration >= 3000) {
-				break;
-			}
-
-            // Each permutation generates 2 new permutations
-            permutations = crossover(permutations);
-
-            // Solve for all crossovers
-            Map<int[], Solution> results = new HashMap<>();
-            for (int[] perm : permutations) {
-                // Set the order of the rectangles as described by the permutation
-                for (int j = 0; j < nRectangles; j++) {
-                    this.parameters.rectangles.set(j, parameters.rectangles.get(Math.abs(perm[j])));
-                    if (this.parameters.rotationVariant) {
-                        Rectangle rectJ = this.parameters.rectangles.get(j);
-                        if (this.parameters.heightVariant == Util.HeightSupport.FIXED
-                                && rectJ.getHeight() > this.parameters.height) {
-                            this.parameters.rectangles.get(j).rotate();
-                        } else if (this.parameters.heightVariant == Util.HeightSupport.FREE
-                                || rectJ.getWidth() < this.parameters.height) {
-                            this.parameters.rectangles.get(j).rotate(perm[j] < 0);
-                        }
-                    }
+        if (population.length == 1) {
+            population[0].evolve(nGenerations, generations);
+            i = population[0].generation;
+        } else {
+            for (i = 0; i < nGenerations && !generations.isExpired(); i += migrationInterval) {
+                int epoch = Math.min(migrationInterval, nGenerations - i);
+                List<ForkJoinTask<?>> tasks = new ArrayList<>();
+                for (Island island : population) {
+                    tasks.add(POOL.submit(() -> island.evolve(epoch, generations)));
                 }
+                tasks.forEach(ForkJoinTask::join);
 
-                // Calculate the solution and the solution score
-                Solution pack = this.solver.pack(this.parameters);
-                pack.setScore(fitnessFunction(pack));
-                results.put(perm, pack);
+                // Every island sends its best permutations to the next one
+                for (int k = 0; k < population.length; k++) {
+                    population[(k + 1) % population.length].mailbox.set(population[k].elite(migrationSize));
+                }
             }
+        }
+
+        if (Util.debug) {
+			System.out.println("generations: " + i);
+		}
+        if (best == null) {
+            return this.solver.pack(this.parameters, deadline);
+        }
+        // Nothing is decoded anymore, so the best placement can be written back to the shared rectangles
+        this.parameters.setStore(best.placement);
+        return new Solution(this.parameters, this, best.placement);
+    }
+
+    /**
+     * Offers the best permutation of a generation of {@code island} as the best of all islands, a new best is
+     * published. Stops all islands once the rate is 1.
+     */
+    private synchronized void offer(Island island, Evaluation contender, Deadline generations) {
+        // Compare the contender to the best solution yet, the height is fixed so it always fits
+        if (best != null && contender.rate >= best.rate) {
+            return;
+        }
+        if (Util.debug) {
+            System.out.println("new rate after " + island.generation + " generations: " + contender.rate);
+        }
+        best = contender;
+        if (isPublishing(this.parameters)) {
+            publish(island.decoders.get(0).snapshot(best));
+        }
+        if (best.rate == 1) {
+            generations.cancel();
+        }
+    }
+
+    /**
+     * A population of permutations, decoded by its own decoders.
+     */
+    private class Island {
+        final List<Decoder> decoders;
+        final Random random;
+        int[][] permutations;
+        int generation;
+
+        /**
+         * Permutations sent by the previous island, they replace the worst permutations at the next generation.
+         */
+        final AtomicReference<int[][]> mailbox = new AtomicReference<>();
+
+        Island(List<Decoder> decoders, int[][] permutations, Random random) {
+            this.decoders = decoders;
+            this.permutations = permutations;
+            this.random = random;
+        }
 
-            // Sort the solutions by their score and pick the new contender
-            List<Map.Entry<int[], Solution>> solutions = new ArrayList<>(results.entrySet());
-            solutions.sort((r1, r2) -> Double.compare(r2.getValue().getScore(), r1.getValue().getScore()));
-            int x = 0;
-            Solution contenderSolution = solutions.get(x).getValue();
-            while (this.parameters.heightVariant == Util.HeightSupport.FIXED
-                    && contenderSolution.getHeight() > this.parameters.height && x < solutions.size()) {
-                x++;
-                contenderSolution = solutions.get(x).getValue();
+        /**
+         * Evolves this population for at most {@code nGenerations} generations.
+         */
+        void evolve(int nGenerations, Deadline generations) {
+            int[][] migrants = mailbox.getAndSet(null);
+            if (migrants != null) {
+                System.arraycopy(migrants, 0, permutations, permutations.length - migrants.length, migrants.length);
+                GeneticSolver.this.migrants.addAndGet(migrants.length);
             }
 
-            // Compare the contender to the best solution yet
-            if (x < solutions.size()) {
-                if (bestSolution == null || contenderSolution.getRate() < bestSolution.getRate()) {
-                    if (Util.debug) {
-						System.out.println("new rate "+i+" after "+(double)duration / 1000+"s:" + contenderSolution.getRate());
-					}
-                    bestSolution = solutions.get(0).getValue().copy();
-                    if (bestSolution.getRate() == 1) {
-						break;
-					}
+            // Each crossover will generate 3 new permutations per permutation
+            for (int i = 0; i < nGenerations; i++) {
+                // Stop if 3 seconds has elapsed or the deadline expired
+                if (generations.isExpired()) {
+                    break;
+                }
+                generation++;
+
+                // Each permutation generates 2 new permutations
+                permutations = crossover(permutations, random);
+
+                // Solve for all crossovers
+                List<Evaluation> solutions = evaluate(decoders, permutations);
+
+                // Sort the solutions by their score and pick the new contender
+                solutions.sort((r1, r2) -> Double.compare(r2.score, r1.score));
+                offer(this, solutions.get(0), generations);
+
+                // The permutations we will go on with are the best ones
+                permutations = new int[POPULATION][];
+                for (int j = 0; j < POPULATION; j++) {
+                    permutations[j] = solutions.get(j).permutation;
                 }
             }
+        }
 
-            // The permutations we will go on with are the best ones
-            permutations = new int[nPermutations][permutations[0].length];
-            for (int j = 0; j < nPermutations; j++) {
-                permutations[j] = solutions.get(j).getKey();
+        /**
+         * Returns copies of the {@code n} best permutations.
+         */
+        int[][] elite(int n) {
+            int[][] elite = new int[n][];
+            for (int j = 0; j < n; j++) {
+                elite[j] = permutations[j].clone();
             }
+            return elite;
         }
+    }
 
-        if (Util.debug) {
-			System.out.println("generations: " + i);
-		}
-        return bestSolution != null ? new Solution(bestSolution.parameters, this) : this.solver.pack(this.parameters);
+    /**
+     * Decodes all {@code permutations}, the decoders take the next permutation until all of them are decoded.
+     *
+     * @return the evaluations in the order of the permutations
+     */
+    private List<Evaluation> evaluate(List<Decoder> decoders, int[][] permutations) {
+        Evaluation[] evaluations = new Evaluation[permutations.length];
+        AtomicInteger next = new AtomicInteger();
+        if (decoders.size() == 1) {
+            decoders.get(0).decodeAll(permutations, evaluations, next);
+        } else {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (Decoder decoder : decoders) {
+                tasks.add(POOL.submit(() -> decoder.decodeAll(permutations, evaluations, next)));
+            }
+            tasks.forEach(ForkJoinTask::join);
+        }
+        return Arrays.asList(evaluations);
+    }
+
+    /**
+     * Decodes permutations into placements with its own solver and its own rectangles, so decoders can run at the
+     * same time.
+     */
+    private class Decoder {
+        final AbstractSolver solver;
+
+        /**
+         * The rectangles in input order, the permutations are indexes into this list.
+         */
+        final List<Rectangle> rectangles;
+
+        /**
+         * The parameters that are packed, reused for every permutation.
+         */
+        final Parameters buffer;
+
+        Decoder(AbstractSolver solver, List<Rectangle> rectangles, Parameters buffer) {
+            this.solver = solver;
+            this.rectangles = rectangles;
+            this.buffer = buffer;
+        }
+
+        void decodeAll(int[][] permutations, Evaluation[] evaluations, AtomicInteger next) {
+            int k;
+            while ((k = next.getAndIncrement()) < permutations.length) {
+                evaluations[k] = decode(permutations[k]);
+            }
+        }
+
+        Evaluation decode(int[] perm) {
+            // Set the order of the rectangles as described by the permutation
+            for (int j = 0; j < perm.length; j++) {
+                buffer.rectangles.set(j, rectangles.get(Math.abs(perm[j])));
+                if (buffer.rotationVariant) {
+                    Rectangle rectJ = buffer.rectangles.get(j);
+                    if (buffer.heightVariant == Util.HeightSupport.FIXED
+                            && rectJ.getHeight() > buffer.height) {
+                        rectJ.rotate();
+                    } else if (buffer.heightVariant == Util.HeightSupport.FREE
+                            || rectJ.getWidth() < buffer.height) {
+                        rectJ.rotate(perm[j] < 0);
+                    }
+                }
+            }
+
+            // Calculate the solution and the solution score
+            Solution pack = solver.pack(buffer);
+            // The decoder places its rectangles in place, so keep the packed state of this placement
+            return new Evaluation(perm, pack.parameters.getStore(), fitnessFunction(pack), pack.getRate());
+        }
+
+        /**
+         * Returns a copy of the placement of {@code evaluation} as a solution, without changing the rectangles.
+         * <p>
+         * Only call this while no decoder that shares the rectangles of the placement is decoding.
+         * </p>
+         */
+        Solution snapshot(Evaluation evaluation) {
+            RectangleStore current = buffer.getStore();
+            buffer.setStore(evaluation.placement);
+            Solution solution = new Solution(buffer.copy(), GeneticSolver.this, evaluation.placement);
+            buffer.setStore(current);
+            return solution;
+        }
+    }
+
+    /**
+     * A decoded permutation with the packed state of its placement.
+     */
+    private static class Evaluation {
+        final int[] permutation;
+        final RectangleStore placement;
+        final double score;
+        final double rate;
+
+        Evaluation(int[] permutation, RectangleStore placement, double score, double rate) {
+            this.permutation = permutation;
+            this.placement = placement;
+            this.score = score;
+            this.rate = rate;
+        }
     }
 
     protected double fitnessFunction(Solution solution) {
@@ -167,19 +477,20 @@ public class GeneticSolver extends AbstractSolver {
         return areaWidth + reusableTrimLoss / boxArea;
     }
 
-    private int[][] crossover(int[][] permutations) {
+    private int[][] crossover(int[][] permutations, Random random) {
         int[][] newPermutations = new int[permutations.length * 2][permutations[0].length];
         for (int i = 0; i < permutations.length; i++) {
             int[] perm_i = permutations[i];
             int[] perm_i1 = permutations[(i + 1) % permutations.length];
-            int p = getRandomNumberInRange(1, perm_i.length - 1), q = getRandomNumberInRange(1, perm_i.length - p);
+            int p = getRandomNumberInRange(random, 1, perm_i.length - 1),
+                    q = getRandomNumberInRange(random, 1, perm_i.length - p);
 
             int[] newPerm1 = actualCrossover(perm_i, p, q);
             int[] newPerm2 = actualCrossover(perm_i1, p, q);
 
             // Shuffle the new permutations
-            newPermutations[2 * i] = shuffle(newPerm1, 2)[1];
-            newPermutations[2 * i + 1] = shuffle(newPerm2, 2)[1];
+            newPermutations[2 * i] = shuffle(newPerm1, 2, random)[1];
+            newPermutations[2 * i + 1] = shuffle(newPerm2, 2, random)[1];
         }
         return newPermutations;
     }
@@ -196,10 +507,8 @@ public class GeneticSolver extends AbstractSolver {
         // ArrayList holding all the segments we sweep over.
         ArrayList<Util.Segment> segments = new ArrayList<>();
 
-        // Copy parameters to prevent interference with the original result
-        Parameters parameters = solution.parameters.copy();
-
-        for (Rectangle rectangle : parameters.rectangles) {
+        // Only reads the placement, so the rectangles do not have to be copied
+        for (Rectangle rectangle : solution.parameters.rectangles) {
             segments.add(new Util.Segment(Util.Type.END, rectangle.y, rectangle.y + rectangle.height,
                     rectangle.x + rectangle.width, rectangle));
         }
@@ -212,16 +521,18 @@ public class GeneticSolver extends AbstractSolver {
      *
      * @param a array of integers
      * @param n number of permutations produced
+     * @param random the random numbers of the island
      * @return {@code n} arrays, each a shuffle of {@code a}
      */
-    int[][] shuffle(int[] a, int n) {
+    int[][] shuffle(int[] a, int n, Random random) {
         int[][] permutations = new int[n][a.length];
         permutations[0] = a.clone();
         for (int i = 1; i < n; i++) {
             // Generate a new permutation of a
             int[] b = a.clone();
-            for (int j = 0; j < getRandomNumberInRange(a.length / 16 + 1, a.length / 5 + 3); j++) {
-                int p = getRandomNumberInRange(0, a.length - 1), q = getRandomNumberInRange(0, a.length - 1);
+            for (int j = 0; j < getRandomNumberInRange(random, a.length / 16 + 1, a.length / 5 + 3); j++) {
+                int p = getRandomNumberInRange(random, 0, a.length - 1),
+                        q = getRandomNumberInRange(random, 0, a.length - 1);
                 if (this.allowInputSorting) {
                     // Get two random indexes and swap them
                     int temp = b[p];
@@ -230,10 +541,10 @@ public class GeneticSolver extends AbstractSolver {
                 }
 
                 // Possibly rotate them
-                if (parameters.rotationVariant && Math.random() < 0.4) {
+                if (parameters.rotationVariant && random.nextDouble() < 0.4) {
                     b[p] = -1 * b[p];
                 }
-                if (parameters.rotationVariant && Math.random() < 0.4) {
+                if (parameters.rotationVariant && random.nextDouble() < 0.4) {
                     b[q] = -1 * b[q];
                 }
             }
@@ -242,8 +553,19 @@ public class GeneticSolver extends AbstractSolver {
         return permutations;
     }
 
-    private int getRandomNumberInRange(int min, int max) {
-        Random r = new Random();
-        return r.nextInt(max - min + 1) + min;
+    private static int getRandomNumberInRange(Random random, int min, int max) {
+        return random.nextInt(max - min + 1) + min;
+    }
+
+    @Override
+    AbstractSolver newInstance() {
+        AbstractSolver solver = this.solver.copy();
+        if (solver == null) {
+            return null;
+        }
+        GeneticSolver copy = new GeneticSolver(solver, allowInputSorting).setWorkers(workers)
+                .setIslands(islands, migrationInterval, migrationSize).setGenerations(generations);
+        copy.seed = seed;
+        return copy;
     }
 }
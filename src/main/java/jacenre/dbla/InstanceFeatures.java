@@ -0,0 +1,115 @@
+package jacenre.dbla;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Cheap features of an instance, used by the {@link PortfolioScheduler} to tell instance classes apart.
+ * <p>
+ * Computing the features takes a single pass over the rectangles.
+ * </p>
+ */
+public final class InstanceFeatures {
+
+    /**
+     * The number of rectangles.
+     */
+    public final int n;
+
+    /**
+     * Whether the height is fixed, the fixed height sub problems of {@link FreeHeightUtil} count as free.
+     */
+    public final boolean fixedHeight;
+
+    /**
+     * The fixed height divided by the largest dimension of any rectangle, {@code 0} for a free height.
+     */
+    public final double heightRatio;
+
+    public final boolean rotations;
+
+    /**
+     * The largest aspect ratio divided by the smallest one, the aspect ratio of a rectangle is its width divided by
+     * its height, or its long side divided by its short side if rotations are allowed.
+     */
+    public final double aspectSpread;
+
+    /**
+     * The number of different rectangle sizes, a rotated size is the same size if rotations are allowed.
+     */
+    public final int distinctSizes;
+
+    private InstanceFeatures(int n, boolean fixedHeight, double heightRatio, boolean rotations, double aspectSpread,
+                             int distinctSizes) {
+        this.n = n;
+        this.fixedHeight = fixedHeight;
+        this.heightRatio = heightRatio;
+        this.rotations = rotations;
+        this.aspectSpread = aspectSpread;
+        this.distinctSizes = distinctSizes;
+    }
+
+    /**
+     * Returns the features of {@code parameters}.
+     */
+    public static InstanceFeatures of(Parameters parameters) {
+        int largest = 0;
+        double minAspect = Double.POSITIVE_INFINITY;
+        double maxAspect = 0;
+        Set<Long> sizes = new HashSet<>();
+        for (Rectangle rectangle : parameters.rectangles) {
+            int width = rectangle.width;
+            int height = rectangle.height;
+            if (parameters.rotationVariant && width < height) {
+                width = rectangle.height;
+                height = rectangle.width;
+            }
+            largest = Math.max(largest, Math.max(width, height));
+            double aspect = (double) width / Math.max(1, height);
+            minAspect = Math.min(minAspect, aspect);
+            maxAspect = Math.max(maxAspect, aspect);
+            sizes.add((long) width << 32 | height);
+        }
+
+        boolean fixedHeight = parameters.heightVariant == Util.HeightSupport.FIXED && !parameters.freeHeightUtil;
+        double heightRatio = fixedHeight && largest > 0 ? (double) parameters.height / largest : 0;
+        double aspectSpread = maxAspect > 0 ? maxAspect / minAspect : 1;
+        return new InstanceFeatures(parameters.rectangles.size(), fixedHeight, heightRatio, parameters.rotationVariant,
+                aspectSpread, sizes.size());
+    }
+
+    /**
+     * Returns the class of this instance, instances of the same class are expected to be won by the same solvers.
+     * <p>
+     * The class is made of five parts separated by {@code -}: the size, the height, the rotations, the spread of the
+     * aspect ratios and whether sizes repeat. For example {@code m-tall-r-uniform-varied}.
+     * </p>
+     */
+    public String instanceClass() {
+        String size = n <= 10 ? "xs" : n <= 25 ? "s" : n <= 100 ? "m" : n <= 1000 ? "l" : "xl";
+        String height = !fixedHeight ? "free" : heightRatio <= 1.5 ? "tight" : heightRatio <= 5 ? "fixed" : "tall";
+        String spread = aspectSpread <= 4 ? "uniform" : "spread";
+        String repeats = 4 * distinctSizes <= n ? "repeated" : "varied";
+        return size + "-" + height + "-" + (rotations ? "r" : "n") + "-" + spread + "-" + repeats;
+    }
+
+    /**
+     * Returns the coarse class of this instance, the size, the height and the rotations of {@link #instanceClass()}.
+     */
+    public String coarseClass() {
+        return coarseClass(instanceClass());
+    }
+
+    /**
+     * Returns the coarse class of {@code instanceClass}, the first three parts of it.
+     */
+    static String coarseClass(String instanceClass) {
+        String[] parts = instanceClass.split("-");
+        return parts.length < 3 ? instanceClass : parts[0] + "-" + parts[1] + "-" + parts[2];
+    }
+
+    @Override
+    public String toString() {
+        return "n=" + n + ", fixed=" + fixedHeight + ", heightRatio=" + heightRatio + ", rotations=" + rotations
+                + ", aspectSpread=" + aspectSpread + ", distinctSizes=" + distinctSizes;
+    }
+}
@@ -1,18 +1,67 @@
 package jacenre.dbla;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class PackingSolver {
+
+    /**
+     * Time limit of a single run in milliseconds.
+     */
+    static final long TIME_LIMIT = 30000;
+
+    /**
+     * Part of {@link #TIME_LIMIT} that is kept for starting up and writing the output.
+     */
+    static final long OUTPUT_TIME = 2000;
+
     /**
      * @throws IllegalArgumentException if number of rectangles is not positive
      */
     public static void main(String[] args) throws IllegalArgumentException {
+        // One deadline for the whole run, reading the input included
+        Deadline deadline = Deadline.after(TIME_LIMIT - OUTPUT_TIME);
         UserInput ui = new UserInput(System.in);
         Parameters params = ui.getUserInput();
-        // Remember the order of the rectangles for the output
-        String[] inputOrder = params.rectangles.stream().map(Rectangle::getId).toArray(String[]::new);
 //        System.err.println(params.heightVariant);
 
+        // Keep the best solution so far, so it can still be written when the run is stopped early
+        AtomicReference<Solution> best = new AtomicReference<>();
+        AtomicBoolean written = new AtomicBoolean();
+        CompoundSolver solver = createSolver();
+        solver.addListener((solution, name, timestamp) -> best.set(solution));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            Solution solution = best.get();
+            if (solution != null) {
+                Output.outputOnce(solution.parameters, written);
+            }
+        }));
+
+        SolutionCache cache = SolutionCache.getDefault();
+        AbstractSolver cached = cache == null ? solver : new CachingSolver(solver, cache);
+        Solution solution = cached.getSolution(params, deadline);
+        System.err.println(solution.getArea());
+        if (Util.debug) {
+			System.err.println(solution.solvedBy);
+		}
+        Output.outputOnce(solution.parameters, written);
+    }
+
+    /**
+     * Returns a new {@link CompoundSolver} with the solvers used for the final output.
+     * <p>
+     * The solvers run in parallel, the time is divided by the {@link PortfolioScheduler#getDefault() default
+     * scheduler}. A {@code CompoundSolver} keeps the best solution of its last run, so every solve
+     * should use its own instance.
+     * </p>
+     *
+     * @return a new solver
+     */
+    static CompoundSolver createSolver() {
         // Different solutions
-        CompoundSolver compoundSolver = new CompoundSolver();
+        CompoundSolver compoundSolver = new CompoundSolver().setParallel(true)
+                .setScheduler(PortfolioScheduler.getDefault());
         compoundSolver.addSolver(new FirstFitSolver());
         compoundSolver.addSolver(new SkylineSolver());
         compoundSolver.addSolver(new GeneticSolver(new TopLeftSolver(false), true));
@@ -21,46 +70,38 @@ public class PackingSolver {
 //        compoundSolver.addSolver(new CompressionSolver());
 //        compoundSolver.addSolver(new ReverseFitSolver());
 //        compoundSolver.addSolver(new SimpleTopLeftSolver());
-
-        Solution solution = compoundSolver.getSolution(params);
-        System.err.println(solution.getArea());
-        if (Util.debug) {
-			System.err.println(solution.solvedBy);
-		}
-        Output.output(solution.parameters, inputOrder);
+        return compoundSolver;
     }
 
     static class Output {
-        public static void output (Parameters params, String[] inputOrder) {
-            if (params.heightVariant == Util.HeightSupport.FREE) {
-                System.out.println("container height: free");
-            } else {
-                System.out.println("container height: fixed " + params.height);
-            }
-            System.out.println("rotations allowed: " + (params.rotationVariant ? "yes" : "no"));
-            System.out.println("number of rectangles: " + params.rectangles.size() );
-            for (String rectID : inputOrder) {
-                Rectangle rect = params.rectangles.stream()
-                        .filter(rectangle -> rectID.equals(rectangle.getId())).findAny().orElse(null);
-                assert rect != null;
-                if (!rect.isRotated()) {
-                    System.out.print(rect.width + " ");
-                    System.out.println(rect.height);
-                } else {
-                    System.out.print(rect.height + " ");
-                    System.out.println(rect.width);
-                }
+        /**
+         * Prints the solution in the order of the input to standard output.
+         *
+         * @param params the solved parameters
+         * @see SolutionWriter
+         */
+        public static void output (Parameters params) {
+            try (SolutionWriter writer = SolutionWriter.toStandardOutput()) {
+                writer.write(params);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-            System.out.println("placement of rectangles");
-            for (String rectID : inputOrder) {
-                Rectangle rect = params.rectangles.stream()
-                        .filter(rectangle -> rectID.equals(rectangle.getId())).findAny().orElse(null);
-                assert rect != null;
-                if (params.rotationVariant) {
-                    System.out.print(rect.isRotated() ? "yes " : "no ");
+        }
+
+        /**
+         * Prints the solution like {@link #output(Parameters)} unless a solution was printed already.
+         * <p>
+         * A second call waits until the first one is done, so a shutdown hook does not cut off the output.
+         * </p>
+         *
+         * @param params  the solved parameters
+         * @param written set once a solution is printed
+         */
+        static void outputOnce(Parameters params, AtomicBoolean written) {
+            synchronized (written) {
+                if (written.compareAndSet(false, true)) {
+                    output(params);
                 }
-                System.out.print(rect.x + " ");
-                System.out.println(rect.y);
             }
         }
     }
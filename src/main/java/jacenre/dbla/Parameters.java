@@ -23,6 +23,13 @@ public class Parameters {
 
 	private long minimumArea;
 
+	/**
+	 * Counts how often the rectangles were replaced or written by {@link #setRectangles(List)} or
+	 * {@link #setStore(RectangleStore)}. A {@link Solution} of these parameters finds its extents again once it
+	 * changed.
+	 */
+	int placements;
+
 	/**
 	 * Boolean representing if this Parameters object was parsed by the
 	 * {@link FreeHeightUtil}.
@@ -78,9 +85,34 @@ public class Parameters {
 
 	public void setRectangles(List<Rectangle> rectangles) {
 		this.rectangles = rectangles;
+		placements++;
 		calculateMinimumArea();
 	}
 
+	/**
+	 * Returns a packed {@link RectangleStore} holding the current state of {@link #rectangles}.
+	 * <p>
+	 * Changes made to the store are only visible in {@code rectangles} after {@link #setStore(RectangleStore)}.
+	 * </p>
+	 *
+	 * @return a new store for the rectangles
+	 */
+	public RectangleStore getStore() {
+		return new RectangleStore(this.rectangles);
+	}
+
+	/**
+	 * Writes the state of the store back to its rectangles and uses them, in store order, as {@link #rectangles}.
+	 * <p>
+	 * The extents known to the solutions of these parameters are invalidated, see {@link #placements}.
+	 * </p>
+	 *
+	 * @param store the store to apply
+	 */
+	public void setStore(RectangleStore store) {
+		setRectangles(store.getRectangles());
+	}
+
 	/**
 	 * Pre calculate the minimum area to improve runtime.
 	 */
@@ -114,6 +146,25 @@ public class Parameters {
 		return parameters;
 	}
 
+	/**
+	 * Returns a copy of this parameter object that shares its rectangles with this object.
+	 * <p>
+	 * Only use this if the rectangles are not changed afterwards, otherwise use {@link #copy()}.
+	 * </p>
+	 *
+	 * @return a copy of parameters sharing the rectangles.
+	 */
+	public Parameters shallowCopy() {
+		Parameters parameters = new Parameters();
+		parameters.heightVariant = this.heightVariant;
+		parameters.freeHeightUtil = this.freeHeightUtil;
+		parameters.height = this.height;
+		parameters.rotationVariant = this.rotationVariant;
+		parameters.rectangles = this.rectangles;
+		parameters.minimumArea = this.minimumArea;
+		return parameters;
+	}
+
 	/**
 	 * Prints this {@code Solution} object as a string, containing debug
 	 * information.
@@ -0,0 +1,293 @@
+package jacenre.dbla;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Uniform grid over placed rectangles for collision queries.
+ * <p>
+ * Every placed rectangle is added to the cells it covers, so a query only looks at the rectangles near the queried
+ * area instead of at every placed rectangle. The cells grow with the placements, coordinates are expected to be
+ * non-negative. Intersection follows {@link java.awt.Rectangle#intersects}: touching edges do not intersect and
+ * empty rectangles never intersect.
+ * </p>
+ * <p>
+ * Besides plain overlap tests the index answers "nearest obstacle" queries, {@link #maxRight} and
+ * {@link #maxBottom}, which are what moving a rectangle left or up as far as possible comes down to.
+ * </p>
+ */
+public class PlacementIndex {
+
+    private final int cellWidth;
+    private final int cellHeight;
+
+    /**
+     * Coordinates and dimensions of the added rectangles, by entry.
+     */
+    private int[] x = new int[16];
+    private int[] y = new int[16];
+    private int[] w = new int[16];
+    private int[] h = new int[16];
+    private int size;
+
+    /**
+     * The entries per cell as {@code cells[column][row]}, the first element of a cell holds the number of entries.
+     */
+    private int[][][] cells = new int[0][][];
+
+    /**
+     * Constructs an empty index.
+     *
+     * @param cellWidth  the width of a cell, typically about the width of a rectangle
+     * @param cellHeight the height of a cell, typically about the height of a rectangle
+     */
+    public PlacementIndex(int cellWidth, int cellHeight) {
+        this.cellWidth = Math.max(1, cellWidth);
+        this.cellHeight = Math.max(1, cellHeight);
+    }
+
+    /**
+     * Returns an empty index with cells the size of the average rectangle in the store.
+     *
+     * @param store the rectangles that are going to be placed
+     * @return an empty index
+     */
+    public static PlacementIndex forStore(RectangleStore store) {
+        long width = 0;
+        long height = 0;
+        for (int i = 0; i < store.size; i++) {
+            width += store.w[i];
+            height += store.h[i];
+        }
+        int n = Math.max(1, store.size);
+        return new PlacementIndex((int) (width / n), (int) (height / n));
+    }
+
+    /**
+     * Returns an empty index with cells the size of the average rectangle in the list.
+     *
+     * @param rectangles the rectangles that are going to be placed
+     * @return an empty index
+     */
+    public static PlacementIndex forRectangles(List<Rectangle> rectangles) {
+        long width = 0;
+        long height = 0;
+        for (Rectangle rectangle : rectangles) {
+            width += rectangle.width;
+            height += rectangle.height;
+        }
+        int n = Math.max(1, rectangles.size());
+        return new PlacementIndex((int) (width / n), (int) (height / n));
+    }
+
+    /**
+     * Returns the number of rectangles in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all rectangles, keeping the allocated cells.
+     */
+    public void clear() {
+        for (int[][] column : cells) {
+            for (int[] cell : column) {
+                if (cell != null) {
+                    cell[0] = 0;
+                }
+            }
+        }
+        size = 0;
+    }
+
+    /**
+     * Adds a placed rectangle, later changes to the rectangle are not seen by the index.
+     *
+     * @param rectangle the placed rectangle
+     */
+    public void add(Rectangle rectangle) {
+        add(rectangle.x, rectangle.y, rectangle.width, rectangle.height);
+    }
+
+    /**
+     * Adds rectangle {@code i} of the store, later changes to the store are not seen by the index.
+     *
+     * @param store the store holding the placed rectangle
+     * @param i     the index of the rectangle in the store
+     */
+    public void add(RectangleStore store, int i) {
+        add(store.x[i], store.y[i], store.w[i], store.h[i]);
+    }
+
+    /**
+     * Adds a placed rectangle.
+     */
+    public void add(int x, int y, int width, int height) {
+        if (size == this.x.length) {
+            int capacity = size * 2;
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.w = Arrays.copyOf(this.w, capacity);
+            this.h = Arrays.copyOf(this.h, capacity);
+        }
+        int entry = size++;
+        this.x[entry] = x;
+        this.y[entry] = y;
+        this.w[entry] = width;
+        this.h[entry] = height;
+        if (width <= 0 || height <= 0) {
+            // Empty rectangles never intersect, so they do not have to be in any cell
+            return;
+        }
+
+        int lastColumn = column(x + width - 1);
+        int lastRow = row(y + height - 1);
+        ensureColumns(lastColumn + 1);
+        for (int c = column(x); c <= lastColumn; c++) {
+            if (cells[c].length <= lastRow) {
+                cells[c] = Arrays.copyOf(cells[c], Math.max(lastRow + 1, cells[c].length * 2));
+            }
+            for (int r = row(y); r <= lastRow; r++) {
+                int[] cell = cells[c][r];
+                if (cell == null) {
+                    cell = cells[c][r] = new int[4];
+                } else if (cell[0] + 1 == cell.length) {
+                    cell = cells[c][r] = Arrays.copyOf(cell, cell.length * 2);
+                }
+                cell[++cell[0]] = entry;
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if any rectangle in the index intersects the given area.
+     */
+    public boolean intersects(int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return false;
+        }
+        int lastColumn = Math.min(column(x + width - 1), cells.length - 1);
+        int lastRow = row(y + height - 1);
+        for (int c = column(x); c <= lastColumn; c++) {
+            int[][] column = cells[c];
+            for (int r = row(y), end = Math.min(lastRow, column.length - 1); r <= end; r++) {
+                int[] cell = column[r];
+                if (cell == null) {
+                    continue;
+                }
+                for (int k = 1; k <= cell[0]; k++) {
+                    if (intersects(cell[k], x, y, width, height)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns {@code true} if any rectangle in the index intersects the given rectangle.
+     */
+    public boolean intersects(Rectangle rectangle) {
+        return intersects(rectangle.x, rectangle.y, rectangle.width, rectangle.height);
+    }
+
+    /**
+     * Returns the largest right edge, {@code x + width}, of the rectangles intersecting the given area.
+     * <p>
+     * Moving a rectangle left as far as possible is {@code maxRight(0, y, x, height)}. The columns are scanned
+     * from right to left and the scan stops at the first column with an intersecting rectangle, since the rectangle
+     * with the largest right edge is always in that column.
+     * </p>
+     *
+     * @return the largest right edge, or {@code 0} if no rectangle intersects the area
+     */
+    public int maxRight(int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return 0;
+        }
+        int firstColumn = column(x);
+        int lastRow = row(y + height - 1);
+        for (int c = Math.min(column(x + width - 1), cells.length - 1); c >= firstColumn; c--) {
+            int[][] column = cells[c];
+            int maxRight = -1;
+            for (int r = row(y), end = Math.min(lastRow, column.length - 1); r <= end; r++) {
+                int[] cell = column[r];
+                if (cell == null) {
+                    continue;
+                }
+                for (int k = 1; k <= cell[0]; k++) {
+                    int entry = cell[k];
+                    if (intersects(entry, x, y, width, height)) {
+                        maxRight = Math.max(maxRight, this.x[entry] + w[entry]);
+                    }
+                }
+            }
+            if (maxRight >= 0) {
+                return maxRight;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the largest bottom edge, {@code y + height}, of the rectangles intersecting the given area.
+     * <p>
+     * Moving a rectangle up as far as possible is {@code maxBottom(x, 0, width, y)}. The rows are scanned from the
+     * bottom up and the scan stops at the first row with an intersecting rectangle.
+     * </p>
+     *
+     * @return the largest bottom edge, or {@code 0} if no rectangle intersects the area
+     */
+    public int maxBottom(int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return 0;
+        }
+        int firstRow = row(y);
+        int firstColumn = column(x);
+        int lastColumn = Math.min(column(x + width - 1), cells.length - 1);
+        for (int r = row(y + height - 1); r >= firstRow; r--) {
+            int maxBottom = -1;
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                int[][] column = cells[c];
+                int[] cell = r < column.length ? column[r] : null;
+                if (cell == null) {
+                    continue;
+                }
+                for (int k = 1; k <= cell[0]; k++) {
+                    int entry = cell[k];
+                    if (intersects(entry, x, y, width, height)) {
+                        maxBottom = Math.max(maxBottom, this.y[entry] + h[entry]);
+                    }
+                }
+            }
+            if (maxBottom >= 0) {
+                return maxBottom;
+            }
+        }
+        return 0;
+    }
+
+    private boolean intersects(int entry, int x, int y, int width, int height) {
+        return x < this.x[entry] + w[entry] && this.x[entry] < x + width
+                && y < this.y[entry] + h[entry] && this.y[entry] < y + height;
+    }
+
+    private int column(int x) {
+        return Math.max(0, x) / cellWidth;
+    }
+
+    private int row(int y) {
+        return Math.max(0, y) / cellHeight;
+    }
+
+    private void ensureColumns(int columns) {
+        if (cells.length < columns) {
+            int length = cells.length;
+            cells = Arrays.copyOf(cells, Math.max(columns, length * 2));
+            for (int c = length; c < cells.length; c++) {
+                cells[c] = new int[0][];
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package jacenre.dbla;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Divides the time of a {@link CompoundSolver} over its solvers, based on how often every solver won on instances of
+ * the same {@link InstanceFeatures#instanceClass() class}.
+ * <p>
+ * The statistics are learned offline with {@link #main(String[])} and shipped as the {@value #RESOURCE} resource. A
+ * solver gets a weight between {@value #MIN_WEIGHT} and 1, the solver that won most often gets 1. A class with too few
+ * runs falls back to its {@link InstanceFeatures#coarseClass() coarse class} and then to all instances.
+ * </p>
+ * <p>
+ * Usage: {@code PortfolioScheduler <corpus directory> <output file> [budget per solver in ms] [stride]}, which solves
+ * every {@code stride}-th instance of the corpus with every solver of {@link PackingSolver#createSolver()}.
+ * </p>
+ */
+public class PortfolioScheduler {
+
+    /**
+     * The name of the statistics resource, next to this class.
+     */
+    static final String RESOURCE = "portfolio.csv";
+
+    /**
+     * The smallest weight of a solver, every solver gets some time.
+     */
+    static final double MIN_WEIGHT = 0.1;
+
+    /**
+     * The number of runs a solver needs in a class before the statistics of that class are used.
+     */
+    static final int MIN_RUNS = 5;
+
+    private static final String ALL = "*";
+
+    private static PortfolioScheduler defaultScheduler;
+
+    /**
+     * The runs and wins per solver per instance class, and the same for the coarse classes and all instances.
+     */
+    private final Map<String, Map<String, int[]>> classes = new TreeMap<>();
+    private final Map<String, Map<String, int[]>> aggregates = new HashMap<>();
+
+    /**
+     * Returns the scheduler with the statistics of the {@value #RESOURCE} resource, without statistics if it is
+     * missing.
+     */
+    public static synchronized PortfolioScheduler getDefault() {
+        if (defaultScheduler == null) {
+            try (InputStream stream = PortfolioScheduler.class.getResourceAsStream(RESOURCE)) {
+                defaultScheduler = stream == null ? new PortfolioScheduler()
+                        : read(new InputStreamReader(stream, StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return defaultScheduler;
+    }
+
+    /**
+     * Reads statistics written by {@link #write(Writer)}.
+     *
+     * @throws IOException if reading fails or a line is malformed
+     */
+    public static PortfolioScheduler read(Reader reader) throws IOException {
+        PortfolioScheduler scheduler = new PortfolioScheduler();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("class,")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (fields.length != 4) {
+                throw new IOException("Malformed line: " + line);
+            }
+            try {
+                scheduler.record(fields[0], fields[1], Integer.parseInt(fields[2]), Integer.parseInt(fields[3]));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed line: " + line, e);
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * Writes the statistics as CSV with a line per class and solver.
+     *
+     * @throws IOException if writing fails
+     */
+    public void write(Writer writer) throws IOException {
+        BufferedWriter lines = new BufferedWriter(writer);
+        lines.write("class,solver,runs,wins");
+        lines.newLine();
+        for (Map.Entry<String, Map<String, int[]>> entry : classes.entrySet()) {
+            for (Map.Entry<String, int[]> solver : entry.getValue().entrySet()) {
+                lines.write(entry.getKey() + "," + solver.getKey() + "," + solver.getValue()[0] + ","
+                        + solver.getValue()[1]);
+                lines.newLine();
+            }
+        }
+        lines.flush();
+    }
+
+    /**
+     * Adds {@code runs} runs of {@code solver} on instances of {@code instanceClass}, {@code wins} of which it won.
+     */
+    void record(String instanceClass, String solver, int runs, int wins) {
+        add(classes, instanceClass, solver, runs, wins);
+        add(aggregates, InstanceFeatures.coarseClass(instanceClass), solver, runs, wins);
+        add(aggregates, ALL, solver, runs, wins);
+    }
+
+    private static void add(Map<String, Map<String, int[]>> map, String key, String solver, int runs, int wins) {
+        int[] stats = map.computeIfAbsent(key, k -> new TreeMap<>()).computeIfAbsent(solver, k -> new int[2]);
+        stats[0] += runs;
+        stats[1] += wins;
+    }
+
+    /**
+     * Returns the weight of every solver for an instance with {@code features}, in the order of {@code solvers}.
+     * <p>
+     * The weight is the smoothed fraction of runs a solver won, divided by the largest one. Solvers without
+     * statistics all get 1.
+     * </p>
+     */
+    public double[] weights(InstanceFeatures features, List<AbstractSolver> solvers) {
+        String instanceClass = features.instanceClass();
+        Map<String, int[]> stats = classes.get(instanceClass);
+        if (!isKnown(stats, solvers)) {
+            stats = aggregates.get(InstanceFeatures.coarseClass(instanceClass));
+        }
+        if (!isKnown(stats, solvers)) {
+            stats = aggregates.get(ALL);
+        }
+
+        double[] weights = new double[solvers.size()];
+        if (!isKnown(stats, solvers)) {
+            Arrays.fill(weights, 1);
+            return weights;
+        }
+        double max = 0;
+        for (int i = 0; i < weights.length; i++) {
+            int[] solver = stats.get(name(solvers.get(i)));
+            weights[i] = (solver[1] + 1.0) / (solver[0] + 2.0);
+            max = Math.max(max, weights[i]);
+        }
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = Math.max(MIN_WEIGHT, weights[i] / max);
+        }
+        return weights;
+    }
+
+    /**
+     * Returns {@code true} if every solver has at least {@link #MIN_RUNS} runs in {@code stats}.
+     */
+    private static boolean isKnown(Map<String, int[]> stats, List<AbstractSolver> solvers) {
+        if (stats == null) {
+            return false;
+        }
+        for (AbstractSolver solver : solvers) {
+            int[] runs = stats.get(name(solver));
+            if (runs == null || runs[0] < MIN_RUNS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the name {@code solver} is known by in the statistics, the simple name of its class.
+     */
+    static String name(AbstractSolver solver) {
+        return solver.getClass().getSimpleName();
+    }
+
+    /**
+     * Solves {@code parameters} with every solver that can solve it and records which solvers found the best
+     * solution.
+     */
+    void learn(Parameters parameters, List<AbstractSolver> solvers, long budget) {
+        // The free height is solved as fixed height sub problems, see FreeHeightUtil
+        Parameters probe = parameters.copy();
+        if (probe.heightVariant == Util.HeightSupport.FREE) {
+            probe.heightVariant = Util.HeightSupport.FIXED;
+            probe.freeHeightUtil = true;
+        }
+
+        List<AbstractSolver> runs = new ArrayList<>();
+        List<Solution> solutions = new ArrayList<>();
+        for (AbstractSolver solver : solvers) {
+            if (!solver.canSolveParameters(probe)) {
+                continue;
+            }
+            Solution solution = null;
+            try {
+                solution = solver.getSolution(parameters.copy(), Deadline.after(budget));
+            } catch (RuntimeException e) {
+                if (Util.debug) {
+                    e.printStackTrace();
+                }
+            }
+            runs.add(solver);
+            solutions.add(solution != null && solution.getRate() >= 1 && Util.isValidSolution(solution)
+                    ? solution : null);
+        }
+
+        Solution best = null;
+        for (Solution solution : solutions) {
+            if (solution != null && (best == null || solution.isBetter(best))) {
+                best = solution;
+            }
+        }
+        String instanceClass = InstanceFeatures.of(parameters).instanceClass();
+        for (int i = 0; i < runs.size(); i++) {
+            Solution solution = solutions.get(i);
+            // Every solver that is not worse than the best one won
+            boolean won = solution != null && !best.isBetter(solution);
+            record(instanceClass, name(runs.get(i)), 1, won ? 1 : 0);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: PortfolioScheduler <corpus directory> <output file> [budget per solver in ms] "
+                    + "[stride]");
+            System.exit(2);
+        }
+        List<Path> instances = BatchSolver.listInstances(Paths.get(args[0]));
+        Path output = Paths.get(args[1]);
+        long budget = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+        int stride = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+
+        PortfolioScheduler scheduler = new PortfolioScheduler();
+        for (int i = 0; i < instances.size(); i += stride) {
+            Path instance = instances.get(i);
+            try {
+                Parameters parameters = new UserInput(instance.toFile()).getUserInput();
+                scheduler.learn(parameters, PackingSolver.createSolver().getSolvers(), budget);
+            } catch (Exception e) {
+                System.err.println("Skipped " + instance + ": " + e);
+            }
+        }
+
+        try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            writer.write("# Learned from 1 in " + stride + " instances of " + args[0] + " with " + budget
+                    + "ms per solver\n");
+            scheduler.write(writer);
+        }
+    }
+}
@@ -1,5 +1,5 @@
 package jacenre.dbla;
-import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Custom version of {@link java.awt.Rectangle} that allows for extra satellite data needed for the algorithm.
@@ -13,8 +13,17 @@ public class Rectangle extends java.awt.Rectangle {
 
     /**
      * Unique id used for describing the order of the input. Needed to restore order when outputting.
+     * <p>
+     * Rectangles read by {@link UserInput} get their dense input index {@code 0 .. n - 1}, any other rectangle
+     * gets a unique negative id so it can never be mistaken for an input rectangle.
+     * </p>
      */
-    private String id;
+    private final int id;
+
+    /**
+     * Source of the ids of rectangles that are not created with an input index.
+     */
+    private static final AtomicInteger NEXT_ID = new AtomicInteger(-1);
 
     // TODO: add a hasBeenPlaced boolean to be used in solvers
     private boolean placed = false;
@@ -28,7 +37,7 @@ public class Rectangle extends java.awt.Rectangle {
     }
 
     /**
-     * Construction method which also assigns a random unique id.
+     * Construction method which also assigns a unique id.
      *
      * @param width  The width of the {@code Rectangle}.
      * @param height The height of the {@code Rectangle}.
@@ -38,22 +47,33 @@ public class Rectangle extends java.awt.Rectangle {
         super(width, height);
 
         // Assign ID
-        this.id = UUID.randomUUID().toString();
+        this.id = NEXT_ID.getAndDecrement();
+    }
+
+    /**
+     * Construction method for a rectangle of the input.
+     *
+     * @param width  The width of the {@code Rectangle}.
+     * @param height The height of the {@code Rectangle}.
+     * @param index  The index of the {@code Rectangle} in the input, used as its id.
+     */
+    public Rectangle(int width, int height, int index) {
+        super(width, height);
+        this.id = index;
     }
 
     public Rectangle(Rectangle rectangle) {
         super(rectangle);
         this.x = rectangle.x;
         this.y = rectangle.y;
-        // Assign ID
-        this.id = rectangle.id != null ? rectangle.id : UUID.randomUUID().toString();
+        this.id = rectangle.id;
     }
 
     public Rectangle(int x, int y, int width, int height) {
         super(x, y, width, height);
 
         // Assign ID
-        this.id = UUID.randomUUID().toString();
+        this.id = NEXT_ID.getAndDecrement();
     }
 
     /**
@@ -64,9 +84,9 @@ public class Rectangle extends java.awt.Rectangle {
     }
 
     /**
-     * Get id.
+     * Get id, the index in the input if this rectangle was read by {@link UserInput}.
      */
-    public String getId() {
+    public int getId() {
         return id;
     }
 
@@ -102,10 +122,10 @@ public class Rectangle extends java.awt.Rectangle {
      * Returns whether Object is equals to this Rectangle object.
      *
      * @param o the object to equal
-     * @return True if the object is of the Type Rectangle and has the same UUID
+     * @return True if the object is of the Type Rectangle and has the same id
      */
     @Override
     public boolean equals(Object o) {
-        return o instanceof Rectangle && ((Rectangle) o).getId().equals(getId());
+        return o instanceof Rectangle && ((Rectangle) o).id == id;
     }
 }
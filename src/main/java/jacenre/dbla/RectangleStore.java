@@ -0,0 +1,320 @@
+package jacenre.dbla;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Packed struct-of-arrays representation of a list of {@link Rectangle} objects.
+ * <p>
+ * Solvers that only need coordinates and dimensions can work on the parallel {@code int} arrays directly, which
+ * avoids walking a list of heap objects and the virtual {@link java.awt.Rectangle#intersects} calls in the inner
+ * loops. The original {@code Rectangle} objects are kept as views and only updated when
+ * {@link #getRectangles()} is called.
+ * </p>
+ *
+ * @see Parameters#getStore()
+ */
+public class RectangleStore {
+
+    /**
+     * Number of rectangles in this store.
+     */
+    final int size;
+
+    /**
+     * Coordinates and dimensions of the rectangles, index {@code i} of each array belongs to the same rectangle.
+     */
+    final int[] x;
+    final int[] y;
+    final int[] w;
+    final int[] h;
+
+    /**
+     * Bit {@code i} is set if rectangle {@code i} is rotated.
+     */
+    final BitSet rotated;
+
+    /**
+     * Bit {@code i} is set if rectangle {@code i} has been placed.
+     */
+    final BitSet placed;
+
+    /**
+     * The {@code Rectangle} objects this store was created from, in the same order as the arrays.
+     */
+    private final Rectangle[] views;
+
+    /**
+     * The largest {@code x + width} and {@code y + height} of the rectangles, kept up to date as rectangles are moved
+     * and rotated. {@code -1} if the rectangle that reached it moved back, it is found again when asked for.
+     */
+    private int maxX;
+    private int maxY;
+
+    /**
+     * Constructs a store holding the current state of the given rectangles.
+     *
+     * @param rectangles the rectangles to pack
+     */
+    public RectangleStore(List<Rectangle> rectangles) {
+        this.size = rectangles.size();
+        this.x = new int[size];
+        this.y = new int[size];
+        this.w = new int[size];
+        this.h = new int[size];
+        this.rotated = new BitSet(size);
+        this.placed = new BitSet(size);
+        this.views = rectangles.toArray(new Rectangle[0]);
+
+        for (int i = 0; i < size; i++) {
+            Rectangle rectangle = views[i];
+            x[i] = rectangle.x;
+            y[i] = rectangle.y;
+            w[i] = rectangle.width;
+            h[i] = rectangle.height;
+            rotated.set(i, rectangle.isRotated());
+            placed.set(i, rectangle.isPlaced());
+            maxX = Math.max(maxX, x[i] + w[i]);
+            maxY = Math.max(maxY, y[i] + h[i]);
+        }
+    }
+
+    private RectangleStore(RectangleStore store) {
+        this.size = store.size;
+        this.x = store.x.clone();
+        this.y = store.y.clone();
+        this.w = store.w.clone();
+        this.h = store.h.clone();
+        this.rotated = (BitSet) store.rotated.clone();
+        this.placed = (BitSet) store.placed.clone();
+        this.views = store.views.clone();
+        this.maxX = store.maxX;
+        this.maxY = store.maxY;
+    }
+
+    /**
+     * Returns a copy of this store.
+     * <p>
+     * The arrays are copied, the {@code Rectangle} views are shared. Only the store on which
+     * {@link #getRectangles()} is called last determines the state of the views.
+     * </p>
+     *
+     * @return a copy of this store
+     */
+    public RectangleStore copy() {
+        return new RectangleStore(this);
+    }
+
+    /**
+     * Returns the number of rectangles in this store.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getX(int i) {
+        return x[i];
+    }
+
+    public int getY(int i) {
+        return y[i];
+    }
+
+    public int getWidth(int i) {
+        return w[i];
+    }
+
+    public int getHeight(int i) {
+        return h[i];
+    }
+
+    public void setLocation(int i, int x, int y) {
+        int right = this.x[i] + w[i];
+        int bottom = this.y[i] + h[i];
+        this.x[i] = x;
+        this.y[i] = y;
+        moved(i, right, bottom);
+    }
+
+    public void setX(int i, int x) {
+        setLocation(i, x, y[i]);
+    }
+
+    public void setY(int i, int y) {
+        setLocation(i, x[i], y);
+    }
+
+    /**
+     * Updates the extents after rectangle {@code i}, which reached to {@code right} and {@code bottom}, moved or
+     * rotated.
+     */
+    private void moved(int i, int right, int bottom) {
+        maxX = extent(maxX, right, x[i] + w[i]);
+        maxY = extent(maxY, bottom, y[i] + h[i]);
+    }
+
+    private static int extent(int extent, int before, int after) {
+        if (extent < 0) {
+            return extent;
+        }
+        if (after >= extent) {
+            return after;
+        }
+        return before == extent ? -1 : extent;
+    }
+
+    public boolean isRotated(int i) {
+        return rotated.get(i);
+    }
+
+    public boolean isPlaced(int i) {
+        return placed.get(i);
+    }
+
+    public void place(int i, boolean placed) {
+        this.placed.set(i, placed);
+    }
+
+    /**
+     * Rotates rectangle {@code i}, see {@link Rectangle#rotate()}.
+     */
+    public void rotate(int i) {
+        int right = x[i] + w[i];
+        int bottom = y[i] + h[i];
+        int temp = w[i];
+        w[i] = h[i];
+        h[i] = temp;
+        rotated.flip(i);
+        moved(i, right, bottom);
+    }
+
+    /**
+     * Returns whether rectangle {@code i} intersects the given area, with the same semantics as
+     * {@link java.awt.Rectangle#intersects(java.awt.Rectangle)}.
+     */
+    public boolean intersects(int i, int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0 || w[i] <= 0 || h[i] <= 0) {
+            return false;
+        }
+        return x < this.x[i] + w[i] && this.x[i] < x + width
+                && y < this.y[i] + h[i] && this.y[i] < y + height;
+    }
+
+    /**
+     * Returns whether rectangle {@code i} intersects rectangle {@code j}.
+     */
+    public boolean intersects(int i, int j) {
+        return intersects(i, x[j], y[j], w[j], h[j]);
+    }
+
+    /**
+     * Returns the largest {@code x + width} of all rectangles, only scans the rectangles if the rectangle that
+     * reached it moved back.
+     */
+    public int maxX() {
+        if (maxX < 0) {
+            maxX = 0;
+            for (int i = 0; i < size; i++) {
+                maxX = Math.max(maxX, x[i] + w[i]);
+            }
+        }
+        return maxX;
+    }
+
+    /**
+     * Returns the largest {@code y + height} of all rectangles, see {@link #maxX()}.
+     */
+    public int maxY() {
+        if (maxY < 0) {
+            maxY = 0;
+            for (int i = 0; i < size; i++) {
+                maxY = Math.max(maxY, y[i] + h[i]);
+            }
+        }
+        return maxY;
+    }
+
+    /**
+     * Comparator over indices of this store, used to sort without boxing.
+     */
+    public interface IndexComparator {
+        int compare(int i, int j);
+    }
+
+    /**
+     * Stably sorts the rectangles of this store, the views are reordered accordingly.
+     *
+     * @param comparator the comparator over the current indices
+     */
+    public void sort(IndexComparator comparator) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        mergeSort(order, new int[size], 0, size, comparator);
+
+        permute(x, order);
+        permute(y, order);
+        permute(w, order);
+        permute(h, order);
+        permute(rotated, order);
+        permute(placed, order);
+
+        Rectangle[] oldViews = views.clone();
+        for (int i = 0; i < size; i++) {
+            views[i] = oldViews[order[i]];
+        }
+    }
+
+    private static void mergeSort(int[] a, int[] buffer, int from, int to, IndexComparator comparator) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(a, buffer, from, middle, comparator);
+        mergeSort(a, buffer, middle, to, comparator);
+        if (comparator.compare(a[middle - 1], a[middle]) <= 0) {
+            return; // already in order
+        }
+        System.arraycopy(a, from, buffer, from, to - from);
+        int i = from;
+        int j = middle;
+        for (int k = from; k < to; k++) {
+            if (j >= to || i < middle && comparator.compare(buffer[i], buffer[j]) <= 0) {
+                a[k] = buffer[i++];
+            } else {
+                a[k] = buffer[j++];
+            }
+        }
+    }
+
+    private static void permute(int[] array, int[] order) {
+        int[] old = array.clone();
+        for (int i = 0; i < order.length; i++) {
+            array[i] = old[order[i]];
+        }
+    }
+
+    private static void permute(BitSet bits, int[] order) {
+        BitSet old = (BitSet) bits.clone();
+        for (int i = 0; i < order.length; i++) {
+            bits.set(i, old.get(order[i]));
+        }
+    }
+
+    /**
+     * Writes the state of this store to the {@code Rectangle} views and returns them in store order.
+     *
+     * @return a new list containing the updated views
+     */
+    public List<Rectangle> getRectangles() {
+        for (int i = 0; i < size; i++) {
+            Rectangle rectangle = views[i];
+            rectangle.rotate(rotated.get(i));
+            rectangle.setBounds(x[i], y[i], w[i], h[i]);
+            rectangle.place(placed.get(i));
+        }
+        return new ArrayList<>(Arrays.asList(views));
+    }
+}
@@ -0,0 +1,261 @@
+package jacenre.dbla;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * The rectangles that have not been placed yet, in the order they are tried, with their widths and heights counted
+ * in sorted maps.
+ * <p>
+ * Removing a rectangle only marks its position as removed and updates the counts in logarithmic time, so the smallest
+ * sides are known without a scan over the rectangles. The positions that are left are compacted once more than half
+ * of them are removed, so iterating takes time in the number of rectangles left. The rectangles are indexed by side
+ * length as well, which answers which rectangles fit a length exactly without a scan either. A rectangle must keep
+ * the orientation it had when it was added while it is in the list, rotate it only after removing it or rotate it
+ * back before the list is used again.
+ * </p>
+ * <p>
+ * Only {@link #remove(Object)} of a rectangle in the list and iterating are fast, {@link #get(int)} and
+ * {@link #remove(int)} pass over the list.
+ * </p>
+ */
+public class RemainingRectangles extends AbstractList<Rectangle> {
+
+    /**
+     * The rectangles in the initial order, and which positions are removed.
+     */
+    private final Rectangle[] rectangles;
+    private final boolean[] removed;
+
+    /**
+     * The position of every rectangle, by identity.
+     */
+    private final IdentityHashMap<Rectangle, Integer> positionOf;
+
+    /**
+     * The positions in increasing order of at least all rectangles that are left, the first {@link #length} are used.
+     */
+    private final int[] order;
+    private int length;
+    private int size;
+
+    /**
+     * The number of rectangles by width and by height.
+     */
+    private final TreeMap<Integer, Integer> widths = new TreeMap<>();
+    private final TreeMap<Integer, Integer> heights = new TreeMap<>();
+
+    /**
+     * The rectangles by height, and by height or width, as positions in the initial order.
+     */
+    private final HashMap<Integer, Fits> byHeight = new HashMap<>();
+    private final HashMap<Integer, Fits> bySide = new HashMap<>();
+
+    public RemainingRectangles(Collection<Rectangle> rectangles) {
+        this.rectangles = rectangles.toArray(new Rectangle[0]);
+        size = length = this.rectangles.length;
+        removed = new boolean[size];
+        order = new int[size];
+        positionOf = new IdentityHashMap<>(size);
+        for (int i = 0; i < size; i++) {
+            Rectangle rectangle = this.rectangles[i];
+            order[i] = i;
+            positionOf.putIfAbsent(rectangle, i);
+            widths.merge(rectangle.width, 1, Integer::sum);
+            heights.merge(rectangle.height, 1, Integer::sum);
+            byHeight.computeIfAbsent(rectangle.height, side -> new Fits()).add(i);
+            bySide.computeIfAbsent(rectangle.height, side -> new Fits()).add(i);
+            if (rectangle.width != rectangle.height) {
+                bySide.computeIfAbsent(rectangle.width, side -> new Fits()).add(i);
+            }
+        }
+    }
+
+    @Override
+    public Rectangle get(int index) {
+        return rectangles[position(index)];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<Rectangle> iterator() {
+        return new Iterator<Rectangle>() {
+            private int expectedModCount = modCount;
+            private int next = skip(0);
+            private int last = -1;
+
+            private int skip(int index) {
+                while (index < length && removed[order[index]]) {
+                    index++;
+                }
+                return index;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < length;
+            }
+
+            @Override
+            public Rectangle next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next >= length) {
+                    throw new NoSuchElementException();
+                }
+                last = order[next];
+                next = skip(next + 1);
+                return rectangles[last];
+            }
+
+            /**
+             * Removes the last rectangle returned, the positions are not compacted while iterating.
+             */
+            @Override
+            public void remove() {
+                if (last < 0 || removed[last]) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                RemainingRectangles.this.remove(last, false);
+                expectedModCount = modCount;
+            }
+        };
+    }
+
+    /**
+     * Removes the rectangle itself if it is in the list, otherwise the first rectangle equal to it.
+     */
+    @Override
+    public boolean remove(Object o) {
+        Integer position = positionOf.get(o);
+        if (position != null && !removed[position]) {
+            remove(position.intValue(), true);
+            return true;
+        }
+        return super.remove(o);
+    }
+
+    @Override
+    public Rectangle remove(int index) {
+        int position = position(index);
+        remove(position, true);
+        return rectangles[position];
+    }
+
+    /**
+     * Marks {@code position} as removed, and compacts the positions if {@code compact} and more than half of them
+     * are removed.
+     */
+    private void remove(int position, boolean compact) {
+        Rectangle rectangle = rectangles[position];
+        removed[position] = true;
+        size--;
+        decrement(widths, rectangle.width);
+        decrement(heights, rectangle.height);
+        byHeight.get(rectangle.height).count--;
+        bySide.get(rectangle.height).count--;
+        if (rectangle.width != rectangle.height) {
+            bySide.get(rectangle.width).count--;
+        }
+        if (compact && 2 * size < length) {
+            int kept = 0;
+            for (int i = 0; i < length; i++) {
+                if (!removed[order[i]]) {
+                    order[kept++] = order[i];
+                }
+            }
+            length = kept;
+        }
+        modCount++;
+    }
+
+    /**
+     * Returns the position of the rectangle at {@code index}.
+     */
+    private int position(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        for (int i = 0; ; i++) {
+            if (!removed[order[i]] && index-- == 0) {
+                return order[i];
+            }
+        }
+    }
+
+    private static void decrement(Map<Integer, Integer> counts, int side) {
+        counts.computeIfPresent(side, (key, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * Returns the smallest width of the rectangles, {@link Integer#MAX_VALUE} if there are none.
+     */
+    public int getMinWidth() {
+        return widths.isEmpty() ? Integer.MAX_VALUE : widths.firstKey();
+    }
+
+    /**
+     * Returns the smallest height of the rectangles, {@link Integer#MAX_VALUE} if there are none.
+     */
+    public int getMinHeight() {
+        return heights.isEmpty() ? Integer.MAX_VALUE : heights.firstKey();
+    }
+
+    /**
+     * Returns the number of rectangles that fit {@code length} exactly, the rectangles with that height or, if they
+     * may be rotated, with that width.
+     */
+    public int countFits(int length, boolean rotationsAllowed) {
+        Fits fits = (rotationsAllowed ? bySide : byHeight).get(length);
+        return fits == null ? 0 : fits.count;
+    }
+
+    /**
+     * Returns the last rectangle in the list that fits {@code length} exactly, see {@link #countFits}, or
+     * {@code null} if none does.
+     */
+    public Rectangle getLastFit(int length, boolean rotationsAllowed) {
+        Fits fits = (rotationsAllowed ? bySide : byHeight).get(length);
+        if (fits == null || fits.count == 0) {
+            return null;
+        }
+        // Removed positions at the end are dropped as they are found
+        while (removed[fits.positions[fits.size - 1]]) {
+            fits.size--;
+        }
+        return rectangles[fits.positions[fits.size - 1]];
+    }
+
+    /**
+     * The positions of the rectangles with a side length in increasing order, removed positions are only dropped
+     * from the end.
+     */
+    private static class Fits {
+        int count;
+        int[] positions = new int[2];
+        int size;
+
+        void add(int position) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, 2 * size);
+            }
+            positions[size++] = position;
+            count++;
+        }
+    }
+}
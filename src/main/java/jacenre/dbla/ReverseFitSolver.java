@@ -17,13 +17,8 @@ public class ReverseFitSolver extends AbstractSolver {
     }
 
     @Override
-    public boolean canSolveParameters(Parameters parameters) {
-        boolean superResult = super.canSolveParameters(parameters);
-        if (!superResult || (parameters.rectangles.size() > 2000 && (
-                parameters.heightVariant == Util.HeightSupport.FREE || parameters.freeHeightUtil))) {
-			return false;
-		}
-        return parameters.rectangles.size() <= 10000;
+    int maxRectangles(boolean free) {
+        return 10000;
     }
 
     /**
@@ -111,14 +106,15 @@ public class ReverseFitSolver extends AbstractSolver {
         remainingRectangles.removeAll(firstRow);
         remainingRectangles.removeAll(reverseRow);
 
+        PlacementIndex placed = PlacementIndex.forRectangles(parameters.rectangles);
+        for (Rectangle rectangle : firstRow) {
+            placed.add(rectangle);
+        }
 
         // Move all the rectangles from the right row to the left until any of them touch
-        int moved = 0; // equivalent to e_1 in paper
-        while (getTouchingLine(firstRow, reverseRow).length == 0) { // not touching
-            moved++;
-            for (Rectangle rectangle : reverseRow) {
-                rectangle.translate(-1, 0);
-            }
+        int moved = stepsUntilTouching(placed, reverseRow); // equivalent to e_1 in paper
+        for (Rectangle rectangle : reverseRow) {
+            rectangle.translate(-moved, 0);
         }
         int[] m = getTouchingLine(firstRow, reverseRow);
         // revert last translation
@@ -143,12 +139,9 @@ public class ReverseFitSolver extends AbstractSolver {
             Rectangle lastButOneOnReverse = reverseRow.get(reverseRow.size() -2); // r_j in the paper
 
             reverseRow.remove(lastOnReverse); // Because we want to drop everything except this one
-            int H_2 = 0; // as in the paper
-            while (getTouchingLine(firstRow, reverseRow).length == 0) { // not touching
-                H_2++;
-                for (Rectangle rectangle : reverseRow) {
-                    rectangle.translate(-1, 0);
-                }
+            int H_2 = stepsUntilTouching(placed, reverseRow); // as in the paper
+            for (Rectangle rectangle : reverseRow) {
+                rectangle.translate(-H_2, 0);
             }
             // revert last translation so not touching anymore
             H_2--;
@@ -159,19 +152,20 @@ public class ReverseFitSolver extends AbstractSolver {
             int x_third_level = lastButOneOnReverse.x + lastButOneOnReverse.width;
             if (H_2 <= lastOnReverse.width) { // what had to be done when H_2 < lastOnReverse.width was not in the paper but Wikipedia said the same as when equal
                 // Push up the last rectangle in the reverse row
-                Util.moveUp(lastOnReverse, firstRow);
+                moveUp(lastOnReverse, placed);
             } else { // (H_2 > lastOnReverse.width) {
                 lastOnReverse.setLocation(x_third_level, parameters.height);
-                Util.moveUp(lastOnReverse, firstRow);
+                moveUp(lastOnReverse, placed);
             }
 
             nextLevel = x_third_level;
             firstRow.add(lastOnReverse); // To make it easier to check if new rectangles intersect with others
+            placed.add(lastOnReverse);
         }
 
         // STEP 5 #####
         // From here just modified first fit
-        firstFit(remainingRectangles, nextLevel, parameters, firstRow);
+        firstFit(remainingRectangles, nextLevel, parameters, firstRow, placed);
 
         assert remainingRectangles.size() == 0;
         int finalWidth = findNewLevel(firstRow);
@@ -179,16 +173,18 @@ public class ReverseFitSolver extends AbstractSolver {
         return new Solution(parameters, this);
     }
 
-    void firstFit(ArrayList<Rectangle> remainingRectangles, int level, Parameters parameters, ArrayList<Rectangle> firstRow) {
+    void firstFit(ArrayList<Rectangle> remainingRectangles, int level, Parameters parameters, ArrayList<Rectangle> firstRow,
+                  PlacementIndex placed) {
         while (!remainingRectangles.isEmpty()) {
             remainingRectangles.get(0).setLocation(level, parameters.height);
-            Util.moveUp(remainingRectangles.get(0), firstRow);
+            moveUp(remainingRectangles.get(0), placed);
             if (remainingRectangles.get(0).y + remainingRectangles.get(0).height >= parameters.height) { //   TODO: SEE IF THIS SHOULD BE > OR >=
                 // it doesnt fit unfortunately, so we simply make a new level at the right of the fathest block to the right
                 int new_level = findNewLevel(firstRow); // Just search for ride side of most right block
-                firstFit(remainingRectangles, new_level, parameters, firstRow);
+                firstFit(remainingRectangles, new_level, parameters, firstRow, placed);
             } else { // rectangle fit in this last level, so we remove it from remaining rectangles but add to firstRow to look for collisions
                 firstRow.add(remainingRectangles.get(0));
+                placed.add(remainingRectangles.get(0));
                 remainingRectangles.remove(0);
             }
         }
@@ -204,20 +200,34 @@ public class ReverseFitSolver extends AbstractSolver {
         return max_x;
     }
 
-    boolean canPushRectangleUp(ArrayList<Rectangle> firstRow, Rectangle rectangleToPushUp) {
-        rectangleToPushUp.translate(0, -1);
-        if (rectangleToPushUp.y < 0) {
-            rectangleToPushUp.translate(0, 1);
-            return false;
-        }
-        for (Rectangle rectangle : firstRow) {
-            if (rectangleToPushUp.intersects(rectangle)) {
-                rectangleToPushUp.translate(0, 1);
-                return false;
+    boolean canPushRectangleUp(PlacementIndex placed, Rectangle rectangleToPushUp) {
+        return rectangleToPushUp.y > 0 && !placed.intersects(rectangleToPushUp.x, rectangleToPushUp.y - 1,
+                rectangleToPushUp.width, rectangleToPushUp.height);
+    }
+
+    /**
+     * Move the rectangle up as far as the placed rectangles allow.
+     */
+    void moveUp(Rectangle rectangle, PlacementIndex placed) {
+        rectangle.y = placed.maxBottom(rectangle.x, 0, rectangle.width, rectangle.y);
+    }
+
+    /**
+     * Returns the number of steps of one to the left after which a rectangle in {@code rightRow} first intersects
+     * a placed rectangle, the rectangles in {@code rightRow} must not intersect any placed rectangle yet.
+     */
+    int stepsUntilTouching(PlacementIndex placed, List<Rectangle> rightRow) {
+        int steps = Integer.MAX_VALUE;
+        for (Rectangle right : rightRow) {
+            int obstacle = placed.maxRight(0, right.y, right.x, right.height);
+            if (obstacle > 0) {
+                steps = Math.min(steps, right.x - obstacle + 1);
             }
         }
-        rectangleToPushUp.translate(0, 1);
-        return true;
+        if (steps == Integer.MAX_VALUE) {
+            throw new IllegalStateException("The rows never touch");
+        }
+        return steps;
     }
 
     // CAN BE FASTER FOR SURE
@@ -234,4 +244,11 @@ public class ReverseFitSolver extends AbstractSolver {
         // should get here when not touching
         return new int[]{};
     }
+
+    @Override
+    AbstractSolver newInstance() {
+        ReverseFitSolver solver = new ReverseFitSolver();
+        solver.allowInputSorting = allowInputSorting;
+        return solver;
+    }
 }
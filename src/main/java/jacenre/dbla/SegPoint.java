@@ -7,6 +7,11 @@ import java.awt.Point;
 class SegPoint extends java.awt.Point {
     boolean start;
 
+    /**
+     * The handle of the segment of an {@link ArraySkyline} this is a point of, {@code -1} if it is not known.
+     */
+    int segment = -1;
+
     public SegPoint (boolean start) {
         super();
         this.start = start;
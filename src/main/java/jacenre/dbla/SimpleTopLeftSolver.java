@@ -1,7 +1,6 @@
 package jacenre.dbla;
 import java.util.Arrays;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Random;
 import java.util.Set;
 
@@ -12,6 +11,11 @@ import java.util.Set;
 public class SimpleTopLeftSolver extends AbstractSolver {
     int binWidth = 0;
 
+    /**
+     * The rectangles placed so far in the current solution.
+     */
+    PlacementIndex index;
+
     public SimpleTopLeftSolver(boolean allowInputSorting) {
         super(allowInputSorting);
     }
@@ -25,13 +29,8 @@ public class SimpleTopLeftSolver extends AbstractSolver {
     }
 
     @Override
-    public boolean canSolveParameters(Parameters parameters) {
-        boolean superResult = super.canSolveParameters(parameters);
-        if (!superResult || (parameters.rectangles.size() > 500 && (
-                parameters.heightVariant == Util.HeightSupport.FREE || parameters.freeHeightUtil))) {
-			return false;
-		}
-        return parameters.rectangles.size() <= 1000;
+    int maxRectangles(boolean free) {
+        return 1000;
     }
 
     /**
@@ -42,123 +41,105 @@ public class SimpleTopLeftSolver extends AbstractSolver {
      */
     @Override
     Solution pack(Parameters parameters) throws IllegalArgumentException {
+        RectangleStore initialStore = parameters.getStore();
+
         // Get a trivial solution
         int x = 0;
-        for (Rectangle rectangle: parameters.rectangles ) {
-            rectangle.x = x;
-            x += rectangle.width;
-            rectangle.place(true);
+        for (int i = 0; i < initialStore.size; i++) {
+            initialStore.setX(i, x);
+            x += initialStore.w[i];
+            initialStore.place(i, true);
         }
-        Solution trivialSolution = new Solution(parameters, this);
 
         Util.animate(parameters, this);
 
         // Sort the array from large to small
         if (allowInputSorting) {
-            parameters.rectangles.sort((o1, o2) -> o2.height - o1.height);
+            initialStore.sort((i, j) -> initialStore.h[j] - initialStore.h[i]);
         }
 
-        // Get 50 solutions based on rotating differently
-        Solution bestSolution = trivialSolution;
-        Parameters initialParameters = parameters.copy();
+        // Get 5 solutions based on rotating differently
+        RectangleStore bestStore = null;
+        int bestWidth = 0;
 
         for (int n = 0; n < 5; n++) {
+            RectangleStore store = initialStore.copy();
+
             // Put the first rectangle in the top left corner
-            parameters.rectangles.get(0).x = 0;
-            parameters.rectangles.get(0).y = 0;
-            parameters.rectangles.get(0).place(true);
-            binWidth = parameters.rectangles.get(0).width;
+            store.setLocation(0, 0, 0);
+            store.place(0, true);
+            binWidth = store.w[0];
+            index = PlacementIndex.forStore(store);
+            index.add(store, 0);
 
-            for (int i = 1; i < parameters.rectangles.size(); i++) {
+            for (int i = 1; i < store.size; i++) {
                 // Put the rectangle in the bottom right corner
-                Rectangle rect = parameters.rectangles.get(i);
-                rect.place(true);
+                store.place(i, true);
                 Util.animate();
-                if (parameters.rotationVariant && new Random().nextBoolean() && rect.width < parameters.height) {
-                    rect.rotate();
+                if (parameters.rotationVariant && new Random().nextBoolean() && store.w[i] < parameters.height) {
+                    store.rotate(i);
                 }
-                rect.x = binWidth;
-                rect.y = parameters.height - rect.height;
-                move(rect, parameters.rectangles);
-                binWidth = Math.max(binWidth, rect.x + rect.width);
+                store.setLocation(i, binWidth, parameters.height - store.h[i]);
+                move(store, i);
+                index.add(store, i);
+                binWidth = Math.max(binWidth, store.x[i] + store.w[i]);
             }
-            Solution sol = new Solution(parameters, this);
-            bestSolution = sol.getArea() < bestSolution.getArea() ? sol : bestSolution;
-            parameters = initialParameters.copy();
-        }
 
+            // The height is fixed, so the smallest width gives the smallest area
+            int width = store.maxX();
+            if (bestStore == null || width < bestWidth) {
+                bestStore = store;
+                bestWidth = width;
+            }
+        }
 
-        return bestSolution;
+        parameters.setStore(bestStore);
+        return new Solution(parameters, this, bestStore);
     }
 
-    protected void move(Rectangle rect, List<Rectangle> rectangles) {
-        if (!canMoveLeft(rect, rectangles) && !canMoveUp(rect, rectangles)) {
+    protected void move(RectangleStore store, int i) {
+        if (!canMoveLeft(store, i) && !canMoveUp(store, i)) {
             return;
         }
-        if (canMoveLeft(rect, rectangles)) {
-            moveLeft(rect, rectangles);
+        if (canMoveLeft(store, i)) {
+            moveLeft(store, i);
         }
-        while (canMoveUp(rect, rectangles)) {
-            moveUp(rect, rectangles);
-            if (canMoveLeft(rect, rectangles)) {
-                moveLeft(rect, rectangles);
+        while (canMoveUp(store, i)) {
+            moveUp(store, i);
+            if (canMoveLeft(store, i)) {
+                moveLeft(store, i);
             }
         }
-        rect.place(true);
+        store.place(i, true);
     }
 
     /**
      * Instead of going step by step, this method looks at what rectangles are
      * blocking it from going all the way to the left, and move to just the right side of them.
      */
-    protected void moveLeft(Rectangle rect, List<Rectangle> rectangles) {
-        Util.moveLeft(rect, rectangles);
+    protected void moveLeft(RectangleStore store, int i) {
+        store.setX(i, index.maxRight(0, store.y[i], store.x[i], store.h[i]));
     }
 
     /**
      * Move up until there is a possibility to move left.
      */
-    protected void moveUp(Rectangle rect, List<Rectangle> rectangles) {
-        Util.moveUp(rect, rectangles);
+    protected void moveUp(RectangleStore store, int i) {
+        store.setY(i, index.maxBottom(store.x[i], 0, store.w[i], store.y[i]));
     }
 
-    /** Check if the rectangle can move to its left */
-    protected boolean canMoveLeft(Rectangle rect, List<Rectangle> rectangles) {
-        if (rect.x <= 0) {
-			return false;
-		}
-        rect.x--;
-        // Check intersection with all placed rectangles
-        for (Rectangle rectangle : rectangles) {
-            if (rect.getId().equals(rectangle.getId())) {
-				break;
-			}
-            if (rect.intersects(rectangle)) {
-                rect.x++;
-                return false;
-            }
-        }
-        rect.x++;
-        return true;
+    /** Check if rectangle {@code i} can move to its left, the rectangles before it in the store are placed */
+    protected boolean canMoveLeft(RectangleStore store, int i) {
+        return store.x[i] > 0 && !index.intersects(store.x[i] - 1, store.y[i], store.w[i], store.h[i]);
     }
 
-    /** Check if the rectangle can move up */
-    protected boolean canMoveUp(Rectangle rect, List<Rectangle> rectangles) {
-        if (rect.y <= 0) {
-			return false;
-		}
-        rect.y--;
-        // Check intersection with all placed rectangles
-        for (Rectangle rectangle : rectangles) {
-            if (rect.getId().equals(rectangle.getId())) {
-				break;
-			}
-            if (rect.intersects(rectangle)) {
-                rect.y++;
-                return false;
-            }
-        }
-        rect.y++;
-        return true;
+    /** Check if rectangle {@code i} can move up, the rectangles before it in the store are placed */
+    protected boolean canMoveUp(RectangleStore store, int i) {
+        return store.y[i] > 0 && !index.intersects(store.x[i], store.y[i] - 1, store.w[i], store.h[i]);
+    }
+
+    @Override
+    AbstractSolver newInstance() {
+        return new SimpleTopLeftSolver(allowInputSorting);
     }
 }
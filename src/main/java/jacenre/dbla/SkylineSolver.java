@@ -9,6 +9,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Solver algorithm using the Skyline heuristic
@@ -20,17 +22,30 @@ public class SkylineSolver extends AbstractSolver {
     Solution globalSolution;
     Parameters parameters;
 
+    /**
+     * The rectangles placed by the current {@link #heuristicSolve}.
+     */
+    private PlacementIndex placed;
+
+    /**
+     * Workers scoring the placements of large steps of {@link #heuristicSolve}, shared by all skyline solvers.
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The number of placements from which a step of {@link #heuristicSolve} is scored in parallel, a task scores at
+     * least half of them. On a single processor steps are scored one placement after another.
+     */
+    int parallelPlacements = Runtime.getRuntime().availableProcessors() > 1 ? 4096 : Integer.MAX_VALUE;
+
     @Override
     Set<Util.HeightSupport> getHeightSupport() {
         return new HashSet<>(Arrays.asList(Util.HeightSupport.FIXED, Util.HeightSupport.FREE));
     }
 
     @Override
-    public boolean canSolveParameters(Parameters parameters) {
-        if ((parameters.rectangles.size() > 100) || ((parameters.heightVariant == Util.HeightSupport.FREE || parameters.freeHeightUtil)  && parameters.rectangles.size() > 50)) {
-			return false;
-		}
-        return super.canSolveParameters(parameters);
+    int maxRectangles(boolean free) {
+        return free ? 50 : 100;
     }
 
     private int debug = 0;
@@ -50,6 +65,8 @@ public class SkylineSolver extends AbstractSolver {
         int lowerBound = getLowerBound(parameters);
 
         globalSolution = new FirstFitSolver().getSolution(parameters);
+        // heuristicSolve replaces the rectangles of these parameters, the first fit solution keeps its own
+        globalSolution = new Solution(globalSolution.parameters.shallowCopy(), globalSolution.solvedBy);
         if (globalSolution.getRate() == 1.0d) {
 			return globalSolution;
 		}
@@ -342,17 +359,23 @@ public class SkylineSolver extends AbstractSolver {
      */
     boolean heuristicSolve(List<Rectangle> originalSequence, int width, int maximumSpread) {
         numChecks--;
+        if (deadline.isExpired()) {
+            // The search loops stop once they are out of checks
+            numChecks = 0;
+            return false;
+        }
         //Util.animate(animation, this);
 
         // Just to be sure
         resetRecs(originalSequence);
+        placed = PlacementIndex.forRectangles(originalSequence);
 
         // Make a skyline for this attempt to place all the rectangles
-        ArrayListSkyline skylineDataStructure = new ArrayListSkyline(parameters.height, width, maximumSpread, parameters.rotationVariant);
-        List<PositionRectangleRotationPair> minimumLocalSpaceWastePlacements = new ArrayList<>();
+        ArraySkyline skylineDataStructure = new ArraySkyline(parameters.height, width, maximumSpread, parameters.rotationVariant);
 
         // Keep track of which rectangles still need to be placed
-        List<Rectangle> rectanglesNotPlacedYet = skylineDataStructure.deepCopyRectangles(originalSequence);
+        RemainingRectangles rectanglesNotPlacedYet = new RemainingRectangles(originalSequence);
+        LastStep lastStep = new LastStep(maximumSpread);
 
         // Place a rectangle every loop till every rectangle is placed
         // If it is impossible to place a rectangle, the method returns false
@@ -363,71 +386,36 @@ public class SkylineSolver extends AbstractSolver {
             // Get smallest and second smallest widths and smallest and second smallest heights
             int[] smallestRecs = skylineDataStructure.getMinWidthHeightOtherRectangles(rectanglesNotPlacedYet);
 
-            // Before every placement, we want to keep track of what placement/which placements create(s) the least waste of space and
-            // keep these in an array
-
-            int minimumLocalSpaceWaste = Integer.MAX_VALUE;
-            minimumLocalSpaceWastePlacements.clear();
-
             // Test if there is any perfect place to place the rectangle.
             PositionRectangleRotationPair toBePlaced = skylineDataStructure.anyOnlyFit(rectanglesNotPlacedYet, parameters.rotationVariant);
 
+            // The only fit is checked where the last step left the rectangle, see LastStep
+            if (toBePlaced != null) {
+                int y = lastStep.y(toBePlaced.rectangle);
+                if (y + toBePlaced.rectangle.height > parameters.height || y < 0) {
+                    toBePlaced = null;
+                }
+            }
+
             // If there is then place it
             if (!(toBePlaced == null)) {
                 placeRectangle(toBePlaced, rectanglesNotPlacedYet, skylineDataStructure);
                 continue;
             }
 
-            // Check for every rectangle-position pair the local waste
-            for (SegPoint segPoint : skylineDataStructure.getCandidatePoints()) {
-                for (Rectangle rectangle : rectanglesNotPlacedYet) {
-                    // If the rotationsvariant is true, we want to test both rotations for every rectangle
-                    for (int secondLoop = 0; secondLoop < (parameters.rotationVariant? 2 : 1); secondLoop++) {
-                        if (secondLoop == 1) {
-                            rectangle.rotate();
-
-                        }
-                        // Checks if the rectangle can even be placed
-                        if (skylineDataStructure.doesNotMeetSpreadConstraint(rectangle, segPoint, mostLeft) || hasOverlap(rectangle, segPoint, width, originalSequence)) { // spread constraint
-                            continue;
-                        }
-                        // Produces a list of placements which all have the lowest local space waste
-                        int localSpaceWaste = skylineDataStructure.getLocalWaste(rectangle, segPoint, smallestRecs);
-                        if (localSpaceWaste < minimumLocalSpaceWaste) {
-                            minimumLocalSpaceWaste = localSpaceWaste;
-                            minimumLocalSpaceWastePlacements.clear();
-                            minimumLocalSpaceWastePlacements.add(new PositionRectangleRotationPair(rectangle, segPoint, secondLoop == 1));
-                        } else if (localSpaceWaste == minimumLocalSpaceWaste) {
-                            minimumLocalSpaceWastePlacements.add(new PositionRectangleRotationPair(rectangle, segPoint, secondLoop == 1));
-                        }
-                    }
-                    // We do not want to permanently rotate this rectangle because we have not placed it yet
-                    if (parameters.rotationVariant) {
-						rectangle.rotate();
-					}
-                }
-            }
-
-            // If there is only one placement that has the minimum space waste, then this placement should be done
-            if (minimumLocalSpaceWastePlacements.size() == 1) {
-                toBePlaced = minimumLocalSpaceWastePlacements.get(0);
-            } else if (minimumLocalSpaceWastePlacements.size() >= 2){
-                // If there are more placements sharing the minimum weight we place the one with the highest fitness score
-                // If there is a tie between those, we choose the first
-                int highestFitness = 0;
-                toBePlaced = minimumLocalSpaceWastePlacements.get(0);
-                for (PositionRectangleRotationPair pair : minimumLocalSpaceWastePlacements) {
-                    if (skylineDataStructure.getFitnessNumber(pair) > highestFitness) {
-                        toBePlaced = pair;
-                    }
-                }
-            }
+            // Check for every rectangle-position pair the local waste, of the placements with the least waste of
+            // space the fitness decides which one to make
+            Step step = new Step(skylineDataStructure, skylineDataStructure.getCandidatePoints(),
+                    rectanglesNotPlacedYet, width, mostLeft, smallestRecs);
+            toBePlaced = step.score().best();
+            lastStep.set(step.points, mostLeft);
 
             // If there is a rectangle to place we place it, otherwise we cannot place a rectangle with these parameters
             // and we return false.
             if (toBePlaced != null) {
                 placeRectangle(toBePlaced, rectanglesNotPlacedYet, skylineDataStructure);
             } else {
+                lastStep.leave(rectanglesNotPlacedYet);
                 return false;
             }
         }
@@ -438,12 +426,15 @@ public class SkylineSolver extends AbstractSolver {
         Solution currentSolution = new Solution(parameters, this);
 //        System.out.println("solution found in heuristic solve with " + currentSolution.getWidth());
         if (globalSolution == null || currentSolution.getArea() < globalSolution.getArea()) {
-            globalSolution = currentSolution.copy();
+            // The cloned rectangles are not changed after this, only the parameters object is reused
+            globalSolution = new Solution(parameters.shallowCopy(), this);
         }
         return true;
     }
 
-    public void placeRectangle(PositionRectangleRotationPair toBePlaced, List<Rectangle> sequence, ArrayListSkyline skyline) {
+    public void placeRectangle(PositionRectangleRotationPair toBePlaced, List<Rectangle> sequence, AbstractSkyline skyline) {
+        // Removed before it is rotated, the remaining rectangles are counted by their orientation
+        sequence.remove(toBePlaced.rectangle);
         if (toBePlaced.rotated) {
             toBePlaced.rectangle.rotate();
         }
@@ -459,7 +450,7 @@ public class SkylineSolver extends AbstractSolver {
         skyline.adjustSkyline(toBePlaced.rectangle, toBePlaced.position);
 
         toBePlaced.rectangle.place(true);
-        sequence.remove(toBePlaced.rectangle);
+        placed.add(toBePlaced.rectangle);
 
         // Make the small segments merge with bigger ones
         skyline.fixSkylineAfterPlacements(sequence, parameters.rotationVariant);
@@ -474,20 +465,260 @@ public class SkylineSolver extends AbstractSolver {
         if (!position.start) {
             rectangle.y -= rectangle.height;
         }
+        return hasOverlap(position, rectangle.width, rectangle.height, width);
+    }
+
+    /**
+     * Returns whether a rectangle of {@code rectangleWidth} by {@code rectangleHeight} at {@code position} crosses
+     * the box of width {@code width} or a placed rectangle, no rectangle is moved to check it.
+     */
+    boolean hasOverlap(SegPoint position, int rectangleWidth, int rectangleHeight, int width) {
+        int y = position.start ? position.y : position.y - rectangleHeight;
 
         // Check if rectangle crosses outerbox
-        if (rectangle.y + rectangle.height > parameters.height
-                || rectangle.y < 0
-                || rectangle.x + rectangle.width > width) {
+        if (y + rectangleHeight > parameters.height
+                || y < 0
+                || position.x + rectangleWidth > width) {
             return true;
         }
 
-        for (Rectangle other : originalSequence) {
-            if (other.isPlaced() && other.intersects(rectangle)) {
-                return true;
+        return placed.intersects(position.x, y, rectangleWidth, rectangleHeight);
+    }
+
+    /**
+     * The placements of a step of {@link #heuristicSolve}, every candidate point with every rectangle that has not
+     * been placed yet in both orientations if rotations are allowed.
+     * <p>
+     * Placements are scored without rotating or moving a rectangle, so ranges of candidate points are scored in
+     * parallel if there are at least {@link #parallelPlacements} placements. The ranges are combined in order, the
+     * placement made is the same as when they are scored one after another.
+     * </p>
+     */
+    private class Step {
+
+        final ArraySkyline skyline;
+        final List<SegPoint> points;
+        final List<Rectangle> rectangles;
+        final int width;
+        final int mostLeft;
+        final int[] smallestRecs;
+
+        Step(ArraySkyline skyline, List<SegPoint> points, List<Rectangle> rectangles, int width, int mostLeft,
+             int[] smallestRecs) {
+            this.skyline = skyline;
+            this.points = points;
+            this.rectangles = rectangles;
+            this.width = width;
+            this.mostLeft = mostLeft;
+            this.smallestRecs = smallestRecs;
+        }
+
+        Scores score() {
+            int perPoint = rectangles.size() * (parameters.rotationVariant ? 2 : 1);
+            if ((long) points.size() * perPoint < parallelPlacements || points.size() < 2) {
+                return score(0, points.size());
             }
+            int grain = Math.max(1, parallelPlacements / 2 / perPoint);
+            return POOL.invoke(new ScoreTask(this, 0, points.size(), grain));
         }
 
-        return false;
+        /**
+         * Scores the placements at the candidate points from {@code from} up to {@code to}.
+         */
+        Scores score(int from, int to) {
+            Scores scores = new Scores();
+            for (int p = from; p < to; p++) {
+                SegPoint segPoint = points.get(p);
+                for (Rectangle rectangle : rectangles) {
+                    // If the rotationsvariant is true, we want to test both rotations for every rectangle
+                    for (int secondLoop = 0; secondLoop < (parameters.rotationVariant ? 2 : 1); secondLoop++) {
+                        int rectangleWidth = secondLoop == 1 ? rectangle.height : rectangle.width;
+                        int rectangleHeight = secondLoop == 1 ? rectangle.width : rectangle.height;
+                        // Checks if the rectangle can even be placed
+                        if (skyline.doesNotMeetSpreadConstraint(rectangleWidth, segPoint, mostLeft)
+                                || hasOverlap(segPoint, rectangleWidth, rectangleHeight, width)) {
+                            continue;
+                        }
+                        int localSpaceWaste = skyline.getLocalWaste(rectangleWidth, rectangleHeight, segPoint,
+                                smallestRecs);
+                        if (localSpaceWaste <= scores.waste) {
+                            PositionRectangleRotationPair pair = new PositionRectangleRotationPair(rectangle,
+                                    segPoint, secondLoop == 1);
+                            if (localSpaceWaste < scores.waste) {
+                                scores.waste = localSpaceWaste;
+                                scores.first = pair;
+                                scores.lastFit = null;
+                            }
+                            if (skyline.getFitnessNumber(pair) > 0) {
+                                scores.lastFit = pair;
+                            }
+                        }
+                    }
+                }
+            }
+            return scores;
+        }
+    }
+
+    /**
+     * The candidate points of the last step of an attempt of {@link #heuristicSolve}.
+     * <p>
+     * Scoring a step used to move every rectangle left to every candidate point within the spread, so a rectangle
+     * was left at the last such point in the last orientation checked there. An only fit was rejected if it was out
+     * of the box at those coordinates. Only fits are still checked at them, so the placements stay the same, but
+     * they are only looked up for the only fit. The rectangles of an attempt that fails are moved there at the end,
+     * the next attempt starts from those coordinates as it did before.
+     * </p>
+     * <p>
+     * Whether a rectangle is within the spread at some point does not depend on the step, the leftmost segment always
+     * has a candidate point at the leftmost x. So a rectangle that is not within the spread now was never moved in
+     * this attempt, and is still where it was left before.
+     * </p>
+     */
+    private class LastStep {
+        final int maximumSpread;
+        int[] x = new int[16];
+        int[] y = new int[16];
+        boolean[] start = new boolean[16];
+        int size = -1;
+        int mostLeft;
+
+        LastStep(int maximumSpread) {
+            this.maximumSpread = maximumSpread;
+        }
+
+        /**
+         * Keeps copies of the candidate points, the skyline reuses them.
+         */
+        void set(List<SegPoint> points, int mostLeft) {
+            if (x.length < points.size()) {
+                x = new int[points.size()];
+                y = new int[points.size()];
+                start = new boolean[points.size()];
+            }
+            for (int p = 0; p < points.size(); p++) {
+                x[p] = points.get(p).x;
+                y[p] = points.get(p).y;
+                start[p] = points.get(p).start;
+            }
+            size = points.size();
+            this.mostLeft = mostLeft;
+        }
+
+        /**
+         * Returns the last candidate point within the spread times 2, plus 1 if it is in the rotated orientation, or
+         * -1 if there is none.
+         */
+        int find(Rectangle rectangle) {
+            for (int p = size - 1; p >= 0; p--) {
+                for (int secondLoop = parameters.rotationVariant ? 1 : 0; secondLoop >= 0; secondLoop--) {
+                    int rectangleWidth = secondLoop == 1 ? rectangle.height : rectangle.width;
+                    if (x[p] + rectangleWidth - mostLeft <= maximumSpread) {
+                        return 2 * p + secondLoop;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        private int y(Rectangle rectangle, int found) {
+            int p = found / 2;
+            int rectangleHeight = found % 2 == 1 ? rectangle.width : rectangle.height;
+            return start[p] ? y[p] : y[p] - rectangleHeight;
+        }
+
+        /**
+         * Returns the y the last step left {@code rectangle} at.
+         */
+        int y(Rectangle rectangle) {
+            int found = find(rectangle);
+            return found < 0 ? rectangle.y : y(rectangle, found);
+        }
+
+        /**
+         * Moves the {@code rectangles} to where the last step left them.
+         */
+        void leave(List<Rectangle> rectangles) {
+            for (Rectangle rectangle : rectangles) {
+                int found = find(rectangle);
+                if (found >= 0) {
+                    rectangle.x = x[found / 2];
+                    rectangle.y = y(rectangle, found);
+                }
+            }
+        }
+    }
+
+    /**
+     * Scores a range of the candidate points of a {@link Step}, split in halves while it has more than
+     * {@code grain} points.
+     */
+    private static class ScoreTask extends RecursiveTask<Scores> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Step step;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        ScoreTask(Step step, int from, int to, int grain) {
+            this.step = step;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected Scores compute() {
+            if (to - from <= grain) {
+                return step.score(from, to);
+            }
+            int middle = (from + to) >>> 1;
+            ScoreTask first = new ScoreTask(step, from, middle, grain);
+            first.fork();
+            Scores later = new ScoreTask(step, middle, to, grain).compute();
+            return first.join().then(later);
+        }
+    }
+
+    /**
+     * The best placements of a range of candidate points, the least waste of space, the first placement with it and
+     * the last placement with it that has a fitness number above 0.
+     */
+    private static class Scores {
+
+        int waste = Integer.MAX_VALUE;
+        PositionRectangleRotationPair first;
+        PositionRectangleRotationPair lastFit;
+
+        /**
+         * Returns the placement to make: of the placements with the least waste the last one with a fitness number
+         * above 0, or the first if none has one.
+         */
+        PositionRectangleRotationPair best() {
+            return lastFit != null ? lastFit : first;
+        }
+
+        /**
+         * Returns the scores of this range followed by the range of {@code later}.
+         */
+        Scores then(Scores later) {
+            if (later.waste < waste) {
+                return later;
+            }
+            if (later.waste == waste && later.lastFit != null) {
+                lastFit = later.lastFit;
+            }
+            return this;
+        }
+    }
+
+    @Override
+    AbstractSolver newInstance() {
+        SkylineSolver solver = new SkylineSolver();
+        solver.allowInputSorting = allowInputSorting;
+        solver.parallelPlacements = parallelPlacements;
+        return solver;
     }
 }
@@ -22,6 +22,25 @@ public class Solution {
 
     private double score;
 
+    /**
+     * The largest {@code x + width} and {@code y + height} of the rectangles, {@code -1} if not known.
+     * <p>
+     * A solution made from a {@link RectangleStore} takes the extents the store kept while the rectangles were
+     * placed, other solutions find them in a single scan on first use. They are kept after that, so comparing
+     * solutions is {@code O(1)}. The extents are found again after {@link Parameters#setStore(RectangleStore)} or
+     * {@link Parameters#setRectangles(java.util.List)} on the parameters, call {@link #invalidate()} after moving a
+     * rectangle of this solution in any other way.
+     * </p>
+     */
+    private long maxX = -1;
+    private long maxY = -1;
+
+    /**
+     * The parameters and their {@link Parameters#placements} the extents belong to.
+     */
+    private Parameters extentsOf;
+    private int extentsPlacements;
+
     /**
      * Returns the chartData, which is a double int array containing the x and y axis data.
      *
@@ -69,17 +88,7 @@ public class Solution {
         if (parameters.heightVariant == Util.HeightSupport.FIXED) {
             return parameters.height;
         }
-
-        long maxHeight = 0;
-
-        for (Rectangle rectangle :
-                this.parameters.rectangles) {
-            if (rectangle.y + rectangle.height > maxHeight) {
-				maxHeight = rectangle.y + rectangle.height;
-			}
-        }
-
-        return maxHeight;
+        return getMaxY();
     }
 
     /**
@@ -96,17 +105,7 @@ public class Solution {
         if (!ignoreHeightVariant) {
 			return getHeight();
 		}
-
-        long maxHeight = 0;
-
-        for (Rectangle rectangle :
-                this.parameters.rectangles) {
-            if (rectangle.y + rectangle.height > maxHeight) {
-				maxHeight = rectangle.y + rectangle.height;
-			}
-        }
-
-        return maxHeight;
+        return getMaxY();
     }
 
     /**
@@ -115,16 +114,53 @@ public class Solution {
      * @return the width of the {@code Solution}.
      */
     public long getWidth() {
-        long maxWidth = 0;
+        if (!hasExtents()) {
+            computeExtents();
+        }
+        return maxX;
+    }
 
-        for (Rectangle rectangle :
-                this.parameters.rectangles) {
-            if (rectangle.x + rectangle.width > maxWidth) {
-				maxWidth = rectangle.x + rectangle.width;
-			}
+    private long getMaxY() {
+        if (!hasExtents()) {
+            computeExtents();
         }
+        return maxY;
+    }
+
+    private boolean hasExtents() {
+        return maxX >= 0 && extentsOf == parameters && extentsPlacements == parameters.placements;
+    }
+
+    /**
+     * Computes the extents of the rectangles in a single scan.
+     */
+    private void computeExtents() {
+        long maxX = 0;
+        long maxY = 0;
+        for (Rectangle rectangle : this.parameters.rectangles) {
+            maxX = Math.max(maxX, rectangle.x + rectangle.width);
+            maxY = Math.max(maxY, rectangle.y + rectangle.height);
+        }
+        setExtents(maxX, maxY);
+    }
+
+    private void setExtents(long maxX, long maxY) {
+        this.maxX = maxX;
+        this.maxY = maxY;
+        extentsOf = parameters;
+        extentsPlacements = parameters.placements;
+    }
 
-        return maxWidth;
+    /**
+     * Forgets the known extents, they are computed again when needed.
+     * <p>
+     * Has to be called after a rectangle of this solution moved other than through the store or the rectangles of
+     * its parameters, see {@link #maxX}.
+     * </p>
+     */
+    public void invalidate() {
+        maxX = -1;
+        maxY = -1;
     }
 
     /**
@@ -150,6 +186,19 @@ public class Solution {
         this.setMinimumArea();
     }
 
+    /**
+     * Constructs a new {@code Solution} of rectangles placed in {@code placement}, without a scan over them.
+     *
+     * @param parameters the {@code Parameters} used for solving, {@code placement} has to be the store last applied
+     *                   to them with {@link Parameters#setStore(RectangleStore)}
+     * @param solvedBy   the {@link AbstractSolver} that created this solution
+     * @param placement  the store the rectangles were placed in
+     */
+    public Solution(Parameters parameters, AbstractSolver solvedBy, RectangleStore placement) {
+        this(parameters, solvedBy);
+        setExtents(placement.maxX(), placement.maxY());
+    }
+
     /**
      * The {@link AbstractSolver} that created this solution.
      */
@@ -240,6 +289,9 @@ public class Solution {
     public Solution copy() {
         Solution solution = new Solution(this.parameters.copy());
         solution.solvedBy = this.solvedBy;
+        if (hasExtents()) {
+            solution.setExtents(maxX, maxY);
+        }
         return solution;
     }
 
@@ -0,0 +1,555 @@
+package jacenre.dbla;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of the best placement found per instance, so a repeated instance does not have to be solved again.
+ * <p>
+ * Instances are keyed by a {@link Fingerprint}: the height variant, the fixed height, the rotation flag and the sorted
+ * sizes of the rectangles, with the short side first if rotations are allowed. Instances that only differ in the
+ * order or the orientation of their rectangles have the same fingerprint. A placement is stored in the order of the
+ * fingerprint and mapped back to the order of the caller on a hit.
+ * </p>
+ * <p>
+ * The entries are kept in memory in least recently used order, up to a total number of rectangles. With a log file
+ * every new or improved entry is also appended to the file, an entry that is not in memory is read back from it.
+ * Every entry remembers the largest time budget it was solved with, see {@link CachingSolver}.
+ * </p>
+ * <p>
+ * The cache can be used from several threads. Several processes can append to the same log, but a process only sees
+ * the entries that were in the log when it was opened and the ones it added itself.
+ * </p>
+ */
+public class SolutionCache {
+
+    /**
+     * The system property with the path of the log file of the cache used by {@link PackingSolver} and
+     * {@link BatchSolver}, no cache is used if it is not set.
+     */
+    static final String PROPERTY = "dbla.cache";
+
+    /**
+     * The default number of rectangles of all entries in memory.
+     */
+    static final int DEFAULT_MAX_RECTANGLES = 1000000;
+
+    private static SolutionCache defaultCache;
+
+    private final int maxRectangles;
+    private int rectangles;
+
+    /**
+     * The entries in memory, least recently used first.
+     */
+    private final LinkedHashMap<Fingerprint, Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The log file, {@code null} for a cache in memory only, and the offset of the best record of every digest in it.
+     */
+    private final Path log;
+    private final Map<String, Record> records = new HashMap<>();
+
+    /**
+     * Returns the cache with the log file of the {@value #PROPERTY} system property, or {@code null} if it is not
+     * set.
+     */
+    public static synchronized SolutionCache getDefault() {
+        String path = System.getProperty(PROPERTY);
+        if (defaultCache == null && path != null) {
+            try {
+                defaultCache = new SolutionCache(DEFAULT_MAX_RECTANGLES, Paths.get(path));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return defaultCache;
+    }
+
+    /**
+     * Creates a cache in memory only.
+     *
+     * @param maxRectangles the number of rectangles of all entries in memory
+     */
+    public SolutionCache(int maxRectangles) {
+        this.maxRectangles = maxRectangles;
+        this.log = null;
+    }
+
+    /**
+     * Creates a cache with a log file, the file is created if it does not exist.
+     *
+     * @param maxRectangles the number of rectangles of all entries in memory
+     * @param log           the log file
+     * @throws IOException if the log cannot be read
+     */
+    public SolutionCache(int maxRectangles, Path log) throws IOException {
+        this.maxRectangles = maxRectangles;
+        this.log = log;
+        if (!Files.exists(log)) {
+            if (log.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(log.toAbsolutePath().getParent());
+            }
+            Files.createFile(log);
+        }
+        index();
+    }
+
+    /**
+     * Returns the cached solution of {@code parameters}, or {@code null} if there is none.
+     *
+     * @see #get(Parameters, long)
+     */
+    public Solution get(Parameters parameters) {
+        return get(parameters, 0);
+    }
+
+    /**
+     * Returns the cached solution of {@code parameters} if it was found with at least {@code budget} milliseconds or
+     * reaches the {@link CompoundSolver#lowerBound(Parameters) lower bound}, otherwise {@code null}.
+     * <p>
+     * The solution is placed on a copy of {@code parameters}, in the order and with the ids of its rectangles.
+     * </p>
+     *
+     * @param parameters the parameters to solve, they are not modified
+     * @param budget     the time budget in milliseconds of the solve the cached solution replaces
+     */
+    public Solution get(Parameters parameters, long budget) {
+        Fingerprint fingerprint = Fingerprint.of(parameters);
+        Entry entry = find(fingerprint);
+        if (entry == null || entry.budget < budget && entry.area > CompoundSolver.lowerBound(parameters)) {
+            return null;
+        }
+        return entry.place(parameters, fingerprint);
+    }
+
+    /**
+     * Stores {@code solution} as the solution of {@code parameters} if there is no better one yet.
+     * <p>
+     * An equal solution only raises the budget of the entry. Solutions whose rectangles do not have the ids of the
+     * input order are not stored.
+     * </p>
+     *
+     * @param parameters the solved parameters, with the rectangles in input order
+     * @param solution   a valid solution of {@code parameters}
+     * @param budget     the time budget in milliseconds the solution was found with
+     * @return {@code true} if the cache changed
+     * @throws IOException if the entry cannot be appended to the log
+     */
+    public boolean put(Parameters parameters, Solution solution, long budget) throws IOException {
+        Fingerprint fingerprint = Fingerprint.of(parameters);
+        Entry entry = Entry.of(parameters, fingerprint, solution, budget);
+        if (entry == null) {
+            return false;
+        }
+        synchronized (this) {
+            Entry current = find(fingerprint);
+            if (current != null && (current.area < entry.area
+                    || current.area == entry.area && current.budget >= entry.budget)) {
+                return false;
+            }
+            if (current != null && current.area == entry.area) {
+                // Keep the placement, only the budget is raised
+                entry = new Entry(current.placement, current.area, budget);
+            }
+            if (log != null) {
+                append(fingerprint, entry);
+            }
+            remember(fingerprint, entry);
+            return true;
+        }
+    }
+
+    /**
+     * Returns the entry of {@code fingerprint} from memory or from the log, or {@code null} if there is none.
+     */
+    private synchronized Entry find(Fingerprint fingerprint) {
+        Entry entry = memory.get(fingerprint);
+        if (entry != null || log == null) {
+            return entry;
+        }
+        Record record = records.get(fingerprint.digest());
+        if (record == null) {
+            return null;
+        }
+        try {
+            entry = read(record, fingerprint);
+        } catch (IOException e) {
+            if (Util.debug) {
+                e.printStackTrace();
+            }
+            return null;
+        }
+        if (entry != null) {
+            remember(fingerprint, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Puts an entry in memory and evicts the least recently used entries while there are too many rectangles.
+     */
+    private void remember(Fingerprint fingerprint, Entry entry) {
+        Entry previous = memory.put(fingerprint, entry);
+        if (previous != null) {
+            rectangles -= previous.size();
+        }
+        rectangles += entry.size();
+        Iterator<Entry> eldest = memory.values().iterator();
+        while (rectangles > maxRectangles && eldest.hasNext()) {
+            Entry evicted = eldest.next();
+            if (evicted == entry) {
+                break;
+            }
+            rectangles -= evicted.size();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Reads the offset, area and budget of every record of the log, keeping the best record per digest.
+     */
+    private void index() throws IOException {
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(log))) {
+            StringBuilder line = new StringBuilder();
+            long offset = 0;
+            long start = 0;
+            int c;
+            while ((c = stream.read()) != -1) {
+                offset++;
+                if (c != '\n') {
+                    line.append((char) c);
+                    continue;
+                }
+                index(line.toString(), start);
+                line.setLength(0);
+                start = offset;
+            }
+            // A partly written last record is ignored
+        }
+    }
+
+    private void index(String line, long offset) {
+        String[] fields = line.split(" ", 7);
+        if (fields.length < 7) {
+            return;
+        }
+        try {
+            Record record = new Record(offset, Long.parseLong(fields[4]), Long.parseLong(fields[5]));
+            records.merge(fields[0], record, (current, other) -> other.isBetter(current) ? other : current);
+        } catch (NumberFormatException e) {
+            // Skip malformed records
+        }
+    }
+
+    /**
+     * Appends a record of the entry to the log in a single write.
+     * <p>
+     * A record is a line of space separated fields: the digest, the height variant, the height, the rotation flag,
+     * the area, the budget and the x, y, width and height of every rectangle in the order of the fingerprint.
+     * </p>
+     */
+    private void append(Fingerprint fingerprint, Entry entry) throws IOException {
+        StringBuilder line = new StringBuilder();
+        line.append(fingerprint.digest()).append(' ').append(fingerprint.heightVariant).append(' ')
+                .append(fingerprint.height).append(' ').append(fingerprint.rotation ? 'r' : 'n').append(' ')
+                .append(entry.area).append(' ').append(entry.budget);
+        for (int value : entry.placement) {
+            line.append(' ').append(value);
+        }
+        line.append('\n');
+        byte[] bytes = line.toString().getBytes(StandardCharsets.US_ASCII);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long offset = channel.size();
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            records.put(fingerprint.digest(), new Record(offset, entry.area, entry.budget));
+        }
+    }
+
+    /**
+     * Reads the record at the offset of {@code record}, returns {@code null} if it is not of {@code fingerprint}.
+     */
+    private Entry read(Record record, Fingerprint fingerprint) throws IOException {
+        String line;
+        try (RandomAccessFile file = new RandomAccessFile(log.toFile(), "r")) {
+            file.seek(record.offset);
+            line = file.readLine();
+        }
+        if (line == null) {
+            return null;
+        }
+        String[] fields = line.split(" ");
+        int n = fingerprint.sizes.length / 2;
+        if (fields.length != 6 + 4 * n || !fields[0].equals(fingerprint.digest())) {
+            return null;
+        }
+        int[] placement = new int[4 * n];
+        for (int i = 0; i < placement.length; i++) {
+            placement[i] = Integer.parseInt(fields[6 + i]);
+        }
+        return new Entry(placement, Long.parseLong(fields[4]), Long.parseLong(fields[5]));
+    }
+
+    /**
+     * The canonical form of an instance, the same for every order and orientation of its rectangles.
+     */
+    static final class Fingerprint {
+        final Util.HeightSupport heightVariant;
+        final int height;
+        final boolean rotation;
+
+        /**
+         * The width and height of every rectangle, sorted, the short side first if rotations are allowed.
+         */
+        final int[] sizes;
+
+        /**
+         * The positions of the rectangles of the parameters in the order of {@link #sizes}.
+         */
+        final int[] order;
+        private final int hash;
+        private String digest;
+
+        private Fingerprint(Util.HeightSupport heightVariant, int height, boolean rotation, int[] sizes, int[] order) {
+            this.heightVariant = heightVariant;
+            this.height = height;
+            this.rotation = rotation;
+            this.sizes = sizes;
+            this.order = order;
+            this.hash = 31 * (31 * (31 * heightVariant.hashCode() + height) + Boolean.hashCode(rotation))
+                    + Arrays.hashCode(sizes);
+        }
+
+        static Fingerprint of(Parameters parameters) {
+            List<Rectangle> rectangles = parameters.rectangles;
+            int n = rectangles.size();
+            long[] keys = new long[n];
+            for (int i = 0; i < n; i++) {
+                Rectangle rectangle = rectangles.get(i);
+                int width = rectangle.width;
+                int height = rectangle.height;
+                if (parameters.rotationVariant && width > height) {
+                    width = rectangle.height;
+                    height = rectangle.width;
+                }
+                // The sizes and the position fit in 21 bits each in practice, the position breaks ties
+                keys[i] = ((long) width << 42) | ((long) height << 21) | i;
+            }
+            int[] order = new int[n];
+            if (n < (1 << 21) && fits(rectangles)) {
+                Arrays.sort(keys);
+                for (int i = 0; i < n; i++) {
+                    order[i] = (int) (keys[i] & ((1 << 21) - 1));
+                }
+            } else {
+                // Stable, so the position breaks ties as well
+                Integer[] boxed = new Integer[n];
+                for (int i = 0; i < n; i++) {
+                    boxed[i] = i;
+                }
+                Arrays.sort(boxed, (i, j) -> {
+                    int[] a = size(parameters, i);
+                    int[] b = size(parameters, j);
+                    return a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(a[1], b[1]);
+                });
+                for (int i = 0; i < n; i++) {
+                    order[i] = boxed[i];
+                }
+            }
+
+            int[] sizes = new int[2 * n];
+            for (int i = 0; i < n; i++) {
+                int[] size = size(parameters, order[i]);
+                sizes[2 * i] = size[0];
+                sizes[2 * i + 1] = size[1];
+            }
+            int height = parameters.heightVariant == Util.HeightSupport.FIXED ? parameters.height : 0;
+            return new Fingerprint(parameters.heightVariant, height, parameters.rotationVariant, sizes, order);
+        }
+
+        private static boolean fits(List<Rectangle> rectangles) {
+            for (Rectangle rectangle : rectangles) {
+                if (rectangle.width >= (1 << 21) || rectangle.height >= (1 << 21)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int[] size(Parameters parameters, int i) {
+            Rectangle rectangle = parameters.rectangles.get(i);
+            if (parameters.rotationVariant && rectangle.width > rectangle.height) {
+                return new int[]{rectangle.height, rectangle.width};
+            }
+            return new int[]{rectangle.width, rectangle.height};
+        }
+
+        /**
+         * Returns the SHA-256 of the canonical form in hexadecimal, the key of the log.
+         */
+        String digest() {
+            if (digest == null) {
+                try {
+                    MessageDigest sha = MessageDigest.getInstance("SHA-256");
+                    ByteBuffer buffer = ByteBuffer.allocate(10 + 4 * sizes.length);
+                    buffer.put((byte) heightVariant.ordinal()).putInt(height).put((byte) (rotation ? 1 : 0))
+                            .putInt(sizes.length);
+                    for (int size : sizes) {
+                        buffer.putInt(size);
+                    }
+                    StringBuilder hex = new StringBuilder();
+                    for (byte b : sha.digest(buffer.array())) {
+                        hex.append(String.format("%02x", b));
+                    }
+                    digest = hex.toString();
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return digest;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint other = (Fingerprint) o;
+            return hash == other.hash && heightVariant == other.heightVariant && height == other.height
+                    && rotation == other.rotation && Arrays.equals(sizes, other.sizes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A placement in the order of its fingerprint, with its area and the largest budget it was solved with.
+     */
+    static final class Entry {
+        /**
+         * The x, y, width and height of every rectangle.
+         */
+        final int[] placement;
+        final long area;
+        final long budget;
+
+        Entry(int[] placement, long area, long budget) {
+            this.placement = placement;
+            this.area = area;
+            this.budget = budget;
+        }
+
+        int size() {
+            return placement.length / 4;
+        }
+
+        /**
+         * Returns the entry of {@code solution}, or {@code null} if its rectangles cannot be matched to the input
+         * order by their ids.
+         */
+        static Entry of(Parameters parameters, Fingerprint fingerprint, Solution solution, long budget) {
+            List<Rectangle> placed = solution.parameters.rectangles;
+            int n = parameters.rectangles.size();
+            if (placed.size() != n) {
+                return null;
+            }
+            Rectangle[] byId = new Rectangle[n];
+            for (Rectangle rectangle : placed) {
+                int id = rectangle.getId();
+                if (id < 0 || id >= n || byId[id] != null) {
+                    return null;
+                }
+                byId[id] = rectangle;
+            }
+
+            int[] placement = new int[4 * n];
+            for (int i = 0; i < n; i++) {
+                int id = parameters.rectangles.get(fingerprint.order[i]).getId();
+                if (id < 0 || id >= n) {
+                    return null;
+                }
+                Rectangle rectangle = byId[id];
+                placement[4 * i] = rectangle.x;
+                placement[4 * i + 1] = rectangle.y;
+                placement[4 * i + 2] = rectangle.width;
+                placement[4 * i + 3] = rectangle.height;
+            }
+            return new Entry(placement, area(parameters, placement), budget);
+        }
+
+        /**
+         * Returns the area of {@code placement} like {@link Solution#getArea()} of {@code parameters} would, a
+         * solution of a free height sub problem counts with the height it uses.
+         */
+        private static long area(Parameters parameters, int[] placement) {
+            long width = 0;
+            long height = 0;
+            for (int i = 0; i < placement.length; i += 4) {
+                width = Math.max(width, placement[i] + placement[i + 2]);
+                height = Math.max(height, placement[i + 1] + placement[i + 3]);
+            }
+            return parameters.heightVariant == Util.HeightSupport.FIXED ? width * parameters.height : width * height;
+        }
+
+        /**
+         * Returns this placement as a solution of a copy of {@code parameters}.
+         */
+        Solution place(Parameters parameters, Fingerprint fingerprint) {
+            Parameters copy = parameters.copy();
+            for (int i = 0; i < fingerprint.order.length; i++) {
+                Rectangle rectangle = copy.rectangles.get(fingerprint.order[i]);
+                if (rectangle.width != placement[4 * i + 2]) {
+                    rectangle.rotate();
+                }
+                rectangle.x = placement[4 * i];
+                rectangle.y = placement[4 * i + 1];
+            }
+            return new Solution(copy);
+        }
+    }
+
+    /**
+     * The offset, area and budget of a record in the log.
+     */
+    private static final class Record {
+        final long offset;
+        final long area;
+        final long budget;
+
+        Record(long offset, long area, long budget) {
+            this.offset = offset;
+            this.area = area;
+            this.budget = budget;
+        }
+
+        boolean isBetter(Record other) {
+            return area < other.area || area == other.area && budget > other.budget;
+        }
+    }
+}
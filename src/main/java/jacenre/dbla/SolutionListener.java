@@ -0,0 +1,23 @@
+package jacenre.dbla;
+
+/**
+ * Listener for the improving solutions found during a solve.
+ * <p>
+ * Registered with {@link AbstractSolver#addListener(SolutionListener)}. Every published solution is better than the
+ * ones published before it in the same solve, so a caller can stop at any moment and use the last one. Solvers may
+ * publish from several threads, but never at the same time.
+ * </p>
+ */
+@FunctionalInterface
+public interface SolutionListener {
+
+    /**
+     * Called with every improving solution.
+     *
+     * @param solution  the improved solution, it is not changed by the solver afterwards and must not be changed by
+     *                  the listener
+     * @param solver    the name of the solver that found the solution
+     * @param timestamp the time the solution was published, see {@link System#currentTimeMillis()}
+     */
+    void improved(Solution solution, String solver, long timestamp);
+}
@@ -0,0 +1,213 @@
+package jacenre.dbla;
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes solved {@link Parameters} in the output format.
+ * <p>
+ * Everything is formatted into a reusable byte buffer, with integers converted to ASCII by hand, and the buffer is
+ * written to the channel in large chunks. The bytes written are the same as printing the output line by line with
+ * {@code System.out.println}.
+ * </p>
+ *
+ * @see <a href="https://canvas.tue.nl/files/1978093/download?download_frd=1">
+ *      Problem description 2.2 Output Format</a>
+ */
+public class SolutionWriter implements Closeable {
+
+    /**
+     * Size of the buffer, it is written to the channel whenever it is full.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The line separator used by {@code println}.
+     */
+    private static final byte[] NEW_LINE = System.lineSeparator().getBytes();
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * Scratch space for converting a single integer, large enough for {@code Integer.MIN_VALUE}.
+     */
+    private final byte[] digits = new byte[11];
+
+    private final WritableByteChannel channel;
+
+    /**
+     * {@code false} if the channel is shared, like standard output, and should stay open.
+     */
+    private final boolean closeChannel;
+
+    private SolutionWriter(WritableByteChannel channel, boolean closeChannel) {
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+    }
+
+    /**
+     * Returns a writer to the given stream, closing the writer closes the stream.
+     */
+    public static SolutionWriter toStream(OutputStream out) {
+        return new SolutionWriter(Channels.newChannel(out), true);
+    }
+
+    /**
+     * Returns a writer to standard output.
+     * <p>
+     * {@code System.out} is flushed first and the writer then writes to the standard output file descriptor directly,
+     * closing the writer only flushes it.
+     * </p>
+     */
+    public static SolutionWriter toStandardOutput() {
+        System.out.flush();
+        return new SolutionWriter(new FileOutputStream(FileDescriptor.out).getChannel(), false);
+    }
+
+    /**
+     * Returns a writer to the given file, which is created or truncated.
+     *
+     * @param file the file to write to
+     * @param gzip {@code true} to gzip compress the output
+     * @throws IOException if the file cannot be opened
+     */
+    public static SolutionWriter toFile(Path file, boolean gzip) throws IOException {
+        if (gzip) {
+            return toStream(new GZIPOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+        }
+        return new SolutionWriter(FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING), true);
+    }
+
+    /**
+     * Writes the solution in the order of the input.
+     * <p>
+     *     Every rectangle read by {@link UserInput} has its input index as id, so the input order is restored
+     *     by indexing on {@link Rectangle#getId()}.
+     * </p>
+     *
+     * @param params the solved parameters
+     * @throws IOException if writing fails
+     */
+    public void write(Parameters params) throws IOException {
+        Rectangle[] inputOrder = new Rectangle[params.rectangles.size()];
+        for (Rectangle rectangle : params.rectangles) {
+            inputOrder[rectangle.getId()] = rectangle;
+        }
+
+        if (params.heightVariant == Util.HeightSupport.FREE) {
+            write("container height: free");
+        } else {
+            write("container height: fixed ");
+            write(params.height);
+        }
+        newLine();
+        write(params.rotationVariant ? "rotations allowed: yes" : "rotations allowed: no");
+        newLine();
+        write("number of rectangles: ");
+        write(inputOrder.length);
+        newLine();
+        for (Rectangle rect : inputOrder) {
+            if (!rect.isRotated()) {
+                write(rect.width);
+                write(' ');
+                write(rect.height);
+            } else {
+                write(rect.height);
+                write(' ');
+                write(rect.width);
+            }
+            newLine();
+        }
+        write("placement of rectangles");
+        newLine();
+        for (Rectangle rect : inputOrder) {
+            if (params.rotationVariant) {
+                write(rect.isRotated() ? "yes " : "no ");
+            }
+            write(rect.x);
+            write(' ');
+            write(rect.y);
+            newLine();
+        }
+    }
+
+    private void write(String ascii) throws IOException {
+        for (int i = 0; i < ascii.length(); i++) {
+            write((byte) ascii.charAt(i));
+        }
+    }
+
+    private void write(char c) throws IOException {
+        write((byte) c);
+    }
+
+    private void write(byte b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put(b);
+    }
+
+    private void write(int value) throws IOException {
+        if (buffer.remaining() < digits.length) {
+            drain();
+        }
+        long v = value;
+        if (v < 0) {
+            buffer.put((byte) '-');
+            v = -v;
+        }
+        int i = digits.length;
+        do {
+            digits[--i] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        buffer.put(digits, i, digits.length - i);
+    }
+
+    private void newLine() throws IOException {
+        if (buffer.remaining() < NEW_LINE.length) {
+            drain();
+        }
+        buffer.put(NEW_LINE);
+    }
+
+    /**
+     * Writes the buffer to the channel.
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes all buffered output to the channel.
+     *
+     * @throws IOException if writing fails
+     */
+    public void flush() throws IOException {
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        if (closeChannel) {
+            channel.close();
+        }
+    }
+}
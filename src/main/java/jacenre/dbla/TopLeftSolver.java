@@ -1,7 +1,6 @@
 package jacenre.dbla;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 /**
@@ -22,12 +21,8 @@ public class TopLeftSolver extends SimpleTopLeftSolver {
     }
 
     @Override
-    public boolean canSolveParameters(Parameters parameters) {
-        boolean superResult = super.canSolveParameters(parameters);
-        if (!superResult) {
-			return false;
-		}
-        return parameters.rectangles.size() <= 500;
+    int maxRectangles(boolean free) {
+        return 500;
     }
 
     /**
@@ -46,19 +41,22 @@ public class TopLeftSolver extends SimpleTopLeftSolver {
      * Move up until there is a possibility to move left.
      */
     @Override
-    protected void moveUp(Rectangle rect, List<Rectangle> rectangles) {
-        if (rect.y <= 0) {
-            Util.moveUp(rect, rectangles);
+    protected void moveUp(RectangleStore store, int i) {
+        if (store.y[i] <= 0) {
+            super.moveUp(store, i);
         } else {
-            rect.y = Math.max(0, rect.y - rect.height);
-            for (Rectangle rectangle : rectangles) {
-                if (rectangle.getId().equals(rect.getId())) {
-					break;
-				}
-                if (rectangle.isPlaced() && rect.intersects(rectangle)) {
-                    rect.y = Math.max(rect.y, rectangle.y + rectangle.height);
-                }
+            // Move up by at most its own height, then down again until it is clear of the rectangles it now overlaps
+            int y = Math.max(0, store.y[i] - store.h[i]);
+            int bottom;
+            while ((bottom = index.maxBottom(store.x[i], y, store.w[i], store.h[i])) > y) {
+                y = bottom;
             }
+            store.setY(i, y);
         }
     }
+
+    @Override
+    AbstractSolver newInstance() {
+        return new TopLeftSolver(allowInputSorting);
+    }
 }
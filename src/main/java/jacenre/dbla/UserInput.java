@@ -1,74 +1,225 @@
 package jacenre.dbla;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Scanner;
+import java.util.NoSuchElementException;
 
+/**
+ * Parser for the input format.
+ * <p>
+ * The input is parsed directly from bytes. Streams are read through a large channel buffer and files are memory
+ * mapped, the rectangle lines are parsed straight into {@code int} arrays without creating a {@code String} per line.
+ * </p>
+ *
+ * @see <a href="https://canvas.tue.nl/files/1978093/download?download_frd=1">
+ *      Problem description 2.1 Input Format</a>
+ */
 public class UserInput {
-    private Scanner sc;
+
+    /**
+     * Size of the buffer used when reading from a stream.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ByteBuffer buffer;
+
+    /**
+     * The channel to refill {@link #buffer} from, {@code null} if the whole input is mapped in the buffer.
+     */
+    private final ReadableByteChannel channel;
+
+    /**
+     * The widths and heights of the rectangles in input order, filled by {@link #getUserInput()}.
+     */
+    private int[] widths;
+    private int[] heights;
 
     public UserInput(InputStream is) {
-        this.sc = new Scanner(is);
+        this.channel = Channels.newChannel(is);
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.buffer.limit(0);
     }
 
-    public Parameters getUserInput() {
-        Parameters params = new Parameters();
-        List<Object> height = getHeight();
-
-        if (height.get(0).equals("free")) {
-            params.heightVariant = Util.HeightSupport.FREE;
-        } else {
-            params.heightVariant = Util.HeightSupport.FIXED;
+    /**
+     * Constructs a parser that memory maps the given file.
+     *
+     * @param file the file to parse
+     * @throws IOException if the file cannot be mapped
+     */
+    public UserInput(File file) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (fileChannel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Input file too large to map: " + file);
+            }
+            this.buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
         }
-
-        params.height = (Integer) height.get(1);
-        params.rotationVariant = getRotation();
-        params.setRectangles(getRectangles());
-        return params;
+        this.channel = null;
     }
 
-    private List<Object> getHeight() {
+    public Parameters getUserInput() {
+        Parameters params = new Parameters();
+
         // Getting the height variant
         String heightVariant = readInputParameter();
-        int height = Integer.MAX_VALUE;
         if (heightVariant.contains("fixed")) {
-            height = Integer.parseInt(heightVariant.split(" ")[1]);
-            heightVariant = heightVariant.split(" ")[0];
+            params.heightVariant = Util.HeightSupport.FIXED;
+            params.height = Integer.parseInt(heightVariant.split(" ")[1]);
+        } else {
+            params.heightVariant = Util.HeightSupport.FREE;
+            params.height = Integer.MAX_VALUE;
         }
-//        System.out.println();
-//        System.out.println("Height variant: " + heightVariant + (height != Integer.MAX_VALUE ? " with height " + height : ""));
 
-        return Arrays.asList(heightVariant, height);
-    }
-
-    private boolean getRotation() {
         // Getting the rotations variant
-        String rotationsVariant = readInputParameter();
-//        System.out.println("Rotations variant: " + rotationsVariant.startsWith("y"));
-        return rotationsVariant.startsWith("y");
-    }
+        params.rotationVariant = readInputParameter().startsWith("y");
 
-    private ArrayList<Rectangle> getRectangles() {
         // Getting the rectangles
         int nRectangles = Integer.parseInt(readInputParameter());
         if (nRectangles <= 0) {
             throw new IllegalArgumentException("The number of rectangles must be positive.");
         }
-//        System.out.println("Getting " + nRectangles + " rectangles");
-        ArrayList<Rectangle> rectangles = new ArrayList<>();
+        readDimensions(nRectangles);
+
+        ArrayList<Rectangle> rectangles = new ArrayList<>(nRectangles);
         for (int i = 0; i < nRectangles; i++) {
-            int[] rec = Arrays.stream(sc.nextLine().trim().split("\\s+")).mapToInt(Integer::parseInt).toArray();
-            rectangles.add(new Rectangle(rec[0], rec[1]));
+            rectangles.add(new Rectangle(widths[i], heights[i], i));
         }
+        params.setRectangles(rectangles);
+        return params;
+    }
 
-//        for (Rectangle rec : rectangles) {
-//            System.out.println(" " + rec.getSize());
-//        }
-        return rectangles;
+    /**
+     * Returns the widths of the rectangles in input order, available after {@link #getUserInput()}.
+     */
+    public int[] getWidths() {
+        return widths;
     }
 
+    /**
+     * Returns the heights of the rectangles in input order, available after {@link #getUserInput()}.
+     */
+    public int[] getHeights() {
+        return heights;
+    }
+
+    /**
+     * Reads the {@code width height} lines of the rectangles into {@link #widths} and {@link #heights}.
+     */
+    private void readDimensions(int nRectangles) {
+        widths = new int[nRectangles];
+        heights = new int[nRectangles];
+        for (int i = 0; i < nRectangles; i++) {
+            widths[i] = readInt();
+            heights[i] = readInt();
+            skipLine();
+        }
+    }
+
+    /**
+     * Reads a header line and returns the trimmed value after the colon.
+     */
     private String readInputParameter() {
-        return this.sc.nextLine().trim().split(":")[1].trim();
+        int b;
+        do {
+            b = read();
+            if (b == -1) {
+                throw new NoSuchElementException("No line found");
+            }
+        } while (b != ':');
+
+        StringBuilder value = new StringBuilder();
+        while ((b = read()) != -1 && b != '\n') {
+            value.append((char) b);
+        }
+        return value.toString().trim();
+    }
+
+    /**
+     * Reads the next integer, skipping any leading whitespace on the current line.
+     */
+    private int readInt() {
+        int b = read();
+        while (b == ' ' || b == '\t' || b == '\r') {
+            b = read();
+        }
+        if (b == -1 || b == '\n') {
+            throw new NoSuchElementException("Expected a number");
+        }
+
+        boolean negative = b == '-';
+        if (negative) {
+            b = read();
+        }
+        if (b < '0' || b > '9') {
+            throw new NumberFormatException("Expected a digit but found '" + (char) b + "'");
+        }
+
+        long value = 0;
+        while (b >= '0' && b <= '9') {
+            value = value * 10 + (b - '0');
+            if (value > Integer.MAX_VALUE) {
+                throw new NumberFormatException("Number out of range");
+            }
+            b = read();
+        }
+        unread(b);
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Skips to the start of the next line.
+     */
+    private void skipLine() {
+        int b;
+        do {
+            b = read();
+        } while (b != -1 && b != '\n');
+    }
+
+    /**
+     * Returns the next byte of the input or {@code -1} at the end.
+     */
+    private int read() {
+        if (!buffer.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    /**
+     * Steps back over the byte that was last returned by {@link #read()}.
+     */
+    private void unread(int b) {
+        if (b != -1) {
+            buffer.position(buffer.position() - 1);
+        }
+    }
+
+    /**
+     * Refills the buffer from the channel.
+     *
+     * @return {@code false} if there is no more input
+     */
+    private boolean fill() {
+        if (channel == null) {
+            return false;
+        }
+        try {
+            buffer.clear();
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+            buffer.flip();
+            return read > 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
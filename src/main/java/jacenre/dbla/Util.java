@@ -1,6 +1,9 @@
 package jacenre.dbla;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Global Util class for commonly used function and constants.
@@ -69,6 +72,10 @@ public class Util {
 
     /**
      * Times how long it takes to find a solution, used for debugging and test cases.
+     * <p>
+     * The solver gets the deadline {@link PackingSolver#main(String[])} gives it, the check afterwards fails if it
+     * did not stop in time.
+     * </p>
      *
      * @param parameters the Parameters to be packed
      * @param solver     the Solver to do the packing
@@ -76,7 +83,8 @@ public class Util {
     public static boolean timedPacker(Parameters parameters, AbstractSolver solver) {
         long startTime = System.nanoTime();
 
-        Solution solution = solver.getSolution(parameters);
+        Solution solution = solver.getSolution(parameters,
+                Deadline.after(PackingSolver.TIME_LIMIT - PackingSolver.OUTPUT_TIME));
         long endTime = System.nanoTime();
 
 
@@ -84,7 +92,7 @@ public class Util {
         long duration = (endTime - startTime) / 1000000;
         System.out.println("Packing took " + duration + "ms");
 
-        if (duration > 30000) {
+        if (duration > PackingSolver.TIME_LIMIT) {
             System.err.println("Packing took longer than 30 seconds");
             return false;
         }
@@ -97,63 +105,59 @@ public class Util {
      *
      * @param solution the Solution to check for overlap
      * @return boolean value representing if there is overlap
+     * @see #findOverlap(List)
      */
     public static boolean sweepline(Solution solution) {
-        // ArrayList holding all the segments we sweep over.
-        ArrayList<Segment> segments = new ArrayList<>();
-        ArrayList<Segment> active = new ArrayList<>();
-
-        // Copy parameters to prevent interference with the original result
-        Parameters parameters = solution.parameters.copy();
-
-        for (Rectangle rectangle : parameters.rectangles) {
-            segments.add(new Segment(Type.START, rectangle.y, rectangle.y + rectangle.height, rectangle.x, rectangle));
-            segments.add(new Segment(Type.END, rectangle.y, rectangle.y + rectangle.height, rectangle.x + rectangle.width, rectangle));
-        }
+        return findOverlap(solution.parameters.rectangles) != null;
+    }
 
-        // We sweep from left to right
-        segments.sort((o1, o2) -> {
-            if (o1.x == o2.x) {
-                // END has higher priority then START
-                if (o1.type == Type.END) {
-					return -1;
-				}
-                if (o2.type == Type.END) {
-					return 1;
-				}
+    /**
+     * Returns the first pair of overlapping rectangles found by sweeping from left to right.
+     * <p>
+     *     As long as no overlap is found the y intervals of the rectangles crossing the sweepline are disjoint, so
+     *     they are kept in a balanced tree on their start. A new interval overlaps an active one if and only if it
+     *     overlaps the active interval with the largest start below its end, which makes the sweep O(n log n).
+     *     Touching edges and empty rectangles do not overlap, like {@link java.awt.Rectangle#intersects}.
+     * </p>
+     *
+     * @param rectangles the rectangles to check, they are not modified
+     * @return the two overlapping rectangles, or {@code null} if there is no overlap
+     */
+    public static Rectangle[] findOverlap(List<Rectangle> rectangles) {
+        // Events sorted on x, then ends before starts so touching rectangles are not active together
+        long[] events = new long[2 * rectangles.size()];
+        int n = 0;
+        for (int i = 0; i < rectangles.size(); i++) {
+            Rectangle rectangle = rectangles.get(i);
+            if (rectangle.width > 0 && rectangle.height > 0) {
+                events[n++] = ((long) (rectangle.x + rectangle.width) << 32) | i;
+                events[n++] = ((long) rectangle.x << 32) | START | i;
             }
-            // Else sort on x
-            return o1.x - o2.x;
-        });
-
-        // Start sweep
-        for (Segment segment :
-                segments) {
-            // Left side of rectangle
-            if (segment.type == Type.START) {
-
-                for (Segment segment1 :
-                        active) {
-                    // If the interval is already in the tree there is overlap.
-                    if (segment1.equals(segment)) {
-						return true;
-					}
-                    if (segment.yStart > segment1.yStart && segment.yStart < segment1.yEnd
-                            || segment.yEnd > segment1.yStart && segment.yEnd < segment1.yEnd) {
-                        // Overlap
-                        return true;
-                    }
-                }
-                active.add(segment);
+        }
+        Arrays.sort(events, 0, n);
+
+        // The active rectangles by the start of their y interval
+        TreeMap<Integer, Rectangle> active = new TreeMap<>();
+        for (int e = 0; e < n; e++) {
+            Rectangle rectangle = rectangles.get((int) (events[e] & ~START));
+            if ((events[e] & START) == 0) {
+                active.remove(rectangle.y);
+                continue;
             }
-            // Right side of rectangle
-            else if (segment.type == Type.END) {
-                active.remove(segment);
+            Map.Entry<Integer, Rectangle> below = active.lowerEntry(rectangle.y + rectangle.height);
+            if (below != null && below.getValue().y + below.getValue().height > rectangle.y) {
+                return new Rectangle[]{below.getValue(), rectangle};
             }
+            active.put(rectangle.y, rectangle);
         }
-        return false;
+        return null;
     }
 
+    /**
+     * Flag of a start event in {@link #findOverlap(List)}, above the index of the rectangle.
+     */
+    private static final long START = 1L << 31;
+
     // Representing a line Segment for the sweep
     static class Segment {
         // Left or right side of the rectangle
@@ -212,9 +216,10 @@ public class Util {
             System.out.println(solution);
         }
 
-        if (sweepline(solution)) {
+        Rectangle[] overlap = findOverlap(solution.parameters.rectangles);
+        if (overlap != null) {
             if (debug) {
-				System.err.println("There are overlapping rectangles");
+				System.err.println("Rectangles " + overlap[0].getId() + " and " + overlap[1].getId() + " overlap");
 			}
             return false;
         }
@@ -344,37 +349,4 @@ public class Util {
         }
         return sum;
     }
-
-    /**
-     * Move up until there is a possibility to move left.
-     */
-    public static void moveUp(Rectangle rect, List<Rectangle> rectangles) {
-        Rectangle path = new Rectangle(rect.x, 0, rect.width, rect.y);
-        rect.y = 0;
-        for (Rectangle rectangle : rectangles) {
-            if (rectangle.getId().equals(rect.getId())) {
-				break;
-			}
-            if (path.intersects(rectangle)) {
-                rect.y = Math.max(rect.y, rectangle.y + rectangle.height);
-            }
-        }
-    }
-
-    /**
-     * Instead of going step by step, this method looks at what rectangles are
-     * blocking it from going all the way to the left, and move to just the right side of them.
-     */
-    public static void moveLeft(Rectangle rect, List<Rectangle> rectangles) {
-        Rectangle path = new Rectangle(0, rect.y, rect.x, rect.height);
-        rect.x = 0;
-        for (Rectangle rectangle : rectangles) {
-            if (rectangle.getId().equals(rect.getId())) {
-				break;
-			}
-            if (path.intersects(rectangle)) {
-                rect.x = Math.max(rect.x, rectangle.x + rectangle.width);
-            }
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,174 @@
+package jacenre.dbla;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ArraySkylineTest {
+
+    @Test
+    void testConstruction() {
+        ArraySkyline skyline = new ArraySkyline(22, 22, 16, true);
+        Assertions.assertEquals(1, skyline.size());
+        List<SegPoint> points = skyline.getCandidatePoints();
+        Assertions.assertEquals(2, points.size());
+        Assertions.assertEquals(0, points.get(0).y);
+        Assertions.assertTrue(points.get(0).start);
+        Assertions.assertEquals(22, points.get(1).y);
+        Assertions.assertFalse(points.get(1).start);
+    }
+
+    @Test
+    void testAdjustSkyline() {
+        ArraySkyline skyline = new ArraySkyline(22, 22, 16, true);
+        Rectangle rectangle = new Rectangle(3, 5);
+        skyline.adjustSkyline(rectangle, skyline.getCandidatePoints().get(0));
+        Assertions.assertEquals(15, skyline.getAreaOfSkyline());
+        Assertions.assertEquals(0, skyline.getMostLeftPoint());
+        Assertions.assertEquals(2, skyline.size());
+
+        // Exactly as high as the segment that is left
+        Rectangle fit = new Rectangle(4, 17);
+        skyline.adjustSkyline(fit, skyline.getCandidatePoints().get(1));
+        Assertions.assertEquals(15 + 4 * 17, skyline.getAreaOfSkyline());
+        Assertions.assertEquals(3, skyline.getMostLeftPoint());
+        Assertions.assertEquals(2, skyline.size());
+    }
+
+    /**
+     * The only fit is checked at the segment it is placed on, not where earlier steps left the rectangle.
+     */
+    @Test
+    void testOnlyFitIgnoresCoordinates() {
+        for (boolean rotations : new boolean[] {false, true}) {
+            ArraySkyline skyline = new ArraySkyline(22, 22, 22, rotations);
+            skyline.adjustSkyline(new Rectangle(3, 5), skyline.getCandidatePoints().get(0));
+
+            // Exactly as high as the upper segment, in the other orientation with rotations
+            Rectangle fit = rotations ? new Rectangle(17, 4) : new Rectangle(4, 17);
+            fit.x = 30;
+            fit.y = 20;
+            List<Rectangle> left = new ArrayList<>();
+            left.add(new Rectangle(2, 3));
+            left.add(fit);
+
+            PositionRectangleRotationPair onlyFit = skyline.anyOnlyFit(new RemainingRectangles(left), rotations);
+            Assertions.assertNotNull(onlyFit);
+            Assertions.assertSame(fit, onlyFit.rectangle);
+            Assertions.assertEquals(rotations, onlyFit.rotated);
+            Assertions.assertEquals(0, onlyFit.position.x);
+            Assertions.assertEquals(5, onlyFit.position.y);
+            Assertions.assertTrue(onlyFit.position.start);
+            Assertions.assertEquals(20, fit.y);
+        }
+    }
+
+    /**
+     * Places random rectangles on both skylines and checks that every query gives the same answer.
+     */
+    @Test
+    void testSameAsArrayListSkyline() {
+        assertSameAsArrayListSkyline(new Random(7), 200, 20, 10);
+    }
+
+    /**
+     * Places many small rectangles, so segments of the same x and a smallest side that grows are common.
+     */
+    @Test
+    void testSameAsArrayListSkylineSmallRectangles() {
+        assertSameAsArrayListSkyline(new Random(11), 100, 60, 4);
+    }
+
+    private static void assertSameAsArrayListSkyline(Random random, int runs, int rectangles, int side) {
+        for (int run = 0; run < runs; run++) {
+            int height = 10 + random.nextInt(40);
+            int width = 10 + random.nextInt(60);
+            boolean rotations = random.nextBoolean();
+            int spread = 5 + random.nextInt(width);
+            ArrayListSkyline expected = new ArrayListSkyline(height, width, spread, rotations);
+            ArraySkyline actual = new ArraySkyline(height, width, spread, rotations);
+
+            List<Rectangle> left = new ArrayList<>();
+            for (int i = 0; i < 5 + random.nextInt(rectangles); i++) {
+                left.add(new Rectangle(1 + random.nextInt(side), 1 + random.nextInt(Math.min(height, side + 2)), i));
+            }
+            RemainingRectangles remaining = new RemainingRectangles(left);
+
+            while (!left.isEmpty()) {
+                assertSameSkyline(expected, actual);
+                int[] smallest = expected.getMinWidthHeightOtherRectangles(left);
+                Assertions.assertArrayEquals(smallest, actual.getMinWidthHeightOtherRectangles(remaining));
+                Assertions.assertEquals(expected.getMostLeftPoint(), actual.getMostLeftPoint());
+
+                PositionRectangleRotationPair onlyFit = expected.anyOnlyFit(left, rotations);
+                PositionRectangleRotationPair actualOnlyFit = actual.anyOnlyFit(remaining, rotations);
+                Assertions.assertEquals(onlyFit == null, actualOnlyFit == null);
+                if (onlyFit != null) {
+                    Assertions.assertSame(onlyFit.rectangle, actualOnlyFit.rectangle);
+                    Assertions.assertEquals(onlyFit.position, actualOnlyFit.position);
+                    Assertions.assertEquals(onlyFit.rotated, actualOnlyFit.rotated);
+                }
+
+                List<SegPoint> expectedPoints = expected.getCandidatePoints();
+                List<SegPoint> points = actual.getCandidatePoints();
+                Assertions.assertEquals(expectedPoints, points);
+                PositionRectangleRotationPair[] best = new PositionRectangleRotationPair[2];
+                int minimum = Integer.MAX_VALUE;
+                for (int p = 0; p < points.size(); p++) {
+                    for (Rectangle rectangle : left) {
+                        int y = points.get(p).start ? points.get(p).y : points.get(p).y - rectangle.height;
+                        if (y < 0 || y + rectangle.height > height || points.get(p).x + rectangle.width > width) {
+                            continue;
+                        }
+                        rectangle.x = points.get(p).x;
+                        rectangle.y = y;
+                        int waste = expected.getLocalWaste(rectangle, expectedPoints.get(p), smallest);
+                        Assertions.assertEquals(waste, actual.getLocalWaste(rectangle, points.get(p), smallest));
+                        assertSameSkyline(expected, actual);
+
+                        PositionRectangleRotationPair pair = new PositionRectangleRotationPair(rectangle,
+                                expectedPoints.get(p), false);
+                        PositionRectangleRotationPair actualPair = new PositionRectangleRotationPair(rectangle,
+                                points.get(p), false);
+                        Assertions.assertEquals(expected.getFitnessNumber(pair), actual.getFitnessNumber(actualPair));
+                        pair.rotated = true;
+                        actualPair.rotated = true;
+                        Assertions.assertEquals(expected.getFitnessNumber(pair), actual.getFitnessNumber(actualPair));
+                        pair.rotated = false;
+                        actualPair.rotated = false;
+                        if (waste < minimum) {
+                            minimum = waste;
+                            best[0] = pair;
+                            best[1] = actualPair;
+                        }
+                    }
+                }
+                if (best[0] == null) {
+                    break;
+                }
+
+                Rectangle rectangle = best[0].rectangle;
+                rectangle.x = best[0].position.x;
+                rectangle.y = best[0].position.start ? best[0].position.y : best[0].position.y - rectangle.height;
+                expected.adjustSkyline(rectangle, best[0].position);
+                actual.adjustSkyline(rectangle, best[1].position);
+                left.remove(rectangle);
+                remaining.remove(rectangle);
+                expected.fixSkylineAfterPlacements(left, rotations);
+                actual.fixSkylineAfterPlacements(remaining, rotations);
+            }
+        }
+    }
+
+    private static void assertSameSkyline(ArrayListSkyline expected, ArraySkyline actual) {
+        List<Segment> segments = actual.getSegments();
+        Assertions.assertEquals(expected.skyline.size(), segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            Assertions.assertEquals(expected.skyline.get(i).start, segments.get(i).start);
+            Assertions.assertEquals(expected.skyline.get(i).end, segments.get(i).end);
+        }
+        Assertions.assertEquals(expected.getAreaOfSkyline(expected.skyline), actual.getAreaOfSkyline());
+    }
+}
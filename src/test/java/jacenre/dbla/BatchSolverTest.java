@@ -0,0 +1,99 @@
+package jacenre.dbla;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BatchSolverTest {
+    private static final Path PROTOTYPE = Paths.get("src", "test", "resources", "momotor", "prototype-1");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testSolveDirectory() throws IOException {
+        Path input = Files.createDirectories(directory.resolve("input").resolve("nested"));
+        Files.copy(PROTOTYPE.resolve("0003_r6-h80-ry.in"), input.resolve("0003_r6-h80-ry.in"));
+        Files.copy(PROTOTYPE.resolve("0004_r10-h3426-rn.in"), input.resolve("0004_r10-h3426-rn.in"));
+        Files.write(input.resolve("broken.in"), "container height: fixed 3\n".getBytes(StandardCharsets.US_ASCII));
+
+        List<Path> instances = BatchSolver.listInstances(directory.resolve("input"));
+        Assertions.assertEquals(3, instances.size());
+
+        Path output = directory.resolve("output");
+        List<BatchSolver.Result> results = new BatchSolver(2, 0).solve(instances, directory.resolve("input"), output);
+        Assertions.assertEquals(instances.size(), results.size());
+
+        for (BatchSolver.Result result : results) {
+            if (result.instance.getFileName().toString().equals("broken.in")) {
+                Assertions.assertEquals(BatchSolver.Result.FAILED, result.status);
+                continue;
+            }
+            Assertions.assertEquals(BatchSolver.Result.SOLVED, result.status);
+            Assertions.assertTrue(result.rate >= 1);
+
+            // The written solution should be a valid solution for the instance
+            String name = result.instance.getFileName().toString().replace(".in", ".out");
+            File solved = output.resolve("nested").resolve(name).toFile();
+            Parameters parameters = new UserInput(solved).getUserInput();
+            Assertions.assertEquals(result.rectangles, parameters.rectangles.size());
+        }
+
+        BatchSolver.writeCsv(results, output.resolve("summary.csv"));
+        BatchSolver.writeJson(results, output.resolve("summary.json"));
+        Assertions.assertEquals(4, Files.readAllLines(output.resolve("summary.csv")).size());
+        Assertions.assertTrue(new String(Files.readAllBytes(output.resolve("summary.json")), StandardCharsets.UTF_8)
+                .contains("\"status\": \"failed\""));
+    }
+
+    /**
+     * The instances of a batch are solved on their own threads, their solvers do not use the shared pools.
+     */
+    @Test
+    void testSolverKeepsToItsThread() {
+        CompoundSolver solver = BatchSolver.createSolver();
+        Assertions.assertFalse(solver.isParallel());
+        Assertions.assertEquals(1, solver.heightWorkers);
+        for (AbstractSolver subSolver : solver.getSolvers()) {
+            Assertions.assertEquals(1, subSolver.heightWorkers);
+            if (subSolver instanceof GeneticSolver) {
+                Assertions.assertEquals(1, ((GeneticSolver) subSolver).getWorkers());
+            } else if (subSolver instanceof SkylineSolver) {
+                Assertions.assertEquals(Integer.MAX_VALUE, ((SkylineSolver) subSolver).parallelPlacements);
+            }
+        }
+    }
+
+    @Test
+    void testCache() throws IOException {
+        List<Path> instances = Arrays.asList(PROTOTYPE.resolve("0003_r6-h80-ry.in"));
+        BatchSolver solver = new BatchSolver(1, 2000).setCache(new SolutionCache(1000, directory.resolve("cache.log")));
+        BatchSolver.Result first = solver.solve(instances, PROTOTYPE, directory.resolve("first")).get(0);
+        Assertions.assertEquals(BatchSolver.Result.SOLVED, first.status);
+
+        // Solved again with the same budget, answered by the cache
+        BatchSolver.Result second = solver.solve(instances, PROTOTYPE, directory.resolve("second")).get(0);
+        Assertions.assertEquals(BatchSolver.Result.SOLVED, second.status);
+        Assertions.assertEquals("CachingSolver", second.solvedBy);
+        Assertions.assertEquals(first.rate, second.rate);
+        Assertions.assertEquals(1, Files.readAllLines(directory.resolve("cache.log")).size());
+    }
+
+    @Test
+    void testManifest() throws IOException {
+        Path manifest = directory.resolve("manifest.txt");
+        Files.write(manifest, Arrays.asList("# instances", PROTOTYPE.resolve("0003_r6-h80-ry.in").toAbsolutePath()
+                .toString(), ""));
+        List<Path> instances = BatchSolver.listInstances(manifest);
+        Assertions.assertEquals(1, instances.size());
+        Assertions.assertTrue(Files.isRegularFile(instances.get(0)));
+    }
+}
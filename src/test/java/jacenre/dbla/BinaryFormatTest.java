@@ -0,0 +1,85 @@
+package jacenre.dbla;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BinaryFormatTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testConvert() throws IOException {
+        Path input = Paths.get("src", "test", "resources", "momotor", "prototype-1", "0003_r6-h80-ry.in");
+        Path binary = directory.resolve("0003_r6-h80-ry" + BinaryFormat.EXTENSION);
+        BinaryFormat.convert(input, binary);
+        Assertions.assertTrue(BinaryFormat.isInstance(binary));
+        Assertions.assertFalse(BinaryFormat.isInstance(input));
+
+        Parameters text = new UserInput(input.toFile()).getUserInput();
+        BinaryFormat.MappedInstance mapped = BinaryFormat.mapInstance(binary);
+        Assertions.assertEquals(text.heightVariant, mapped.heightVariant);
+        Assertions.assertEquals(text.height, mapped.height);
+        Assertions.assertEquals(text.rotationVariant, mapped.rotationVariant);
+        Assertions.assertEquals(text.rectangles.size(), mapped.size());
+
+        IntBuffer dimensions = mapped.getDimensions();
+        Parameters parameters = mapped.getParameters();
+        for (int i = 0; i < mapped.size(); i++) {
+            Assertions.assertEquals(text.rectangles.get(i).width, dimensions.get(2 * i));
+            Assertions.assertEquals(text.rectangles.get(i).height, dimensions.get(2 * i + 1));
+            Assertions.assertEquals(text.rectangles.get(i).getSize(), parameters.rectangles.get(i).getSize());
+            Assertions.assertEquals(i, parameters.rectangles.get(i).getId());
+        }
+        Assertions.assertSame(parameters, mapped.getParameters());
+    }
+
+    @Test
+    void testSolution() throws IOException {
+        ArrayList<Rectangle> rectangles = new ArrayList<>();
+        Rectangle first = new Rectangle(12, 8, 0);
+        Rectangle second = new Rectangle(10, 9, 1);
+        second.rotate();
+        second.setLocation(12, 0);
+        rectangles.add(second);
+        rectangles.add(first);
+        Parameters solved = new Parameters(22, Util.HeightSupport.FIXED, true, rectangles);
+
+        Path file = directory.resolve("solution" + BinaryFormat.EXTENSION);
+        BinaryFormat.writeSolution(solved, file);
+        Parameters read = BinaryFormat.readSolution(file);
+
+        Assertions.assertEquals(22, read.height);
+        Assertions.assertEquals(Util.HeightSupport.FIXED, read.heightVariant);
+        Assertions.assertTrue(read.rotationVariant);
+        Assertions.assertEquals(first.getBounds(), read.rectangles.get(0).getBounds());
+        Assertions.assertFalse(read.rectangles.get(0).isRotated());
+        Assertions.assertEquals(second.getBounds(), read.rectangles.get(1).getBounds());
+        Assertions.assertTrue(read.rectangles.get(1).isRotated());
+
+        // A solution is not an instance
+        Assertions.assertThrows(IOException.class, () -> BinaryFormat.mapInstance(file));
+    }
+
+    @Test
+    void testTruncated() throws IOException {
+        Path file = directory.resolve("instance" + BinaryFormat.EXTENSION);
+        ArrayList<Rectangle> rectangles = new ArrayList<>();
+        rectangles.add(new Rectangle(3, 4, 0));
+        rectangles.add(new Rectangle(5, 6, 1));
+        BinaryFormat.writeInstance(new Parameters(0, Util.HeightSupport.FREE, false, rectangles), file);
+        Assertions.assertEquals(2, BinaryFormat.mapInstance(file).size());
+
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+        Assertions.assertThrows(IOException.class, () -> BinaryFormat.mapInstance(file));
+    }
+}
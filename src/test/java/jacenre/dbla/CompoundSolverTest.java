@@ -1,5 +1,19 @@
 package jacenre.dbla;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 
 /**
  * Testing class using {@link CompoundSolver}
@@ -21,4 +35,157 @@ public class CompoundSolverTest extends AbstractPackingSolverTest {
 
         return compoundSolver;
     }
+
+    /**
+     * Two 5x10 rectangles in a strip of height 10.
+     */
+    private static Parameters twoSquares() {
+        ArrayList<Rectangle> rectangles = new ArrayList<>();
+        rectangles.add(new Rectangle(5, 10, 0));
+        rectangles.add(new Rectangle(5, 10, 1));
+        Parameters parameters = new Parameters(10, Util.HeightSupport.FIXED, false, rectangles);
+        return parameters;
+    }
+
+    @Test
+    void testLowerBound() {
+        Parameters parameters = twoSquares();
+        assertEquals(100, CompoundSolver.lowerBound(parameters));
+
+        // A rectangle wider than the total area allows
+        parameters.rectangles.add(new Rectangle(30, 1, 2));
+        assertEquals(300, CompoundSolver.lowerBound(parameters));
+        parameters.rotationVariant = true;
+        assertEquals(130, CompoundSolver.lowerBound(parameters));
+
+        parameters.heightVariant = Util.HeightSupport.FREE;
+        assertEquals(130, CompoundSolver.lowerBound(parameters));
+    }
+
+    @Test
+    void testParallelSameAsSequential() throws IOException {
+        Solution[] solutions = new Solution[2];
+        for (int i = 0; i < 2; i++) {
+            CompoundSolver compoundSolver = new CompoundSolver().setParallel(i == 1)
+                    .addSolver(new FirstFitSolver())
+                    .addSolver(new BottomUpSolver())
+                    .addSolver(new ReverseFitSolver());
+            solutions[i] = compoundSolver.getSolution(TestInstances.read("0004_r10-h3426-rn.in"));
+            assertNotNull(solutions[i]);
+        }
+        assertEquals(solutions[0].getArea(), solutions[1].getArea());
+        assertEquals(solutions[0].solvedBy.getName(), solutions[1].solvedBy.getName());
+    }
+
+    @Test
+    void testCancelOnOptimum() {
+        Parameters parameters = twoSquares();
+
+        // Only stops when cancelled
+        AbstractSolver blocking = new FirstFitSolver() {
+            @Override
+            Solution pack(Parameters parameters) {
+                while (!deadline.isExpired()) {
+                    Thread.yield();
+                }
+                return null;
+            }
+        };
+        AbstractSolver immediate = new FirstFitSolver() {
+            @Override
+            Solution pack(Parameters parameters) {
+                parameters.rectangles.get(1).x = 5;
+                return new Solution(parameters, this);
+            }
+        };
+
+        CompoundSolver compoundSolver = new CompoundSolver().setParallel(true)
+                .addSolver(blocking)
+                .addSolver(immediate);
+        Solution solution = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> compoundSolver.pack(parameters));
+        assertSame(immediate, solution.solvedBy);
+    }
+
+    @Test
+    void testDeadline() throws IOException {
+        for (boolean parallel : new boolean[]{false, true}) {
+            AbstractSolver solver = ((CompoundSolver) getSolver()).setParallel(parallel);
+            Parameters parameters = TestInstances.read("0006_r25-hf-ry.in");
+
+            long startTime = System.nanoTime();
+            Solution solution = solver.getSolution(parameters, Deadline.after(2000));
+            long duration = (System.nanoTime() - startTime) / 1000000;
+
+            assertTrue(duration < 6000, "Took " + duration + "ms");
+            assertTrue(Util.isValidSolution(solution));
+        }
+    }
+
+    @Test
+    void testPublishesImprovements() throws IOException {
+        String[] files = {"0004_r10-h3426-rn.in", "0006_r25-hf-ry.in"};
+        for (String name : files) {
+            Parameters parameters = TestInstances.read(name);
+            Util.HeightSupport heightVariant = parameters.heightVariant;
+            AbstractSolver solver = getSolver();
+            List<Solution> published = new ArrayList<>();
+            List<Long> timestamps = new ArrayList<>();
+            solver.addListener((solution, solvedBy, timestamp) -> {
+                assertNotNull(solvedBy);
+                published.add(solution);
+                timestamps.add(timestamp);
+            });
+            Solution solution = solver.getSolution(parameters, Deadline.after(2000));
+
+            assertFalse(published.isEmpty(), name);
+            for (int i = 0; i < published.size(); i++) {
+                assertTrue(Util.isValidSolution(published.get(i)), name);
+                assertEquals(heightVariant, published.get(i).parameters.heightVariant, name);
+                if (i > 0) {
+                    assertTrue(published.get(i).getArea(true) < published.get(i - 1).getArea(true), name);
+                    assertTrue(timestamps.get(i) >= timestamps.get(i - 1), name);
+                }
+            }
+            assertTrue(published.get(published.size() - 1).getArea(true) <= solution.getArea(true), name);
+        }
+    }
+
+    /**
+     * Waits until its deadline expires and finds nothing.
+     */
+    static class Loser extends FirstFitSolver {
+        @Override
+        Solution pack(Parameters parameters) {
+            while (!deadline.isExpired()) {
+                Thread.yield();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Takes a second and finds nothing.
+     */
+    static class Winner extends Loser {
+        @Override
+        Solution pack(Parameters parameters) {
+            deadline = deadline.child(1000);
+            return super.pack(parameters);
+        }
+    }
+
+    @Test
+    void testScheduler() throws IOException {
+        PortfolioScheduler scheduler = PortfolioScheduler.read(new StringReader(
+                "xs-tight-n-uniform-varied,Loser,20,0\nxs-tight-n-uniform-varied,Winner,20,20\n"));
+        CompoundSolver compoundSolver = new CompoundSolver().setParallel(true).setScheduler(scheduler)
+                .addSolver(new Loser())
+                .addSolver(new Winner());
+
+        // The loser only gets a tenth of the time, without a scheduler the solve would take 10 seconds
+        long startTime = System.nanoTime();
+        compoundSolver.pack(twoSquares(), Deadline.after(10000));
+        long duration = (System.nanoTime() - startTime) / 1000000;
+        assertTrue(duration < 5000, "Took " + duration + "ms");
+    }
 }
@@ -0,0 +1,93 @@
+package jacenre.dbla;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+class CostModelTest {
+
+    @Test
+    void testFit() {
+        // Exactly quadratic
+        double[] fit = CostModel.fit(new int[]{25, 50, 100, 200}, new double[]{1, 4, 16, 64});
+        assertEquals(2, fit[1], 1e-9);
+        assertEquals(64 / (200.0 * 200), fit[0], 1e-12);
+
+        // The exponent is at least 1, the fit goes through the last point
+        fit = CostModel.fit(new int[]{25, 50}, new double[]{10, 10});
+        assertEquals(1, fit[1], 1e-9);
+        assertEquals(10 / 50.0, fit[0], 1e-12);
+    }
+
+    @Test
+    void testEstimate() throws IOException {
+        CostModel model = CostModel.read(new StringReader("solver,variant,a,b\n"
+                + "FirstFitSolver,fixed,0.001,2\n"
+                + "FirstFitSolver,free,0.002,2\n"));
+        Parameters parameters = CostModel.benchmark(100, false);
+        assertEquals(10, model.estimate("FirstFitSolver", parameters), 1e-9);
+        assertTrue(Double.isNaN(model.estimate("BottomUpSolver", parameters)));
+
+        // A free height search fits if its first height fits its share of the budget
+        parameters.freeHeightUtil = true;
+        assertEquals(20 * FreeHeightUtil.FIRST_HEIGHT_SHARE, model.estimate("FirstFitSolver", parameters), 1e-9);
+
+        StringWriter writer = new StringWriter();
+        model.write(writer);
+        StringWriter again = new StringWriter();
+        CostModel.read(new StringReader(writer.toString())).write(again);
+        assertEquals(writer.toString(), again.toString());
+
+        assertThrows(IOException.class, () -> CostModel.read(new StringReader("FirstFitSolver,fixed,1\n")));
+        assertThrows(IOException.class, () -> CostModel.read(new StringReader("FirstFitSolver,other,1,1\n")));
+    }
+
+    @Test
+    void testCalibrate() {
+        CostModel model = CostModel.calibrate(Collections.singletonList(new FirstFitSolver()), 200);
+        Parameters parameters = CostModel.benchmark(1000, false);
+        assertTrue(model.estimate("FirstFitSolver", parameters) > 0);
+        parameters.freeHeightUtil = true;
+        assertTrue(model.estimate("FirstFitSolver", parameters) > 0);
+    }
+
+    @Test
+    void testAdmission() throws IOException {
+        // The default model expects the skyline solver to be too slow for a large instance, but not a first fit
+        Parameters parameters = CostModel.benchmark(5000, false);
+        assertFalse(new SkylineSolver().canSolveParameters(parameters));
+        assertTrue(new FirstFitSolver().canSolveParameters(parameters));
+        assertTrue(new SkylineSolver().canSolveParameters(CostModel.benchmark(25, false)));
+
+        // The corpus instances with a free height of 25 rectangles are searched with the skyline solver
+        assertTrue(new SkylineSolver().canSolveParameters(TestInstances.read("0006_r25-hf-ry.in")));
+        Parameters free = CostModel.benchmark(50, true);
+        assertTrue(new SkylineSolver().canSolveParameters(free));
+
+        // Whatever the budget, a solver that does not support the height variant cannot solve it
+        parameters.freeHeightUtil = true;
+        assertFalse(new GeneticSolver(new TopLeftSolver(), true).canSolveParameters(parameters, Long.MAX_VALUE));
+    }
+
+    @Test
+    void testUnknownCost() {
+        // Without a fit a solver is used up to its own number of rectangles
+        AbstractSolver solver = new SkylineSolver() {
+            @Override
+            public double estimateCost(Parameters parameters) {
+                return Double.NaN;
+            }
+        };
+        assertTrue(solver.canSolveParameters(CostModel.benchmark(100, false), 0));
+        assertFalse(solver.canSolveParameters(CostModel.benchmark(101, false), Long.MAX_VALUE));
+        assertTrue(solver.canSolveParameters(CostModel.benchmark(50, true), 0));
+        assertFalse(solver.canSolveParameters(CostModel.benchmark(51, true), Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,70 @@
+package jacenre.dbla;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class DeadlineTest {
+
+    @Test
+    void testNone() {
+        Deadline deadline = Deadline.none();
+        Assertions.assertFalse(deadline.isBounded());
+        Assertions.assertFalse(deadline.isExpired());
+        Assertions.assertEquals(Long.MAX_VALUE, deadline.remaining());
+        Assertions.assertEquals(Long.MAX_VALUE, deadline.budget());
+
+        deadline.cancel();
+        Assertions.assertTrue(deadline.isCancelled());
+        Assertions.assertTrue(deadline.isExpired());
+    }
+
+    @Test
+    void testAfter() throws InterruptedException {
+        Deadline deadline = Deadline.after(50);
+        Assertions.assertTrue(deadline.isBounded());
+        Assertions.assertTrue(deadline.remaining() <= 50);
+
+        Thread.sleep(60);
+        Assertions.assertTrue(deadline.isExpired());
+        Assertions.assertEquals(0, deadline.remaining());
+        Assertions.assertFalse(deadline.isCancelled());
+    }
+
+    @Test
+    void testChild() {
+        Deadline parent = Deadline.after(60000);
+
+        // A child never outlives its parent
+        Assertions.assertTrue(parent.child(120000).remaining() <= 60000);
+        Assertions.assertTrue(parent.child(1000).remaining() <= 1000);
+        Assertions.assertTrue(Deadline.none().child(1000).isBounded());
+        Assertions.assertFalse(Deadline.none().child(Long.MAX_VALUE).isBounded());
+
+        // The budget is the time a deadline had when it was created, a child of child() has the same one
+        Deadline budgeted = Deadline.after(1000);
+        Assertions.assertTrue(budgeted.budget() <= 1000 && budgeted.budget() >= 990);
+        Assertions.assertEquals(budgeted.budget(), budgeted.child().budget());
+        Assertions.assertTrue(budgeted.child(5000).budget() <= budgeted.budget());
+
+        // Cancelling a child does not cancel the parent, but cancelling the parent cancels the child
+        Deadline child = parent.child();
+        Deadline other = parent.child();
+        child.cancel();
+        Assertions.assertTrue(child.isExpired());
+        Assertions.assertFalse(parent.isExpired());
+        Assertions.assertFalse(other.isExpired());
+        parent.cancel();
+        Assertions.assertTrue(other.isExpired());
+    }
+
+    @Test
+    void testInterrupted() {
+        Deadline deadline = Deadline.none();
+        Thread.currentThread().interrupt();
+        try {
+            Assertions.assertTrue(deadline.isExpired());
+            Assertions.assertFalse(deadline.isCancelled());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
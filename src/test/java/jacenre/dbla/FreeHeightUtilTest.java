@@ -0,0 +1,97 @@
+package jacenre.dbla;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+class FreeHeightUtilTest {
+
+    @Test
+    void testCopy() {
+        AbstractSolver[] solvers = {new FirstFitSolver(false), new BottomUpSolver(), new SkylineSolver(),
+                new TopLeftSolver(), new GeneticSolver(new TopLeftSolver(false), true),
+                new CompoundSolver().addSolver(new FirstFitSolver()).addSolver(new ReverseFitSolver())};
+        for (AbstractSolver solver : solvers) {
+            AbstractSolver copy = solver.copy();
+            assertNotNull(copy, solver.getClass().getSimpleName());
+            assertNotSame(solver, copy);
+            assertEquals(solver.getClass(), copy.getClass());
+            assertEquals(solver.allowInputSorting, copy.allowInputSorting);
+        }
+
+        // A subclass would be copied as its superclass
+        assertNull(new FirstFitSolver() {
+        }.copy());
+        assertNull(new CompoundSolver().addSolver(new FirstFitSolver() {
+        }).copy());
+    }
+
+    @Test
+    void testParallelSameAsSequential() throws IOException {
+        for (String name : new String[]{"0001_r4-hf-rn.in", "0006_r25-hf-ry.in"}) {
+            Solution[] solutions = new Solution[2];
+            for (int i = 0; i < 2; i++) {
+                Parameters parameters = TestInstances.read(name);
+                parameters.freeHeightUtil = true;
+                parameters.heightVariant = Util.HeightSupport.FIXED;
+                solutions[i] = new FreeHeightUtil(new BottomUpSolver(), i == 0 ? 1 : 4)
+                        .tryAllHeightsFinder(parameters);
+                assertNotNull(solutions[i], name);
+                assertTrue(Util.isValidSolution(solutions[i]), name);
+            }
+            assertEquals(solutions[0].getArea(), solutions[1].getArea(), name);
+            assertEquals(solutions[0].getHeight(), solutions[1].getHeight(), name);
+        }
+    }
+
+    @Test
+    void testParallelSolve() throws IOException {
+        Parameters parameters = TestInstances.read("0005_r10-hf-ry.in");
+        Solution solution = new FreeHeightUtil(new FirstFitSolver(), 4).pack(parameters, Deadline.after(2000));
+        assertTrue(Util.isValidSolution(solution));
+        assertEquals(Util.HeightSupport.FREE, solution.parameters.heightVariant);
+    }
+
+    @Test
+    void testSkippedHeightsCannotWin() throws IOException {
+        for (String name : new String[]{"0002_r6-hf-ry.in", "0006_r25-hf-ry.in"}) {
+            Parameters parameters = TestInstances.read(name);
+            parameters.freeHeightUtil = true;
+            parameters.heightVariant = Util.HeightSupport.FIXED;
+
+            // Pack every height without skipping any
+            long bestArea = Long.MAX_VALUE;
+            for (int height = Util.largestRect(parameters); height <= Util.sumHeight(parameters); height++) {
+                Parameters copy = parameters.copy();
+                copy.height = height;
+                Solution solution = new BottomUpSolver().pack(copy);
+                if (solution != null) {
+                    bestArea = Math.min(bestArea, solution.getArea());
+                }
+            }
+
+            Solution solution = new FreeHeightUtil(new BottomUpSolver(), 1).tryAllHeightsFinder(parameters);
+            assertEquals(bestArea, solution.getArea(), name);
+        }
+    }
+
+    @Test
+    void testLocalMinimaFinder() throws IOException {
+        Parameters parameters = TestInstances.read("0006_r25-hf-ry.in");
+        parameters.freeHeightUtil = true;
+        parameters.heightVariant = Util.HeightSupport.FIXED;
+
+        Parameters start = parameters.copy();
+        start.height = Util.sumHeight(parameters) / 2;
+        Solution startSolution = new BottomUpSolver().pack(start);
+
+        Solution solution = new FreeHeightUtil(new BottomUpSolver(), 1).localMinimaFinder(parameters, 20);
+        assertTrue(Util.isValidSolution(solution));
+        assertTrue(solution.getArea() <= startSolution.getArea());
+    }
+}
@@ -1,5 +1,15 @@
 package jacenre.dbla;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 
 /**
  * Testing class using {@link GeneticSolver}
@@ -12,4 +22,70 @@ public class GeneticSolverTest extends AbstractPackingSolverTest {
         return new GeneticSolver(new TopLeftSolver(false), true);
     }
 
+    @Test
+    void testWorkers() throws IOException {
+        for (String name : TestInstances.FIXED) {
+            Parameters parameters = TestInstances.read(name);
+            Solution solution = new GeneticSolver(new TopLeftSolver(false), true).setWorkers(4)
+                    .getSolution(parameters, Deadline.after(1000));
+            assertTrue(Util.isValidSolution(solution), name);
+            assertTrue(solution.getRate() >= 1, name);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new GeneticSolver(new TopLeftSolver(), true).setWorkers(0));
+    }
+
+    @Test
+    void testWorkersSameAsOneWorker() throws IOException {
+        // Rectangles that may not rotate, so the solver decodes a permutation the same way every time
+        String name = "0007_r25-h35-rn.in";
+        Solution[] solutions = new Solution[2];
+        for (int i = 0; i < 2; i++) {
+            GeneticSolver solver = new GeneticSolver(new TopLeftSolver(false), true).setWorkers(i == 0 ? 1 : 4)
+                    .setGenerations(20).setSeed(42);
+            solutions[i] = solver.getSolution(TestInstances.read(name));
+            assertTrue(Util.isValidSolution(solutions[i]));
+        }
+        assertEquals(solutions[0].getArea(), solutions[1].getArea());
+        assertEquals(placements(solutions[0]), placements(solutions[1]));
+    }
+
+    @Test
+    void testIslands() throws IOException {
+        for (String name : TestInstances.FIXED) {
+            Parameters parameters = TestInstances.read(name);
+            Solution solution = new GeneticSolver(new TopLeftSolver(false), true).setIslands(3, 5, 2)
+                    .getSolution(parameters, Deadline.after(1000));
+            assertTrue(Util.isValidSolution(solution), name);
+            assertTrue(solution.getRate() >= 1, name);
+        }
+
+        // Four epochs of 5 generations, every island takes 2 migrants from the previous one after the first three
+        GeneticSolver solver = new GeneticSolver(new TopLeftSolver(false), true).setIslands(3, 5, 2)
+                .setGenerations(20).setSeed(42);
+        Solution solution = solver.getSolution(TestInstances.read("0007_r25-h35-rn.in"));
+        assertTrue(Util.isValidSolution(solution));
+        assertEquals(3 * 3 * 2, solver.migrants.get());
+    }
+
+    @Test
+    void testSettings() {
+        GeneticSolver solver = new GeneticSolver(new TopLeftSolver(), true);
+        assertThrows(IllegalArgumentException.class, () -> solver.setIslands(0, 5, 2));
+        assertThrows(IllegalArgumentException.class, () -> solver.setIslands(2, 0, 2));
+        assertThrows(IllegalArgumentException.class, () -> solver.setIslands(2, 5, 11));
+        assertThrows(IllegalArgumentException.class, () -> solver.setGenerations(0));
+    }
+
+    /**
+     * Returns the placement of every rectangle of {@code solution} in the order of the input.
+     */
+    private static List<String> placements(Solution solution) {
+        List<Rectangle> rectangles = new ArrayList<>(solution.parameters.rectangles);
+        rectangles.sort(Comparator.comparingInt(Rectangle::getId));
+        List<String> placements = new ArrayList<>();
+        for (Rectangle rectangle : rectangles) {
+            placements.add(rectangle.x + " " + rectangle.y + " " + rectangle.isRotated());
+        }
+        return placements;
+    }
 }
@@ -0,0 +1,86 @@
+package jacenre.dbla;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class PlacementIndexTest {
+
+    @Test
+    void testIntersects() {
+        PlacementIndex index = new PlacementIndex(4, 4);
+        index.add(new Rectangle(2, 3, 5, 5));
+        Assertions.assertEquals(1, index.size());
+
+        Assertions.assertTrue(index.intersects(0, 0, 3, 4));
+        Assertions.assertTrue(index.intersects(6, 7, 100, 100));
+        Assertions.assertTrue(index.intersects(new Rectangle(3, 4, 1, 1)));
+        // Touching edges do not intersect
+        Assertions.assertFalse(index.intersects(7, 3, 5, 5));
+        Assertions.assertFalse(index.intersects(0, 0, 2, 3));
+        Assertions.assertFalse(index.intersects(2, 8, 5, 5));
+        // Empty rectangles never intersect
+        Assertions.assertFalse(index.intersects(3, 4, 0, 1));
+
+        index.clear();
+        Assertions.assertEquals(0, index.size());
+        Assertions.assertFalse(index.intersects(3, 4, 1, 1));
+    }
+
+    @Test
+    void testNearestObstacle() {
+        PlacementIndex index = new PlacementIndex(3, 3);
+        index.add(0, 0, 4, 2);
+        index.add(10, 0, 2, 10);
+        index.add(0, 5, 7, 2);
+
+        // Moving a 2x2 rectangle at (20, 1) left stops at the tall rectangle
+        Assertions.assertEquals(12, index.maxRight(0, 1, 20, 2));
+        // Moving it left from (9, 1) stops at the first rectangle
+        Assertions.assertEquals(4, index.maxRight(0, 1, 9, 2));
+        // Moving a 1x1 rectangle at (5, 3) left does not hit anything
+        Assertions.assertEquals(0, index.maxRight(0, 3, 5, 1));
+
+        // Moving a 2x2 rectangle at (1, 20) up stops at the lower rectangle
+        Assertions.assertEquals(7, index.maxBottom(1, 0, 2, 20));
+        // Moving a 2x2 rectangle at (7, 20) up does not hit anything
+        Assertions.assertEquals(0, index.maxBottom(7, 0, 2, 20));
+    }
+
+    @Test
+    void testAgainstBruteForce() {
+        Random random = new Random(42);
+        List<Rectangle> placed = new ArrayList<>();
+        PlacementIndex index = new PlacementIndex(7, 5);
+        for (int i = 0; i < 200; i++) {
+            Rectangle rectangle = new Rectangle(random.nextInt(100), random.nextInt(100),
+                    random.nextInt(15), random.nextInt(15));
+            placed.add(rectangle);
+            index.add(rectangle);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            int x = random.nextInt(120);
+            int y = random.nextInt(120);
+            int width = random.nextInt(30);
+            int height = random.nextInt(30);
+            java.awt.Rectangle area = new java.awt.Rectangle(x, y, width, height);
+
+            boolean intersects = false;
+            int maxRight = 0;
+            int maxBottom = 0;
+            for (Rectangle rectangle : placed) {
+                if (area.intersects(rectangle)) {
+                    intersects = true;
+                    maxRight = Math.max(maxRight, rectangle.x + rectangle.width);
+                    maxBottom = Math.max(maxBottom, rectangle.y + rectangle.height);
+                }
+            }
+            Assertions.assertEquals(intersects, index.intersects(x, y, width, height));
+            Assertions.assertEquals(maxRight, index.maxRight(x, y, width, height));
+            Assertions.assertEquals(maxBottom, index.maxBottom(x, y, width, height));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package jacenre.dbla;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class PortfolioSchedulerTest {
+
+    private static final String STATS = "class,solver,runs,wins\n"
+            + "xs-fixed-r-spread-varied,FirstFitSolver,10,8\n"
+            + "xs-fixed-r-spread-varied,BottomUpSolver,10,0\n"
+            + "xs-fixed-r-uniform-varied,FirstFitSolver,10,0\n"
+            + "xs-fixed-r-uniform-varied,BottomUpSolver,10,10\n";
+
+    private static Parameters example() {
+        ArrayList<Rectangle> rectangles = new ArrayList<>();
+        rectangles.add(new Rectangle(12, 8, 0));
+        rectangles.add(new Rectangle(10, 9, 1));
+        rectangles.add(new Rectangle(8, 12, 2));
+        rectangles.add(new Rectangle(16, 3, 3));
+        return new Parameters(40, Util.HeightSupport.FIXED, true, rectangles);
+    }
+
+    @Test
+    void testFeatures() {
+        Parameters parameters = example();
+        InstanceFeatures features = InstanceFeatures.of(parameters);
+        assertEquals(4, features.n);
+        assertTrue(features.fixedHeight);
+        assertEquals(40.0 / 16, features.heightRatio, 1e-9);
+        assertTrue(features.rotations);
+        assertEquals((16.0 / 3) / (10.0 / 9), features.aspectSpread, 1e-9);
+        // 12x8 and 8x12 are the same size with rotations
+        assertEquals(3, features.distinctSizes);
+        assertEquals("xs-fixed-r-spread-varied", features.instanceClass());
+        assertEquals("xs-fixed-r", features.coarseClass());
+
+        // The sub problems of the free height count as free
+        parameters.freeHeightUtil = true;
+        parameters.rotationVariant = false;
+        features = InstanceFeatures.of(parameters);
+        assertFalse(features.fixedHeight);
+        assertEquals(4, features.distinctSizes);
+        assertEquals("xs-free-n", features.coarseClass());
+    }
+
+    @Test
+    void testWeights() throws IOException {
+        PortfolioScheduler scheduler = PortfolioScheduler.read(new StringReader(STATS));
+        List<AbstractSolver> solvers = Arrays.asList(new FirstFitSolver(), new BottomUpSolver());
+
+        double[] weights = scheduler.weights(InstanceFeatures.of(example()), solvers);
+        assertEquals(1, weights[0], 1e-9);
+        assertEquals(1.0 / 9, weights[1], 1e-9);
+
+        // An unknown class falls back to its coarse class, where both solvers won 8 and 10 of 20 runs
+        Parameters parameters = example();
+        for (Rectangle rectangle : parameters.rectangles) {
+            rectangle.width = 10;
+            rectangle.height = 9;
+        }
+        assertEquals("xs-fixed-r-uniform-repeated", InstanceFeatures.of(parameters).instanceClass());
+        weights = scheduler.weights(InstanceFeatures.of(parameters), solvers);
+        assertEquals((9.0 / 22) / (11.0 / 22), weights[0], 1e-9);
+        assertEquals(1, weights[1], 1e-9);
+
+        // Never winning in many runs still leaves the smallest weight
+        scheduler.record("xs-fixed-r-spread-varied", "BottomUpSolver", 100, 0);
+        assertEquals(PortfolioScheduler.MIN_WEIGHT, scheduler.weights(InstanceFeatures.of(example()), solvers)[1]);
+
+        // A solver without statistics gives every solver the same weight
+        weights = scheduler.weights(InstanceFeatures.of(example()), Arrays.asList(new FirstFitSolver(),
+                new SkylineSolver()));
+        assertArrayEquals(new double[]{1, 1}, weights, 1e-9);
+    }
+
+    @Test
+    void testWriteRead() throws IOException {
+        PortfolioScheduler scheduler = PortfolioScheduler.read(new StringReader(STATS));
+        StringWriter writer = new StringWriter();
+        scheduler.write(writer);
+        StringWriter again = new StringWriter();
+        PortfolioScheduler.read(new StringReader(writer.toString())).write(again);
+        assertEquals(writer.toString(), again.toString());
+
+        assertThrows(IOException.class, () -> PortfolioScheduler.read(new StringReader("a,b,c\n")));
+        assertThrows(IOException.class, () -> PortfolioScheduler.read(new StringReader("a,b,c,d\n")));
+    }
+
+    @Test
+    void testDefault() throws IOException {
+        Parameters parameters = TestInstances.read("0007_r25-h35-rn.in");
+        List<AbstractSolver> solvers = PackingSolver.createSolver().getSolvers();
+        double[] weights = PortfolioScheduler.getDefault().weights(InstanceFeatures.of(parameters), solvers);
+        assertEquals(solvers.size(), weights.length);
+        assertEquals(1, Arrays.stream(weights).max().getAsDouble(), 1e-9);
+        for (double weight : weights) {
+            assertTrue(weight >= PortfolioScheduler.MIN_WEIGHT);
+        }
+    }
+}
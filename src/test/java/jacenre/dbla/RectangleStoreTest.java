@@ -0,0 +1,97 @@
+package jacenre.dbla;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RectangleStoreTest {
+    List<Rectangle> rectangles;
+    RectangleStore store;
+
+    @BeforeEach
+    void setUp() {
+        rectangles = new ArrayList<>();
+        rectangles.add(new Rectangle(2, 5));
+        rectangles.add(new Rectangle(4, 1));
+        rectangles.add(new Rectangle(3, 3));
+        store = new RectangleStore(rectangles);
+    }
+
+    @Test
+    void testConstruction() {
+        Assertions.assertEquals(3, store.size());
+        Assertions.assertEquals(2, store.getWidth(0));
+        Assertions.assertEquals(5, store.getHeight(0));
+        Assertions.assertFalse(store.isRotated(0));
+        Assertions.assertFalse(store.isPlaced(0));
+    }
+
+    @Test
+    void testRotate() {
+        store.rotate(0);
+        Assertions.assertTrue(store.isRotated(0));
+        Assertions.assertEquals(5, store.getWidth(0));
+        Assertions.assertEquals(2, store.getHeight(0));
+        // The view is only updated when asked for
+        Assertions.assertFalse(rectangles.get(0).isRotated());
+    }
+
+    @Test
+    void testIntersects() {
+        store.setLocation(1, 2, 0);
+        Assertions.assertFalse(store.intersects(0, 1));
+        store.setLocation(1, 1, 4);
+        Assertions.assertTrue(store.intersects(0, 1));
+        Assertions.assertTrue(store.intersects(1, 0));
+        Assertions.assertFalse(store.intersects(0, 0, 5, 2, 0));
+    }
+
+    @Test
+    void testSortIsStable() {
+        rectangles.add(new Rectangle(2, 7));
+        store = new RectangleStore(rectangles);
+        store.sort((i, j) -> store.w[j] - store.w[i]);
+
+        List<Rectangle> sorted = store.getRectangles();
+        Assertions.assertSame(rectangles.get(1), sorted.get(0));
+        Assertions.assertSame(rectangles.get(2), sorted.get(1));
+        Assertions.assertSame(rectangles.get(0), sorted.get(2));
+        Assertions.assertSame(rectangles.get(3), sorted.get(3));
+        Assertions.assertEquals(4, store.getWidth(0));
+    }
+
+    @Test
+    void testGetRectangles() {
+        store.rotate(2);
+        store.setLocation(2, 7, 8);
+        store.place(2, true);
+        Rectangle rectangle = store.getRectangles().get(2);
+        Assertions.assertSame(rectangles.get(2), rectangle);
+        Assertions.assertTrue(rectangle.isRotated());
+        Assertions.assertTrue(rectangle.isPlaced());
+        Assertions.assertEquals(7, rectangle.x);
+        Assertions.assertEquals(8, rectangle.y);
+        Assertions.assertEquals(10, store.maxX());
+        Assertions.assertEquals(11, store.maxY());
+    }
+
+    @Test
+    void testExtents() {
+        Assertions.assertEquals(4, store.maxX());
+        Assertions.assertEquals(5, store.maxY());
+        store.setLocation(1, 6, 0);
+        Assertions.assertEquals(10, store.maxX());
+        store.rotate(0);
+        Assertions.assertEquals(10, store.maxX());
+        Assertions.assertEquals(3, store.maxY());
+
+        // Moving back the rectangle that reaches furthest
+        store.setX(1, 0);
+        Assertions.assertEquals(5, store.maxX());
+        store.setY(2, 4);
+        Assertions.assertEquals(7, store.maxY());
+        Assertions.assertEquals(7, store.copy().maxY());
+    }
+}
@@ -25,4 +25,14 @@ class RectangleTest {
         Assertions.assertEquals(rect.getWidth(), 5);
         Assertions.assertEquals(rect.getHeight(), 2);
     }
+
+    @Test
+    void testId() {
+        Rectangle input = new Rectangle(2, 5, 3);
+        Assertions.assertEquals(3, input.getId());
+        Assertions.assertEquals(3, input.copy().getId());
+        Assertions.assertEquals(input, input.copy());
+        Assertions.assertTrue(rect.getId() < 0);
+        Assertions.assertNotEquals(rect, new Rectangle(2, 5));
+    }
 }
\ No newline at end of file
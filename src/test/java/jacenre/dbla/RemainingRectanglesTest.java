@@ -0,0 +1,113 @@
+package jacenre.dbla;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class RemainingRectanglesTest {
+
+    @Test
+    void testSmallestSides() {
+        Rectangle first = new Rectangle(4, 2, 0);
+        Rectangle second = new Rectangle(3, 5, 1);
+        Rectangle third = new Rectangle(3, 1, 2);
+        RemainingRectangles remaining = new RemainingRectangles(Arrays.asList(first, second, third));
+        Assertions.assertEquals(Arrays.asList(first, second, third), remaining);
+        Assertions.assertEquals(3, remaining.getMinWidth());
+        Assertions.assertEquals(1, remaining.getMinHeight());
+
+        Assertions.assertTrue(remaining.remove(third));
+        Assertions.assertEquals(Arrays.asList(first, second), remaining);
+        Assertions.assertEquals(3, remaining.getMinWidth());
+        Assertions.assertEquals(2, remaining.getMinHeight());
+
+        // Removing a rectangle that is not in the list changes nothing
+        Assertions.assertFalse(remaining.remove(third));
+        Assertions.assertEquals(3, remaining.getMinWidth());
+
+        remaining.remove(0);
+        remaining.remove(0);
+        Assertions.assertTrue(remaining.isEmpty());
+        Assertions.assertEquals(Integer.MAX_VALUE, remaining.getMinWidth());
+        Assertions.assertEquals(Integer.MAX_VALUE, remaining.getMinHeight());
+    }
+
+    @Test
+    void testSameAsScan() {
+        RemainingRectangles remaining = new RemainingRectangles(Arrays.asList(new Rectangle(5, 7, 0),
+                new Rectangle(2, 9, 1), new Rectangle(6, 3, 2), new Rectangle(2, 3, 3)));
+        ArrayListSkyline skyline = new ArrayListSkyline(10, 10, 10, false);
+        while (!remaining.isEmpty()) {
+            Assertions.assertArrayEquals(skyline.getMinWidthHeightOtherRectangles(Arrays.asList(
+                    remaining.toArray(new Rectangle[0]))), skyline.getMinWidthHeightOtherRectangles(remaining));
+            remaining.remove(remaining.size() - 1);
+        }
+    }
+
+    /**
+     * Removes rectangles in random order, by object, by index and while iterating, and compares with an ArrayList.
+     */
+    @Test
+    void testSameAsArrayList() {
+        Random random = new Random(3);
+        List<Rectangle> expected = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            expected.add(new Rectangle(1 + random.nextInt(8), 1 + random.nextInt(8), i));
+        }
+        RemainingRectangles remaining = new RemainingRectangles(expected);
+        while (!expected.isEmpty()) {
+            int index = random.nextInt(expected.size());
+            switch (random.nextInt(3)) {
+                case 0:
+                    Rectangle rectangle = expected.get(index);
+                    Assertions.assertTrue(remaining.remove(rectangle));
+                    expected.remove(rectangle);
+                    break;
+                case 1:
+                    Assertions.assertSame(expected.remove(index), remaining.remove(index));
+                    break;
+                default:
+                    Iterator<Rectangle> iterator = remaining.iterator();
+                    for (int i = 0; i <= index; i++) {
+                        iterator.next();
+                    }
+                    iterator.remove();
+                    expected.remove(index);
+            }
+            Assertions.assertEquals(expected.size(), remaining.size());
+            Assertions.assertEquals(expected, new ArrayList<>(remaining));
+            Assertions.assertEquals(expected.stream().mapToInt(r -> r.width).min().orElse(Integer.MAX_VALUE),
+                    remaining.getMinWidth());
+        }
+    }
+
+    @Test
+    void testFits() {
+        Rectangle first = new Rectangle(4, 2, 0);
+        Rectangle second = new Rectangle(2, 5, 1);
+        Rectangle square = new Rectangle(2, 2, 2);
+        Rectangle last = new Rectangle(3, 7, 3);
+        RemainingRectangles remaining = new RemainingRectangles(Arrays.asList(first, second, square, last));
+        Assertions.assertEquals(2, remaining.countFits(2, false));
+        Assertions.assertSame(square, remaining.getLastFit(2, false));
+        // A square fits once
+        Assertions.assertEquals(3, remaining.countFits(2, true));
+        Assertions.assertEquals(0, remaining.countFits(4, false));
+        Assertions.assertSame(first, remaining.getLastFit(4, true));
+        Assertions.assertNull(remaining.getLastFit(6, true));
+
+        remaining.remove(square);
+        Assertions.assertEquals(1, remaining.countFits(2, false));
+        Assertions.assertSame(first, remaining.getLastFit(2, false));
+        Assertions.assertSame(second, remaining.getLastFit(2, true));
+        remaining.remove(first);
+        remaining.remove(second);
+        Assertions.assertEquals(0, remaining.countFits(2, true));
+        Assertions.assertNull(remaining.getLastFit(2, true));
+        Assertions.assertSame(last, remaining.getLastFit(7, false));
+    }
+}
@@ -0,0 +1,39 @@
+package jacenre.dbla;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the parallel scoring of the placements of {@link SkylineSolver}, the solver itself is tested by the slow
+ * {@link SkylineSolverTest}.
+ */
+class SkylineScoringTest {
+
+    @Test
+    void testParallelSameAsSerial() throws IOException {
+        for (String name : TestInstances.FIXED) {
+            Parameters parameters = TestInstances.read(name);
+            SkylineSolver serial = new SkylineSolver();
+            serial.parallelPlacements = Integer.MAX_VALUE;
+            SkylineSolver parallel = new SkylineSolver();
+            // Every candidate point in a task of its own
+            parallel.parallelPlacements = 1;
+
+            Solution expected = serial.getSolution(parameters.copy());
+            Solution actual = parallel.getSolution(parameters.copy());
+            assertTrue(Util.isValidSolution(actual), name);
+            assertEquals(expected.parameters.rectangles.size(), actual.parameters.rectangles.size(), name);
+            for (int i = 0; i < expected.parameters.rectangles.size(); i++) {
+                Rectangle rectangle = expected.parameters.rectangles.get(i);
+                Rectangle other = actual.parameters.rectangles.get(i);
+                assertEquals(rectangle.getId(), other.getId(), name);
+                assertEquals(rectangle.x, other.x, name);
+                assertEquals(rectangle.y, other.y, name);
+                assertEquals(rectangle.width, other.width, name);
+            }
+        }
+    }
+}
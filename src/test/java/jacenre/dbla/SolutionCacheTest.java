@@ -0,0 +1,180 @@
+package jacenre.dbla;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SolutionCacheTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Returns an instance with the rectangles in the given order, every rectangle is given as {width, height}.
+     */
+    private static Parameters instance(boolean rotation, int[]... sizes) {
+        List<Rectangle> rectangles = new ArrayList<>();
+        for (int i = 0; i < sizes.length; i++) {
+            rectangles.add(new Rectangle(sizes[i][0], sizes[i][1], i));
+        }
+        return new Parameters(10, Util.HeightSupport.FIXED, rotation, rectangles);
+    }
+
+    private static Solution solve(Parameters parameters) {
+        Solution solution = new FirstFitSolver().getSolution(parameters.copy());
+        assertTrue(Util.isValidSolution(solution));
+        return solution;
+    }
+
+    @Test
+    void testPermutedHit() throws IOException {
+        SolutionCache cache = new SolutionCache(100);
+        Parameters parameters = instance(false, new int[]{3, 4}, new int[]{5, 2}, new int[]{3, 4}, new int[]{1, 7});
+        Solution solution = solve(parameters);
+        assertTrue(cache.put(parameters, solution, 1000));
+
+        // The same rectangles in another order
+        Parameters permuted = instance(false, new int[]{1, 7}, new int[]{3, 4}, new int[]{5, 2}, new int[]{3, 4});
+        Solution hit = cache.get(permuted);
+        assertNotNull(hit);
+        assertTrue(Util.isValidSolution(hit));
+        assertEquals(solution.getArea(), hit.getArea());
+        for (int i = 0; i < permuted.rectangles.size(); i++) {
+            Rectangle rectangle = hit.parameters.rectangles.get(i);
+            assertEquals(i, rectangle.getId());
+            assertEquals(permuted.rectangles.get(i).width, rectangle.width);
+            assertEquals(permuted.rectangles.get(i).height, rectangle.height);
+        }
+
+        // Not for another height or rectangle
+        Parameters higher = permuted.copy();
+        higher.height = 11;
+        assertNull(cache.get(higher));
+        assertNull(cache.get(instance(false, new int[]{1, 7}, new int[]{3, 4}, new int[]{2, 5}, new int[]{3, 4})));
+    }
+
+    @Test
+    void testRotationHit() throws IOException {
+        SolutionCache cache = new SolutionCache(100);
+        Parameters parameters = instance(true, new int[]{2, 6}, new int[]{4, 3}, new int[]{8, 1});
+        assertTrue(cache.put(parameters, solve(parameters), 1000));
+
+        // Rotated rectangles have the same fingerprint, the hit rotates them back into the cached orientation
+        Parameters rotated = instance(true, new int[]{1, 8}, new int[]{6, 2}, new int[]{3, 4});
+        Solution hit = cache.get(rotated);
+        assertNotNull(hit);
+        assertTrue(Util.isValidSolution(hit));
+        assertEquals(Arrays.asList(0, 1, 2), Arrays.asList(hit.parameters.rectangles.get(0).getId(),
+                hit.parameters.rectangles.get(1).getId(), hit.parameters.rectangles.get(2).getId()));
+        // The caller's rectangles are not modified
+        assertEquals(1, rotated.rectangles.get(0).width);
+
+        // Without rotations the orientation is part of the fingerprint
+        assertNull(cache.get(instance(false, new int[]{1, 8}, new int[]{6, 2}, new int[]{3, 4})));
+    }
+
+    @Test
+    void testBudget() throws IOException {
+        SolutionCache cache = new SolutionCache(100);
+        Parameters parameters = instance(false, new int[]{3, 2}, new int[]{2, 3});
+        parameters.heightVariant = Util.HeightSupport.FREE;
+        Solution diagonal = new Solution(parameters.copy());
+        diagonal.parameters.rectangles.get(1).x = 3;
+        diagonal.parameters.rectangles.get(1).y = 2;
+        Solution sideBySide = new Solution(parameters.copy());
+        sideBySide.parameters.rectangles.get(1).x = 3;
+
+        // Only a solve with at most the budget of the entry is answered
+        assertTrue(cache.put(parameters, diagonal, 100));
+        assertNull(cache.get(parameters, 1000));
+        assertEquals(25, cache.get(parameters, 100).getArea());
+
+        // A worse solution is not stored, an equal one with more time only raises the budget
+        assertTrue(cache.put(parameters, sideBySide, 50));
+        assertFalse(cache.put(parameters, diagonal, 5000));
+        assertNull(cache.get(parameters, 1000));
+        assertTrue(cache.put(parameters, sideBySide, 1000));
+        assertFalse(cache.put(parameters, sideBySide, 1000));
+        assertEquals(15, cache.get(parameters, 1000).getArea());
+
+        // A solution that reaches the lower bound is answered with any budget
+        Parameters fixed = instance(false, new int[]{5, 6}, new int[]{5, 6});
+        fixed.height = 6;
+        Solution optimal = new Solution(fixed.copy());
+        optimal.parameters.rectangles.get(1).x = 5;
+        assertTrue(cache.put(fixed, optimal, 100));
+        assertNotNull(cache.get(fixed, 1000));
+    }
+
+    @Test
+    void testEviction() throws IOException {
+        SolutionCache cache = new SolutionCache(5);
+        Parameters first = instance(false, new int[]{1, 1}, new int[]{2, 2});
+        Parameters second = instance(false, new int[]{3, 3}, new int[]{4, 4});
+        Parameters third = instance(false, new int[]{5, 5}, new int[]{1, 2});
+        assertTrue(cache.put(first, solve(first), 100));
+        assertTrue(cache.put(second, solve(second), 100));
+        // Using the first entry makes the second the least recently used one
+        assertNotNull(cache.get(first));
+        assertTrue(cache.put(third, solve(third), 100));
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(third));
+    }
+
+    @Test
+    void testLog() throws IOException {
+        Path log = directory.resolve("cache").resolve("solutions.log");
+        Parameters parameters = instance(true, new int[]{3, 4}, new int[]{5, 2}, new int[]{1, 7});
+        Solution solution = solve(parameters);
+        SolutionCache cache = new SolutionCache(100, log);
+        assertTrue(cache.put(parameters, solution, 100));
+        assertTrue(cache.put(parameters, solution, 200));
+        assertEquals(2, Files.readAllLines(log).size());
+
+        // Read back by a new cache, from the record with the largest budget
+        SolutionCache reopened = new SolutionCache(100, log);
+        Solution hit = reopened.get(instance(true, new int[]{7, 1}, new int[]{4, 3}, new int[]{5, 2}), 200);
+        assertNotNull(hit);
+        assertTrue(Util.isValidSolution(hit));
+        assertEquals(solution.getArea(), hit.getArea());
+
+        // A partly written record is ignored
+        Files.write(log, "0123 FIXED 10 r".getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+        assertNotNull(new SolutionCache(100, log).get(parameters));
+
+        // Without room in memory every entry is read from the log
+        SolutionCache small = new SolutionCache(0, log);
+        assertNotNull(small.get(parameters));
+        assertNotNull(small.get(parameters));
+    }
+
+    @Test
+    void testCachingSolver() {
+        SolutionCache cache = new SolutionCache(1000);
+        CachingSolver solver = new CachingSolver(new FirstFitSolver(), cache);
+        Parameters parameters = instance(false, new int[]{3, 4}, new int[]{5, 2}, new int[]{1, 7});
+        Solution solution = solver.getSolution(parameters.copy(), Deadline.after(1000));
+        assertNotSame(solver, solution.solvedBy);
+
+        // A second solve with the same or a smaller budget is answered from the cache
+        Solution hit = solver.getSolution(parameters.copy(), Deadline.after(500));
+        assertSame(solver, hit.solvedBy);
+        assertEquals(solution.getArea(), hit.getArea());
+    }
+}
@@ -0,0 +1,71 @@
+package jacenre.dbla;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class SolutionTest {
+
+    private static Solution solution(Util.HeightSupport heightVariant) {
+        ArrayList<Rectangle> rectangles = new ArrayList<>();
+        rectangles.add(new Rectangle(0, 0, 4, 6));
+        rectangles.add(new Rectangle(4, 0, 5, 3));
+        return new Solution(new Parameters(10, heightVariant, false, rectangles));
+    }
+
+    @Test
+    void testExtents() {
+        Solution solution = solution(Util.HeightSupport.FREE);
+        Assertions.assertEquals(9, solution.getWidth());
+        Assertions.assertEquals(6, solution.getHeight());
+        Assertions.assertEquals(54, solution.getArea());
+        Assertions.assertEquals(54 / 39d, solution.getRate());
+
+        // The fixed height is used unless it is ignored
+        solution.parameters.heightVariant = Util.HeightSupport.FIXED;
+        Assertions.assertEquals(10, solution.getHeight());
+        Assertions.assertEquals(6, solution.getHeight(true));
+        Assertions.assertEquals(90, solution.getArea());
+    }
+
+    @Test
+    void testInvalidate() {
+        Solution solution = solution(Util.HeightSupport.FREE);
+        Assertions.assertEquals(9, solution.getWidth());
+
+        solution.parameters.rectangles.get(1).setLocation(0, 6);
+        solution.invalidate();
+        Assertions.assertEquals(5, solution.getWidth());
+        Assertions.assertEquals(9, solution.getHeight());
+    }
+
+    @Test
+    void testCopy() {
+        Solution solution = solution(Util.HeightSupport.FREE);
+        Solution better = solution.copy();
+        better.parameters.rectangles.get(1).setLocation(0, 6);
+        better.invalidate();
+
+        Assertions.assertEquals(45, better.getArea());
+        Assertions.assertTrue(better.isBetter(solution));
+        Assertions.assertFalse(solution.isBetter(better));
+    }
+
+    @Test
+    void testStoreExtents() {
+        Solution solution = solution(Util.HeightSupport.FREE);
+        RectangleStore store = solution.parameters.getStore();
+        store.setLocation(1, 0, 6);
+        solution.parameters.setStore(store);
+        Solution placed = new Solution(solution.parameters, null, store);
+        Assertions.assertEquals(5, placed.getWidth());
+        Assertions.assertEquals(9, placed.getHeight());
+
+        // Writing a store to the parameters invalidates the extents of their solutions
+        store.setLocation(1, 4, 0);
+        solution.parameters.setStore(store);
+        Assertions.assertEquals(9, placed.getWidth());
+        Assertions.assertEquals(9, solution.getWidth());
+        Assertions.assertEquals(6, solution.getHeight());
+    }
+}
@@ -0,0 +1,65 @@
+package jacenre.dbla;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SolutionWriterTest {
+    Parameters parameters;
+    String expected;
+
+    @BeforeEach
+    void setUp() {
+        ArrayList<Rectangle> rectangles = new ArrayList<>();
+        Rectangle first = new Rectangle(12, 8, 0);
+        Rectangle second = new Rectangle(10, 9, 1);
+        second.rotate();
+        second.setLocation(12, 0);
+        // Output order should not depend on the order of the list
+        rectangles.add(second);
+        rectangles.add(first);
+        parameters = new Parameters(22, Util.HeightSupport.FIXED, true, rectangles);
+
+        String n = System.lineSeparator();
+        expected = "container height: fixed 22" + n + "rotations allowed: yes" + n + "number of rectangles: 2" + n
+                + "12 8" + n + "10 9" + n + "placement of rectangles" + n + "no 0 0" + n + "yes 12 0" + n;
+    }
+
+    @Test
+    void testWrite() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SolutionWriter writer = SolutionWriter.toStream(out)) {
+            writer.write(parameters);
+        }
+        Assertions.assertEquals(expected, new String(out.toByteArray(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void testGzipFile() throws IOException {
+        Path file = Files.createTempFile("solution", ".out.gz");
+        try {
+            try (SolutionWriter writer = SolutionWriter.toFile(file, true)) {
+                writer.write(parameters);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) {
+                byte[] buffer = new byte[1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+            Assertions.assertEquals(expected, new String(out.toByteArray(), StandardCharsets.US_ASCII));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package jacenre.dbla;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Random;
 
 import org.junit.jupiter.api.Test;
 
@@ -88,4 +93,72 @@ class SweeplineTest {
         Solution solution = new Solution(parameters);
         assertFalse(Util.sweepline(solution));
     }
-}
\ No newline at end of file
+
+    // One rectangle inside the y interval of another
+    @Test
+    void sweeplineContained() {
+        Parameters parameters = new Parameters();
+
+        ArrayList<Rectangle> rectangles = new ArrayList<>();
+        Rectangle rectangle1 = new Rectangle(10, 10, 0);
+        Rectangle rectangle2 = new Rectangle(2, 2, 1);
+
+        rectangle2.x = 5;
+        rectangle2.y = 4;
+
+        rectangles.add(rectangle1);
+        rectangles.add(rectangle2);
+
+        parameters.rectangles = rectangles;
+
+        Solution solution = new Solution(parameters);
+        assertTrue(Util.sweepline(solution));
+        assertArrayEquals(new Rectangle[]{rectangle1, rectangle2}, Util.findOverlap(rectangles));
+    }
+
+    // Touching rectangles in a column next to a tall one
+    @Test
+    void sweeplineTouching() {
+        ArrayList<Rectangle> rectangles = new ArrayList<>();
+        rectangles.add(new Rectangle(0, 0, 5, 30));
+        rectangles.add(new Rectangle(5, 0, 5, 10));
+        rectangles.add(new Rectangle(5, 10, 5, 10));
+        rectangles.add(new Rectangle(5, 20, 5, 10));
+        rectangles.add(new Rectangle(10, 5, 5, 5));
+
+        assertNull(Util.findOverlap(rectangles));
+
+        Rectangle overlapping = new Rectangle(9, 19, 3, 3);
+        rectangles.add(overlapping);
+        Rectangle[] overlap = Util.findOverlap(rectangles);
+        assertNotNull(overlap);
+        assertTrue(overlap[0].intersects(overlap[1]));
+        assertTrue(overlap[0] == overlapping || overlap[1] == overlapping);
+    }
+
+    // Compare with testing every pair
+    @Test
+    void sweeplineRandom() {
+        Random random = new Random(7);
+        for (int n = 0; n < 200; n++) {
+            ArrayList<Rectangle> rectangles = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                rectangles.add(new Rectangle(random.nextInt(20), random.nextInt(20), 1 + random.nextInt(6),
+                        1 + random.nextInt(6)));
+            }
+
+            boolean overlapping = false;
+            for (int i = 0; i < rectangles.size(); i++) {
+                for (int j = i + 1; j < rectangles.size(); j++) {
+                    overlapping |= rectangles.get(i).intersects(rectangles.get(j));
+                }
+            }
+
+            Rectangle[] overlap = Util.findOverlap(rectangles);
+            assertEquals(overlapping, overlap != null);
+            if (overlap != null) {
+                assertTrue(overlap[0].intersects(overlap[1]));
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package jacenre.dbla;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The instances in {@code src/test/resources/momotor/prototype-1} that tests read on their own.
+ */
+final class TestInstances {
+
+    static final String PROTOTYPE = "src/test/resources/momotor/prototype-1/";
+
+    /**
+     * A small instance with a fixed height that may rotate and a larger one that may not.
+     */
+    static final String[] FIXED = {"0003_r6-h80-ry.in", "0007_r25-h35-rn.in"};
+
+    private TestInstances() {
+    }
+
+    /**
+     * Returns the parameters of the instance {@code name}.
+     */
+    static Parameters read(String name) throws IOException {
+        return new UserInput(new File(PROTOTYPE + name)).getUserInput();
+    }
+}
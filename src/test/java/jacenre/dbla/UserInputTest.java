@@ -0,0 +1,60 @@
+package jacenre.dbla;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class UserInputTest {
+
+    private static Parameters parse(String input) {
+        return new UserInput(new ByteArrayInputStream(input.getBytes(StandardCharsets.US_ASCII))).getUserInput();
+    }
+
+    @Test
+    void testFixedHeight() {
+        Parameters parameters = parse("container height: fixed 22\r\nrotations allowed: yes\r\n"
+                + "number of rectangles: 3\r\n12 8\r\n  10\t9 \r\n8 12");
+        Assertions.assertEquals(Util.HeightSupport.FIXED, parameters.heightVariant);
+        Assertions.assertEquals(22, parameters.height);
+        Assertions.assertTrue(parameters.rotationVariant);
+        Assertions.assertEquals(3, parameters.rectangles.size());
+        Assertions.assertEquals(10, parameters.rectangles.get(1).width);
+        Assertions.assertEquals(9, parameters.rectangles.get(1).height);
+        Assertions.assertEquals(12, parameters.rectangles.get(2).height);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(i, parameters.rectangles.get(i).getId());
+        }
+    }
+
+    @Test
+    void testFreeHeight() {
+        Parameters parameters = parse("container height: free\nrotations allowed: no\nnumber of rectangles: 1\n4 16\n");
+        Assertions.assertEquals(Util.HeightSupport.FREE, parameters.heightVariant);
+        Assertions.assertEquals(Integer.MAX_VALUE, parameters.height);
+        Assertions.assertFalse(parameters.rotationVariant);
+        Assertions.assertEquals(4, parameters.rectangles.get(0).width);
+    }
+
+    @Test
+    void testNonPositiveCount() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> parse("container height: free\nrotations allowed: no\nnumber of rectangles: 0\n"));
+    }
+
+    @Test
+    void testMappedFile() throws IOException {
+        File file = Paths.get("src", "test", "resources", "momotor/prototype-1/0003_r6-h80-ry.in").toFile();
+        Parameters mapped = new UserInput(file).getUserInput();
+        Parameters streamed = new UserInput(new FileInputStream(file)).getUserInput();
+        Assertions.assertEquals(streamed.height, mapped.height);
+        Assertions.assertEquals(streamed.rectangles.size(), mapped.rectangles.size());
+        for (int i = 0; i < mapped.rectangles.size(); i++) {
+            Assertions.assertEquals(streamed.rectangles.get(i).getSize(), mapped.rectangles.get(i).getSize());
+        }
+    }
+}